@@ -0,0 +1,51 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.integration.http.inbound.AsyncContextServletMessagingGateway;
+import org.springframework.messaging.Message;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A gateway created outside of an application context, configured the way
+ * {@code HttpGatewayProcessorConfiguration} configures its endpoints, exposing the steps of request handling
+ * that are benchmarked.
+ */
+class BenchmarkGateway extends AsyncContextServletMessagingGateway {
+
+    private BenchmarkGateway(ResourceLoaderSupport resourceLoaderSupport) {
+        super(resourceLoaderSupport);
+    }
+
+    static BenchmarkGateway create(ResourceLoaderSupport resourceLoaderSupport, Class<?> payloadType) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        BenchmarkGateway gateway = new BenchmarkGateway(resourceLoaderSupport);
+        gateway.setBeanFactory(context.getBeanFactory());
+        if (payloadType != null) {
+            gateway.setRequestPayloadTypeClass(payloadType);
+        }
+        gateway.afterPropertiesSet();
+        return gateway;
+    }
+
+    RequestEntity<Object> prepare(HttpServletRequest request) throws IOException {
+        return prepareRequestEntity(prepareRequest(request));
+    }
+
+    Message<Resource> resolve(Message<?> reply) throws IOException {
+        return resolveReference(reply);
+    }
+
+    void write(Object content, ServletServerHttpResponse response, List<MediaType> acceptTypes) throws IOException {
+        writeResponse(content, response, acceptTypes);
+    }
+
+}
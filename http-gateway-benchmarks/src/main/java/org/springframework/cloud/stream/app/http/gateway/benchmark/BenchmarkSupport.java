@@ -0,0 +1,33 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+abstract class BenchmarkSupport {
+
+    static ResourceLoaderSupport resourceLoaderSupport(Path directory) {
+        return new ResourceLoaderSupport(new DefaultResourceLoader(), directory.toUri().toString());
+    }
+
+    static Path createFile(Path directory, String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(directory.resolve(name), content);
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (directory != null) {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+}
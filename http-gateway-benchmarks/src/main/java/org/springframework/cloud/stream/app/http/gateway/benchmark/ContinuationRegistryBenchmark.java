@@ -0,0 +1,63 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Register, look up and dispose of a continuation from many threads at once. Disposing goes through
+ * {@link Continuation#expire()}, which also cancels the deadline on the expiry wheel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContinuationRegistryBenchmark {
+
+    private ContinuationRegistry registry;
+
+    @Setup
+    public void setup() {
+        this.registry = new ContinuationRegistry();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.registry.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Continuation uncontended() {
+        return lifecycle();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Continuation contended() {
+        return lifecycle();
+    }
+
+    private Continuation lifecycle() {
+        Continuation continuation = this.registry.register(60000);
+        Continuation found = this.registry.get(continuation.getId());
+        found.expire();
+        return found;
+    }
+
+}
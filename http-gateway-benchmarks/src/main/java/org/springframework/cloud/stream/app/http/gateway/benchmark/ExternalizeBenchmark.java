@@ -0,0 +1,62 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizedContent;
+import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResourceLoaderSupport#externalize(String, Resource)} of a file to a {@code file:} location.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExternalizeBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    private int size;
+
+    private Path directory;
+
+    private ResourceLoaderSupport resourceLoaderSupport;
+
+    private Resource source;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("externalize-benchmark");
+        this.resourceLoaderSupport = BenchmarkSupport.resourceLoaderSupport(this.directory.resolve("target"));
+        this.source = new FileSystemResource(BenchmarkSupport.createFile(this.directory, "upload.bin", this.size).toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkSupport.deleteRecursively(this.directory);
+    }
+
+    @Benchmark
+    public ExternalizedContent externalize() throws IOException {
+        return this.resourceLoaderSupport.externalize("localhost/upload", this.source);
+    }
+
+}
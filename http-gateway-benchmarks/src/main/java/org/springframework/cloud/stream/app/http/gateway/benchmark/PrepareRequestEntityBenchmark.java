@@ -0,0 +1,101 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.integration.http.inbound.AsyncContextServletMessagingGateway;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AsyncContextServletMessagingGateway#prepareRequestEntity} for JSON bodies and for multipart
+ * bodies, whose files are externalized to a {@code file:} location. Requests are created before each
+ * invocation because their body can only be read once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrepareRequestEntityBenchmark {
+
+    @Param({"1024", "65536"})
+    private int size;
+
+    private Path directory;
+
+    private BenchmarkGateway stringGateway;
+
+    private BenchmarkGateway bytesGateway;
+
+    private byte[] json;
+
+    private byte[] file;
+
+    private MockHttpServletRequest jsonRequest;
+
+    private MockMultipartHttpServletRequest multipartRequest;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("prepare-request-entity-benchmark");
+        this.stringGateway = BenchmarkGateway.create(BenchmarkSupport.resourceLoaderSupport(this.directory), String.class);
+        this.bytesGateway = BenchmarkGateway.create(BenchmarkSupport.resourceLoaderSupport(this.directory), null);
+        char[] value = new char[this.size];
+        Arrays.fill(value, 'x');
+        this.json = ("{\"value\":\"" + new String(value) + "\"}").getBytes(StandardCharsets.UTF_8);
+        this.file = new byte[this.size];
+    }
+
+    @Setup(Level.Invocation)
+    public void createRequests() {
+        this.jsonRequest = new MockHttpServletRequest("POST", "/test");
+        this.jsonRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        this.jsonRequest.setContent(this.json);
+
+        this.multipartRequest = new MockMultipartHttpServletRequest();
+        this.multipartRequest.setMethod("POST");
+        this.multipartRequest.setRequestURI("/upload");
+        this.multipartRequest.setPathInfo("/upload");
+        this.multipartRequest.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=benchmark");
+        this.multipartRequest.addFile(new MockMultipartFile("data", "upload.bin", "application/octet-stream", this.file));
+        this.multipartRequest.addParameter("name", "value");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkSupport.deleteRecursively(this.directory);
+    }
+
+    @Benchmark
+    public RequestEntity<Object> json() throws IOException {
+        return this.stringGateway.prepare(this.jsonRequest);
+    }
+
+    @Benchmark
+    public RequestEntity<Object> multipart() throws IOException {
+        return this.bytesGateway.prepare(this.multipartRequest);
+    }
+
+}
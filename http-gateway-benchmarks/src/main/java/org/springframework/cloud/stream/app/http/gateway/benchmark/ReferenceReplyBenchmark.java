@@ -0,0 +1,62 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of an {@code is_reference} reply into the {@link Resource} it points to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReferenceReplyBenchmark {
+
+    private Path directory;
+
+    private BenchmarkGateway gateway;
+
+    private Message<byte[]> reply;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("reference-reply-benchmark");
+        Path file = BenchmarkSupport.createFile(this.directory, "reply.jpg", 1024);
+        this.gateway = BenchmarkGateway.create(BenchmarkSupport.resourceLoaderSupport(this.directory), null);
+        String payload = "{\"original_content_type\":\"image/jpeg\",\"uri\":\"" + file.toUri() + "\"}";
+        this.reply = MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                .setHeader("is_reference", true)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkSupport.deleteRecursively(this.directory);
+    }
+
+    @Benchmark
+    public Message<Resource> resolveReference() throws IOException {
+        return this.gateway.resolve(this.reply);
+    }
+
+}
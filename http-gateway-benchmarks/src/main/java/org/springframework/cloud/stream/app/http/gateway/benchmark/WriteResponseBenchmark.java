@@ -0,0 +1,79 @@
+package org.springframework.cloud.stream.app.http.gateway.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.integration.http.inbound.AsyncContextServletMessagingGateway;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converter selection and writing in {@link AsyncContextServletMessagingGateway#writeResponse}. The
+ * accept types are ordered so that the first converters in the chain do not match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriteResponseBenchmark {
+
+    private BenchmarkGateway gateway;
+
+    private final String json = "{\"value\":\"benchmark\"}";
+
+    private final byte[] bytes = new byte[1024];
+
+    private final Resource resource = new ByteArrayResource(new byte[1024]);
+
+    private final List<MediaType> acceptJson = Collections.singletonList(MediaType.APPLICATION_JSON);
+
+    private final List<MediaType> acceptAll = Collections.singletonList(MediaType.ALL);
+
+    private final List<MediaType> acceptBrowser = Arrays.asList(MediaType.TEXT_HTML, MediaType.APPLICATION_XHTML_XML,
+            MediaType.APPLICATION_XML, MediaType.ALL);
+
+    @Setup
+    public void setup() {
+        this.gateway = BenchmarkGateway.create(null, null);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse string() throws IOException {
+        return write(this.json, this.acceptJson);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse bytes() throws IOException {
+        return write(this.bytes, this.acceptAll);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse resource() throws IOException {
+        return write(this.resource, this.acceptBrowser);
+    }
+
+    private MockHttpServletResponse write(Object content, List<MediaType> acceptTypes) throws IOException {
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        this.gateway.write(content, new ServletServerHttpResponse(servletResponse), acceptTypes);
+        return servletResponse;
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.springframework.cloud.stream.app.http.gateway.loadtest;
+
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains what the gateway publishes to {@link Processor#output()} and sends the scenario's reply
+ * back to {@link Processor#input()}, standing in for the downstream processors.
+ */
+class EchoReplier {
+
+    private final BlockingQueue<Message<?>> requests;
+
+    private final Processor channels;
+
+    private final Scenario scenario;
+
+    private final Scenario.Resources resources;
+
+    private final long delay;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    EchoReplier(MessageCollector messageCollector, Processor channels, Scenario scenario, Scenario.Resources resources,
+            long delay) {
+        this.requests = messageCollector.forChannel(channels.output());
+        this.channels = channels;
+        this.scenario = scenario;
+        this.resources = resources;
+        this.delay = delay;
+    }
+
+    void start(int concurrency) {
+        this.running = true;
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(this::run, "echo-replier-" + i);
+            thread.setDaemon(true);
+            this.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    void stop() throws InterruptedException {
+        this.running = false;
+        for (Thread thread : this.threads) {
+            thread.join(1000);
+        }
+    }
+
+    private void run() {
+        while (this.running) {
+            try {
+                Message<?> request = this.requests.poll(100, TimeUnit.MILLISECONDS);
+                if (request == null) {
+                    continue;
+                }
+                if (this.delay > 0) {
+                    Thread.sleep(this.delay);
+                }
+                Message<?> reply = this.scenario.reply(request, this.resources);
+                if (reply != null) {
+                    this.channels.input().send(reply);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.springframework.cloud.stream.app.http.gateway.loadtest;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.stream.app.http.gateway.processor.HttpGatewayProcessorConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * The processor as deployed, bound to the test binder instead of a broker.
+ */
+@SpringBootApplication
+@Import(HttpGatewayProcessorConfiguration.class)
+public class LoadTestApplication {
+
+}
@@ -0,0 +1,228 @@
+package org.springframework.cloud.stream.app.http.gateway.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Boots the processor on the test binder with an {@link EchoReplier} and drives it with many concurrent
+ * keep-alive clients, then reports throughput, HdrHistogram latency percentiles and the threads and heap the
+ * processor holds under that load. No broker is needed.
+ * <p>
+ * Options, given as {@code --name=value}:
+ * <ul>
+ * <li>{@code loadtest.scenario}: one of {@link Scenario}, default {@code json}</li>
+ * <li>{@code loadtest.clients}: concurrent clients, default 1000</li>
+ * <li>{@code loadtest.warmup}: seconds before recording starts, default 10</li>
+ * <li>{@code loadtest.duration}: seconds recorded, default 30</li>
+ * <li>{@code loadtest.repliers}: echo replier threads, default 8</li>
+ * <li>{@code loadtest.reply-delay}: milliseconds each reply is held back, default 0</li>
+ * </ul>
+ * Any other option, e.g. {@code --http-gateway.timeout=5000}, configures the processor.
+ */
+public class LoadTestHarness {
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        Scenario scenario = Scenario.of(option(options, "loadtest.scenario", "json"));
+        Path directory = Files.createTempDirectory("http-gateway-loadtest");
+
+        Map<String, Object> defaultProperties = new HashMap<>();
+        defaultProperties.put("server.port", 0);
+        defaultProperties.put("server.tomcat.max-connections", 20000);
+        defaultProperties.put("logging.level.root", "WARN");
+        defaultProperties.put("http-gateway.resource-location-uri", directory.resolve("externalized").toUri().toString());
+        defaultProperties.putAll(scenario.defaultProperties());
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class)
+                .properties(defaultProperties)
+                .run(args);
+        try {
+            Environment environment = context.getEnvironment();
+            int clients = environment.getProperty("loadtest.clients", Integer.class, 1000);
+            int warmup = environment.getProperty("loadtest.warmup", Integer.class, 10);
+            int duration = environment.getProperty("loadtest.duration", Integer.class, 30);
+            int repliers = environment.getProperty("loadtest.repliers", Integer.class, 8);
+            long replyDelay = environment.getProperty("loadtest.reply-delay", Long.class, 0L);
+            String baseUrl = "http://localhost:" + environment.getProperty("local.server.port");
+
+            EchoReplier replier = new EchoReplier(context.getBean(MessageCollector.class), context.getBean(Processor.class),
+                    scenario, new Scenario.Resources(directory), replyDelay);
+            replier.start(repliers);
+            try {
+                new LoadTestHarness(scenario, baseUrl, clients).run(warmup, duration);
+            } finally {
+                replier.stop();
+            }
+        } finally {
+            context.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static final String CLIENT_THREAD_PREFIX = "loadtest-client-";
+
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private final Scenario scenario;
+
+    private final String baseUrl;
+
+    private final int clients;
+
+    private final Recorder recorder = new Recorder(TimeUnit.MINUTES.toMicros(10), 3);
+
+    private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    private volatile boolean recording;
+
+    private LoadTestHarness(Scenario scenario, String baseUrl, int clients) {
+        this.scenario = scenario;
+        this.baseUrl = baseUrl;
+        this.clients = clients;
+    }
+
+    private void run(int warmup, int duration) throws Exception {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(this.clients);
+        connectionManager.setDefaultMaxPerRoute(this.clients);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setSocketTimeout((int) TimeUnit.MINUTES.toMillis(10))
+                .build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(this.clients,
+                runnable -> new Thread(runnable, CLIENT_THREAD_PREFIX + threadNumber.incrementAndGet()));
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build()) {
+            this.running = true;
+            for (int i = 0; i < this.clients; i++) {
+                executor.execute(() -> drive(httpClient));
+            }
+            System.out.println("Scenario " + this.scenario + " with " + this.clients + " clients, warming up for "
+                    + warmup + "s");
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+
+            this.recorder.reset();
+            this.statuses.clear();
+            this.recording = true;
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+            int serverThreads = serverThreads();
+            long heapUsed = heapUsedAfterGc();
+            this.recording = false;
+            Histogram histogram = this.recorder.getIntervalHistogram();
+            long elapsed = System.nanoTime() - start;
+
+            this.running = false;
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            report(histogram, elapsed, serverThreads, heapUsed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void drive(CloseableHttpClient httpClient) {
+        while (this.running) {
+            long start = System.nanoTime();
+            int status;
+            try (CloseableHttpResponse response = httpClient.execute(this.scenario.createRequest(this.baseUrl))) {
+                status = statusOf(response);
+                if (response.getEntity() != null) {
+                    this.scenario.consume(response.getEntity());
+                }
+            } catch (IOException e) {
+                status = -1;
+            }
+            if (this.recording) {
+                this.recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                this.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    private static int statusOf(HttpResponse response) {
+        return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * Threads of the JVM other than the clients', i.e. those of the processor, the replier and the JVM itself.
+     */
+    private static int serverThreads() {
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith(CLIENT_THREAD_PREFIX)) {
+                threads++;
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * Heap retained under load, including the clients' own, which is the same whatever the processor's settings.
+     */
+    private static long heapUsedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private void report(Histogram histogram, long elapsedNanos, int serverThreads, long heapUsed) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println("Scenario:     " + this.scenario);
+        System.out.println("Clients:      " + this.clients);
+        System.out.printf("Requests:     %d in %.1fs%n", histogram.getTotalCount(), seconds);
+        System.out.printf("Throughput:   %.1f requests/s%n", histogram.getTotalCount() / seconds);
+        Map<Integer, Long> statuses = new TreeMap<>();
+        this.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+        System.out.println("Statuses:     " + statuses + " (-1 is an I/O error)");
+        System.out.println("Latency (ms): p50=" + millis(histogram, 50) + " p90=" + millis(histogram, 90)
+                + " p99=" + millis(histogram, 99) + " p99.9=" + millis(histogram, 99.9)
+                + " max=" + histogram.getMaxValue() / 1000.0);
+        System.out.println("Threads:      " + serverThreads + " besides the clients'");
+        System.out.printf("Heap:         %.1f MB used after GC under load%n", heapUsed / (1024.0 * 1024.0));
+        System.out.println();
+        histogram.outputPercentileDistribution(System.out, 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+}
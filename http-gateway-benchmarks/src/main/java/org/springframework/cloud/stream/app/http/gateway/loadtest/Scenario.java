@@ -0,0 +1,210 @@
+package org.springframework.cloud.stream.app.http.gateway.loadtest;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * What the clients send and how the echo replier answers.
+ */
+enum Scenario {
+
+    /**
+     * Small JSON bodies, echoed back.
+     */
+    JSON {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            HttpPost request = new HttpPost(baseUrl + "/json");
+            request.setEntity(new StringEntity("{\"hello\":\"world\"}", ContentType.APPLICATION_JSON));
+            return request;
+        }
+    },
+
+    /**
+     * 4 KB binary bodies, echoed back.
+     */
+    BYTES {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            HttpPost request = new HttpPost(baseUrl + "/bytes");
+            request.setEntity(new ByteArrayEntity(BYTES_PAYLOAD, ContentType.APPLICATION_OCTET_STREAM));
+            return request;
+        }
+    },
+
+    /**
+     * Multipart uploads of a 64 KB file and a form field. The manifest of externalized files is echoed back.
+     */
+    MULTIPART {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            HttpPost request = new HttpPost(baseUrl + "/upload");
+            request.setEntity(new ByteArrayEntity(MULTIPART_PAYLOAD,
+                    ContentType.create("multipart/form-data").withParameters(new BasicNameValuePair("boundary", BOUNDARY))));
+            return request;
+        }
+    },
+
+    /**
+     * Replies are {@code is_reference} messages pointing to a 64 KB file.
+     */
+    REFERENCE {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            return new HttpGet(baseUrl + "/reference");
+        }
+
+        @Override
+        Message<?> reply(Message<?> request, Resources resources) {
+            String payload = "{\"original_content_type\":\"image/jpeg\",\"uri\":\"" + resources.referenceUri + "\"}";
+            return MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                    .setHeader("is_reference", true)
+                    .setHeader(CONTINUATION_ID, request.getHeaders().get(CONTINUATION_ID))
+                    .build();
+        }
+    },
+
+    /**
+     * 1 MB replies read by clients in 8 KB chunks with a pause after each.
+     */
+    SLOW_READER {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            return new HttpGet(baseUrl + "/slow");
+        }
+
+        @Override
+        Message<?> reply(Message<?> request, Resources resources) {
+            return MessageBuilder.withPayload(resources.largePayload)
+                    .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                    .setHeader(CONTINUATION_ID, request.getHeaders().get(CONTINUATION_ID))
+                    .build();
+        }
+
+        @Override
+        void consume(HttpEntity entity) throws IOException {
+            byte[] buffer = new byte[8192];
+            try (InputStream inputStream = entity.getContent()) {
+                while (inputStream.read(buffer) != -1) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * Requests are never replied to, so all of them time out.
+     */
+    TIMEOUT {
+        @Override
+        HttpUriRequest createRequest(String baseUrl) {
+            return new HttpGet(baseUrl + "/timeout");
+        }
+
+        @Override
+        Message<?> reply(Message<?> request, Resources resources) {
+            return null;
+        }
+
+        @Override
+        Map<String, Object> defaultProperties() {
+            return Collections.singletonMap("http-gateway.timeout", 1000);
+        }
+    };
+
+    private static final String CONTINUATION_ID = "continuation_id";
+
+    private static final String BOUNDARY = "loadtest-boundary";
+
+    private static final byte[] BYTES_PAYLOAD = randomBytes(4096);
+
+    private static final byte[] MULTIPART_PAYLOAD = multipartPayload(randomBytes(65536));
+
+    abstract HttpUriRequest createRequest(String baseUrl);
+
+    /**
+     * @return the reply to send to the input binding, or {@code null} to send none
+     */
+    Message<?> reply(Message<?> request, Resources resources) {
+        return request;
+    }
+
+    void consume(HttpEntity entity) throws IOException {
+        EntityUtils.consume(entity);
+    }
+
+    Map<String, Object> defaultProperties() {
+        return Collections.emptyMap();
+    }
+
+    static Scenario of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] multipartPayload(byte[] file) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            String field = "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                    + "load test\r\n";
+            String fileHeader = "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"upload.bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n";
+            outputStream.write(field.getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(fileHeader.getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(file);
+            outputStream.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Content shared by all replies of a run.
+     */
+    static final class Resources {
+
+        private final String referenceUri;
+
+        private final byte[] largePayload;
+
+        Resources(Path directory) throws IOException {
+            this.referenceUri = Files.write(directory.resolve("reference.jpg"), randomBytes(65536)).toUri().toString();
+            this.largePayload = randomBytes(1024 * 1024);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+/**
+ * Where externalized content has been stored, with its size and, when stored content-addressed, its SHA-256 digest.
+ *
+ * @author Haruhiko Nishi
+ */
+public final class ExternalizedContent {
+
+    private final String uri;
+
+    private final String digest;
+
+    private final long size;
+
+    public ExternalizedContent(String uri, String digest, long size) {
+        this.uri = uri;
+        this.digest = digest;
+        this.size = size;
+    }
+
+    public String getUri() {
+        return this.uri;
+    }
+
+    /**
+     * The hex encoded SHA-256 digest of the content, {@code null} unless stored content-addressed.
+     */
+    public String getDigest() {
+        return this.digest;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalizedContent{uri=" + this.uri + ", digest=" + this.digest + ", size=" + this.size + "}";
+    }
+}
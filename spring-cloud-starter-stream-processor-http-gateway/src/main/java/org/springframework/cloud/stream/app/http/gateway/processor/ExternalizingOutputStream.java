@@ -0,0 +1,124 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Stream externalizing content of a not yet known size. The content is stored once the stream is
+ * {@link #close() closed}, after which {@link #getContent()} tells where.
+ * <p>
+ * When storing content-addressed, the content is written to a staging location while its digest is computed and
+ * moved to the location named after the digest on close, or dropped if that location already holds it.
+ *
+ * @author Haruhiko Nishi
+ */
+public class ExternalizingOutputStream extends OutputStream {
+
+    private static final Log logger = LogFactory.getLog(ExternalizingOutputStream.class);
+
+    private final ResourceLoaderSupport resourceLoaderSupport;
+
+    private final OutputStream target;
+
+    private final String targetUri;
+
+    private final String extension;
+
+    private final MessageDigest digest;
+
+    private long size;
+
+    private boolean closed;
+
+    private ExternalizedContent content;
+
+    ExternalizingOutputStream(ResourceLoaderSupport resourceLoaderSupport, OutputStream target, String targetUri,
+            String extension, MessageDigest digest) {
+        this.resourceLoaderSupport = resourceLoaderSupport;
+        this.target = target;
+        this.targetUri = targetUri;
+        this.extension = extension;
+        this.digest = digest;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.target.write(b, off, len);
+        if (this.digest != null) {
+            this.digest.update(b, off, len);
+        }
+        this.size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.target.close();
+        } catch (IOException e) {
+            discard(this.targetUri);
+            throw e;
+        }
+        if (this.digest == null) {
+            this.content = new ExternalizedContent(this.targetUri, null, this.size);
+            return;
+        }
+        String hex = ResourceLoaderSupport.hex(this.digest.digest());
+        try {
+            String uri = this.resourceLoaderSupport.promote(this.targetUri, hex, this.extension);
+            this.content = new ExternalizedContent(uri, hex, this.size);
+        } catch (IOException | RuntimeException e) {
+            discard(this.targetUri);
+            throw e;
+        }
+    }
+
+    /**
+     * Discard the content. Content already stored content-addressed is kept since it may be shared.
+     */
+    public void abort() {
+        if (!this.closed) {
+            this.closed = true;
+            if (this.target instanceof S3MultipartOutputStream) {
+                ((S3MultipartOutputStream) this.target).abort();
+                return;
+            }
+            try {
+                this.target.close();
+            } catch (IOException e) {
+                // discarding anyway
+            }
+            discard(this.targetUri);
+        } else if (this.content != null && this.digest == null) {
+            discard(this.content.getUri());
+        }
+    }
+
+    private void discard(String uri) {
+        try {
+            this.resourceLoaderSupport.delete(uri);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not discard externalized content at " + uri, e);
+        }
+    }
+
+    /**
+     * Where the content has been stored, {@code null} until the stream has been closed.
+     */
+    public ExternalizedContent getContent() {
+        return this.content;
+    }
+
+}
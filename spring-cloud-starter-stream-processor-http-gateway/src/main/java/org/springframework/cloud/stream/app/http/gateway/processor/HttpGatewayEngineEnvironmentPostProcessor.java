@@ -0,0 +1,34 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Collections;
+
+/**
+ * Makes {@code http-gateway.engine=reactive} start a reactive web application, since both the servlet and the reactive
+ * stack are on the classpath and Spring Boot would otherwise pick the servlet one. An explicit
+ * {@code spring.main.web-application-type} takes precedence.
+ *
+ * @author Haruhiko Nishi
+ */
+public class HttpGatewayEngineEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String ENGINE = "http-gateway.engine";
+
+    private static final String WEB_APPLICATION_TYPE = "spring.main.web-application-type";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String engine = environment.getProperty(ENGINE);
+        if (HttpGatewayProcessorProperties.Engine.REACTIVE.name().equalsIgnoreCase(engine)
+                && !environment.containsProperty(WEB_APPLICATION_TYPE)) {
+            environment.getPropertySources().addLast(new MapPropertySource("httpGatewayEngine",
+                    Collections.singletonMap(WEB_APPLICATION_TYPE, WebApplicationType.REACTIVE.name())));
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.adaptive-timeout")
+@Validated
+public class HttpGatewayProcessorAdaptiveTimeoutProperties {
+
+    /**
+     * Percentile of the observed reply latency an adaptive timeout is based on.
+     */
+    private double percentile = 0.99;
+
+    /**
+     * Milliseconds added to the observed latency percentile.
+     */
+    private long margin = 1000;
+
+    /**
+     * Lower bound of an adaptive timeout in milliseconds.
+     */
+    private long minTimeout = 1000;
+
+    /**
+     * Number of replies to observe on a route before its timeout adapts.
+     */
+    private long minSamples = 100;
+
+    @DecimalMin(value = "0", inclusive = false)
+    @DecimalMax("1")
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    @Min(0)
+    public long getMargin() {
+        return this.margin;
+    }
+
+    public void setMargin(long margin) {
+        this.margin = margin;
+    }
+
+    @Min(0)
+    public long getMinTimeout() {
+        return this.minTimeout;
+    }
+
+    public void setMinTimeout(long minTimeout) {
+        this.minTimeout = minTimeout;
+    }
+
+    @Min(0)
+    public long getMinSamples() {
+        return this.minSamples;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+}
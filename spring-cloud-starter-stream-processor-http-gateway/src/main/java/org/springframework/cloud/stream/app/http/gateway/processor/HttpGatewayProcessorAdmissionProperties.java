@@ -0,0 +1,69 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.admission")
+@Validated
+public class HttpGatewayProcessorAdmissionProperties {
+
+    /**
+     * Maximum number of requests waiting for a reply, 0 for no limit.
+     */
+    private int maxInFlight = 0;
+
+    /**
+     * Maximum number of requests waiting for a reply per client, 0 for no limit.
+     */
+    private int maxInFlightPerClient = 0;
+
+    /**
+     * Request header identifying a client. Defaults to the remote address.
+     */
+    private String clientKeyHeader;
+
+    /**
+     * Seconds sent in the Retry-After header of rejected requests.
+     */
+    private long retryAfter = 1;
+
+    @Min(0)
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Min(0)
+    public int getMaxInFlightPerClient() {
+        return this.maxInFlightPerClient;
+    }
+
+    public void setMaxInFlightPerClient(int maxInFlightPerClient) {
+        this.maxInFlightPerClient = maxInFlightPerClient;
+    }
+
+    public String getClientKeyHeader() {
+        return this.clientKeyHeader;
+    }
+
+    public void setClientKeyHeader(String clientKeyHeader) {
+        this.clientKeyHeader = clientKeyHeader;
+    }
+
+    @Min(0)
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,87 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.async-reply")
+@Validated
+public class HttpGatewayProcessorAsyncReplyProperties {
+
+    /**
+     * Whether requests preferring respond-async, or on routes with respond-async, are answered with 202 Accepted and
+     * their reply stored until it is fetched from the status location.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Path the status locations of stored replies are under.
+     */
+    private String statusPath = "/replies";
+
+    /**
+     * Maximum total size of the stored replies.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Milliseconds a reply is kept for, from its request and again from its arrival.
+     */
+    @Min(1)
+    private long timeToLive = 600000;
+
+    /**
+     * Seconds sent in the Retry-After header while a reply has not arrived.
+     */
+    @Min(0)
+    private long retryAfter = 1;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @NotEmpty
+    public String getStatusPath() {
+        return this.statusPath;
+    }
+
+    public void setStatusPath(String statusPath) {
+        this.statusPath = statusPath;
+    }
+
+    @NotNull
+    public DataSize getMaxSize() {
+        return this.maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,71 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.batching")
+@Validated
+public class HttpGatewayProcessorBatchingProperties {
+
+    /**
+     * Whether requests are published in batches rather than one message each.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of requests in a batch.
+     */
+    private int maxCount = 100;
+
+    /**
+     * Maximum size of a batch payload, the encoded requests with their headers.
+     */
+    private DataSize maxBytes = DataSize.ofMegabytes(1);
+
+    /**
+     * Maximum milliseconds a request waits for its batch to fill up.
+     */
+    private long linger = 5;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Min(1)
+    public int getMaxCount() {
+        return this.maxCount;
+    }
+
+    public void setMaxCount(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    @NotNull
+    public DataSize getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public void setMaxBytes(DataSize maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Min(0)
+    public long getLinger() {
+        return this.linger;
+    }
+
+    public void setLinger(long linger) {
+        this.linger = linger;
+    }
+}
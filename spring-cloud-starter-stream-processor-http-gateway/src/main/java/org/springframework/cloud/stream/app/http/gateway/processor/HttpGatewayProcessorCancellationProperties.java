@@ -0,0 +1,42 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.cancellation")
+@Validated
+public class HttpGatewayProcessorCancellationProperties {
+
+    /**
+     * Destination a cancellation message carrying the continuation_id is sent to whenever a request times out or its
+     * client goes away. No cancellations are sent when not set.
+     */
+    private String destination;
+
+    /**
+     * Maximum number of cancellations waiting to be sent; more are dropped.
+     */
+    @Min(1)
+    private int queueCapacity = 10000;
+
+    public String getDestination() {
+        return this.destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,38 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.coalescing")
+@Validated
+public class HttpGatewayProcessorCoalescingProperties {
+
+    /**
+     * Whether identical concurrent GET and HEAD requests are published once and all answered with its reply.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Request headers whose values, along with the method, path and query string, make requests identical.
+     */
+    private String[] keyHeaders = {"Accept", "Accept-Encoding", "Authorization", "Cookie"};
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String[] getKeyHeaders() {
+        return this.keyHeaders;
+    }
+
+    public void setKeyHeaders(String[] keyHeaders) {
+        this.keyHeaders = keyHeaders;
+    }
+}
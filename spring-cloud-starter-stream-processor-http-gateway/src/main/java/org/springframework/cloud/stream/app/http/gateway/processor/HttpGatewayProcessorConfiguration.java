@@ -1,25 +1,82 @@
 package org.springframework.cloud.stream.app.http.gateway.processor;
 
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.cloud.aws.core.region.RegionProvider;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.integration.http.dsl.AsyncContextServletEndpointSpec;
+import org.springframework.integration.http.inbound.AdmissionController;
 import org.springframework.integration.http.inbound.AsyncContextServletMessagingGateway;
+import org.springframework.integration.http.inbound.AsyncReplyStore;
+import org.springframework.integration.http.inbound.CancellationPublisher;
+import org.springframework.integration.http.inbound.ClientKeyResolver;
+import org.springframework.integration.http.inbound.GatewayMetrics;
 import org.springframework.integration.http.inbound.HttpRequestHandlingEndpointSupport;
+import org.springframework.integration.http.inbound.MessageBatcher;
+import org.springframework.integration.http.inbound.MicrometerGatewayMetrics;
+import org.springframework.integration.http.inbound.PriorityLanes;
+import org.springframework.integration.http.inbound.RateLimiter;
+import org.springframework.integration.http.inbound.ReactiveMessagingGateway;
+import org.springframework.integration.http.inbound.ReplyCache;
+import org.springframework.integration.http.inbound.ReplyStreams;
+import org.springframework.integration.http.inbound.RequestCoalescer;
+import org.springframework.integration.http.inbound.RequestHedger;
+import org.springframework.integration.http.inbound.RequestKeyResolver;
+import org.springframework.integration.http.inbound.RouteTimeoutPolicy;
+import org.springframework.integration.http.inbound.StreamingMultipartExternalizer;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
 import org.springframework.integration.http.support.DefaultHttpHeaderMapper;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.firewall.HttpFirewall;
+import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.firewall.StrictHttpFirewall;
+import org.springframework.util.Assert;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.commons.CommonsMultipartResolver;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -39,6 +96,8 @@ import java.util.stream.Collectors;
 @ComponentScan
 public class HttpGatewayProcessorConfiguration {
 
+    private static final String IS_REFERENCE = "is_reference";
+
     @Autowired
     private Processor channels;
 
@@ -48,7 +107,348 @@ public class HttpGatewayProcessorConfiguration {
     @Autowired
     private ResourceLoader resourceLoader;
 
+    @Autowired
+    private BindingServiceProperties bindingServiceProperties;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    private ObjectProvider<StreamingMultipartExternalizer> streamingMultipartExternalizer;
+
+    @Autowired
+    private ObjectProvider<S3MultipartUploader> s3MultipartUploader;
+
+    @Autowired
+    private ObjectProvider<AdmissionController> admissionController;
+
+    @Autowired
+    private ObjectProvider<ReplyCache> replyCache;
+
+    @Autowired
+    private ObjectProvider<RequestCoalescer> requestCoalescer;
+
+    @Autowired
+    private ObjectProvider<MessageBatcher> messageBatcher;
+
+    @Autowired
+    private ObjectProvider<ReplyStreams> replyStreams;
+
+    @Autowired
+    private ObjectProvider<AsyncReplyStore> asyncReplyStore;
+
+    @Autowired
+    private ObjectProvider<CancellationPublisher> cancellationPublisher;
+
+    @Autowired
+    private ObjectProvider<RequestHedger> requestHedger;
+
+    @Autowired
+    private ObjectProvider<PriorityLanes> priorityLanes;
+
+    @Autowired
+    private ObjectProvider<RateLimiter> rateLimiter;
+
+    @Autowired
+    @Qualifier("directReplyExecutor")
+    private ObjectProvider<ExecutorService> directReplyExecutor;
+
+    /**
+     * Shared by both endpoints since either of them may consume a reply from {@link Processor#input()}.
+     */
+    @Bean(destroyMethod = "stop")
+    public ContinuationRegistry continuationRegistry() {
+        String instanceId = this.properties.getInstanceId();
+        if (!StringUtils.hasText(instanceId)) {
+            instanceId = String.valueOf(this.bindingServiceProperties.getInstanceIndex());
+        }
+        ContinuationRegistry continuationRegistry = new ContinuationRegistry(instanceId);
+        continuationRegistry.setCancellationListener(this.cancellationPublisher.getIfAvailable());
+        return continuationRegistry;
+    }
+
+    /**
+     * The destination is resolved, and bound if need be, when the first cancellation is sent.
+     */
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty("http-gateway.cancellation.destination")
+    public CancellationPublisher cancellationPublisher(BinderAwareChannelResolver channelResolver) {
+        HttpGatewayProcessorCancellationProperties cancellation = this.properties.getCancellation();
+        return new CancellationPublisher(() -> channelResolver.resolveDestination(cancellation.getDestination()),
+                cancellation.getQueueCapacity());
+    }
+
+    @Bean
+    @ConditionalOnExpression("${http-gateway.admission.max-in-flight:0} > 0"
+            + " || ${http-gateway.admission.max-in-flight-per-client:0} > 0")
+    public AdmissionController admissionController() {
+        HttpGatewayProcessorAdmissionProperties admission = this.properties.getAdmission();
+        ClientKeyResolver clientKeyResolver = StringUtils.hasText(admission.getClientKeyHeader())
+                ? ClientKeyResolver.header(admission.getClientKeyHeader())
+                : ClientKeyResolver.remoteAddress();
+        return new AdmissionController(admission.getMaxInFlight(), admission.getMaxInFlightPerClient(),
+                clientKeyResolver);
+    }
+
+    @Bean
+    public RouteTimeoutPolicy timeoutPolicy() {
+        HttpGatewayProcessorAdaptiveTimeoutProperties adaptiveTimeout = this.properties.getAdaptiveTimeout();
+        RouteTimeoutPolicy timeoutPolicy = new RouteTimeoutPolicy(this.properties.getTimeout());
+        timeoutPolicy.setPercentile(adaptiveTimeout.getPercentile());
+        timeoutPolicy.setMargin(adaptiveTimeout.getMargin());
+        timeoutPolicy.setMinTimeout(adaptiveTimeout.getMinTimeout());
+        timeoutPolicy.setMinSamples(adaptiveTimeout.getMinSamples());
+        for (HttpGatewayProcessorRouteProperties route : this.properties.getRoutes()) {
+            long timeout = route.getTimeout() != null ? route.getTimeout() : this.properties.getTimeout();
+            timeoutPolicy.addRoute(route.getPathPattern(), timeout, route.isAdaptiveTimeout());
+        }
+        return timeoutPolicy;
+    }
+
+    @Bean
+    public GatewayMetrics gatewayMetrics() {
+        MeterRegistry meterRegistry = this.meterRegistry.getIfAvailable();
+        if (meterRegistry == null) {
+            return GatewayMetrics.NOOP;
+        }
+        MicrometerGatewayMetrics metrics = new MicrometerGatewayMetrics(meterRegistry,
+                timeoutPolicy()::getPathPattern, this.properties.getPathPattern())
+                .bindContinuationRegistry(continuationRegistry());
+        AdmissionController admissionController = this.admissionController.getIfAvailable();
+        if (admissionController != null) {
+            metrics.bindAdmissionController(admissionController);
+        }
+        ReplyCache replyCache = this.replyCache.getIfAvailable();
+        if (replyCache != null) {
+            metrics.bindReplyCache(replyCache);
+        }
+        RequestCoalescer requestCoalescer = this.requestCoalescer.getIfAvailable();
+        if (requestCoalescer != null) {
+            metrics.bindRequestCoalescer(requestCoalescer);
+        }
+        ReplyStreams replyStreams = this.replyStreams.getIfAvailable();
+        if (replyStreams != null) {
+            metrics.bindReplyStreams(replyStreams);
+        }
+        AsyncReplyStore asyncReplyStore = this.asyncReplyStore.getIfAvailable();
+        if (asyncReplyStore != null) {
+            metrics.bindAsyncReplyStore(asyncReplyStore);
+        }
+        CancellationPublisher cancellationPublisher = this.cancellationPublisher.getIfAvailable();
+        if (cancellationPublisher != null) {
+            metrics.bindCancellationPublisher(cancellationPublisher);
+        }
+        RequestHedger requestHedger = this.requestHedger.getIfAvailable();
+        if (requestHedger != null) {
+            metrics.bindRequestHedger(requestHedger);
+        }
+        PriorityLanes priorityLanes = this.priorityLanes.getIfAvailable();
+        if (priorityLanes != null) {
+            metrics.bindPriorityLanes(priorityLanes);
+        }
+        RateLimiter rateLimiter = this.rateLimiter.getIfAvailable();
+        if (rateLimiter != null) {
+            metrics.bindRateLimiter(rateLimiter);
+        }
+        return metrics;
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty("http-gateway.rate-limit.enabled")
+    public RateLimiter rateLimiter() {
+        HttpGatewayProcessorRateLimitProperties rateLimit = this.properties.getRateLimit();
+        ClientKeyResolver clientKeyResolver;
+        if (StringUtils.hasText(rateLimit.getKeyExpression())) {
+            clientKeyResolver = ClientKeyResolver.expression(
+                    new SpelExpressionParser().parseExpression(rateLimit.getKeyExpression()));
+        } else if (StringUtils.hasText(rateLimit.getKeyHeader())) {
+            clientKeyResolver = ClientKeyResolver.header(rateLimit.getKeyHeader());
+        } else {
+            clientKeyResolver = ClientKeyResolver.remoteAddress();
+        }
+        return new RateLimiter(rateLimit.getPermitsPerSecond(), rateLimit.getBurst(), clientKeyResolver);
+    }
+
+    @Bean
+    @ConditionalOnProperty("http-gateway.reply-cache.enabled")
+    public ReplyCache replyCache() {
+        HttpGatewayProcessorReplyCacheProperties cache = this.properties.getReplyCache();
+        ReplyCache replyCache = new ReplyCache(cache.getMaxSize().toBytes(), cache.getTimeToLive(),
+                Arrays.asList(cache.getVaryHeaders()));
+        replyCache.setMaxEntrySize(cache.getMaxEntrySize().toBytes());
+        return replyCache;
+    }
+
     @Bean
+    @ConditionalOnProperty("http-gateway.coalescing.enabled")
+    public RequestCoalescer requestCoalescer() {
+        return new RequestCoalescer(RequestKeyResolver.varying(
+                Arrays.asList(this.properties.getCoalescing().getKeyHeaders())));
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(name = "http-gateway.streaming.enabled", matchIfMissing = true)
+    public ReplyStreams replyStreams() {
+        return new ReplyStreams(this.properties.getStreaming().getTimeout(),
+                this.properties.getStreaming().getMaxPendingChunks(),
+                this.properties.getStreaming().getWriterThreads());
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty("http-gateway.async-reply.enabled")
+    public AsyncReplyStore asyncReplyStore() {
+        HttpGatewayProcessorAsyncReplyProperties asyncReply = this.properties.getAsyncReply();
+        AsyncReplyStore asyncReplyStore = new AsyncReplyStore(asyncReply.getStatusPath(),
+                asyncReply.getMaxSize().toBytes(), asyncReply.getTimeToLive());
+        asyncReplyStore.setRetryAfter(asyncReply.getRetryAfter());
+        for (HttpGatewayProcessorRouteProperties route : this.properties.getRoutes()) {
+            if (route.isRespondAsync()) {
+                asyncReplyStore.addRoute(route.getPathPattern());
+            }
+        }
+        return asyncReplyStore;
+    }
+
+    /**
+     * Requests whose batch could not be sent are answered with 503 right away rather than left to time out.
+     */
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty("http-gateway.batching.enabled")
+    public MessageBatcher messageBatcher() {
+        HttpGatewayProcessorBatchingProperties batching = this.properties.getBatching();
+        MessageBatcher messageBatcher = new MessageBatcher(this.channels.output(), batching.getMaxCount(),
+                batching.getMaxBytes().toBytes(), batching.getLinger());
+        messageBatcher.setFailureHandler((message, e) -> {
+            Continuation continuation = continuationRegistry()
+                    .get(message.getHeaders().get("continuation_id", String.class));
+            if (continuation != null) {
+                continuation.setReply(MessageBuilder.withPayload(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase())
+                        .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                        .setHeader(org.springframework.integration.http.HttpHeaders.STATUS_CODE,
+                                HttpStatus.SERVICE_UNAVAILABLE)
+                        .build());
+            }
+        });
+        return messageBatcher;
+    }
+
+    /**
+     * Hedging is refused together with batching: a batch carries none of the headers of its requests, so the partition
+     * key cannot tell a hedge, or even the request it repeats, apart.
+     */
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty("http-gateway.hedging.enabled")
+    public RequestHedger requestHedger() {
+        Assert.state(!this.properties.getBatching().isEnabled(),
+                "http-gateway.hedging.enabled cannot be combined with http-gateway.batching.enabled");
+        HttpGatewayProcessorHedgingProperties hedging = this.properties.getHedging();
+        RequestHedger requestHedger = new RequestHedger(publishChannel(), continuationRegistry());
+        requestHedger.setPercentile(hedging.getPercentile());
+        requestHedger.setMinDelay(hedging.getMinDelay());
+        requestHedger.setMinSamples(hedging.getMinSamples());
+        requestHedger.setBudget(hedging.getBudget(), hedging.getBudgetBurst());
+        for (HttpGatewayProcessorRouteProperties route : this.properties.getRoutes()) {
+            if (route.isHedge()) {
+                requestHedger.addRoute(route.getPathPattern());
+            }
+        }
+        return requestHedger;
+    }
+
+    /**
+     * Lane destinations are resolved, and bound if need be, when the first request is published to them.
+     */
+    @Bean
+    @ConditionalOnProperty("http-gateway.lanes[0].name")
+    public PriorityLanes priorityLanes(BinderAwareChannelResolver channelResolver) {
+        MessageBatcher messageBatcher = this.messageBatcher.getIfAvailable();
+        PriorityLanes priorityLanes = new PriorityLanes(messageBatcher != null ? messageBatcher : this.channels.output());
+        priorityLanes.setRetryAfter(this.properties.getAdmission().getRetryAfter());
+        for (HttpGatewayProcessorLaneProperties laneProperties : this.properties.getLanes()) {
+            String destination = laneProperties.getDestination();
+            PriorityLanes.Lane lane = new PriorityLanes.Lane(laneProperties.getName(),
+                    StringUtils.hasText(destination) ? () -> channelResolver.resolveDestination(destination) : null);
+            lane.setPathPattern(laneProperties.getPathPattern());
+            lane.setHeader(laneProperties.getHeaderName(), laneProperties.getHeaderValue());
+            if (StringUtils.hasText(laneProperties.getContentType())) {
+                lane.setContentType(MediaType.parseMediaType(laneProperties.getContentType()));
+            }
+            lane.setMaxInFlight(laneProperties.getMaxInFlight());
+            lane.setTimeout(laneProperties.getTimeout() != null ? laneProperties.getTimeout() : -1);
+            priorityLanes.addLane(lane);
+        }
+        return priorityLanes;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnExpression("${http-gateway.direct-reply.enabled:false} && ${http-gateway.direct-reply.writer-threads:4} > 0")
+    public ExecutorService directReplyExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(this.properties.getDirectReply().getWriterThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "http-gateway-reply-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ResourceLoaderSupport resourceLoaderSupport() {
+        ResourceLoaderSupport resourceLoaderSupport = new ResourceLoaderSupport(this.resourceLoader,
+                this.properties.getResourceLocationUri());
+        resourceLoaderSupport.setS3MultipartUploader(this.s3MultipartUploader.getIfAvailable());
+        resourceLoaderSupport.setContentAddressed(this.properties.isContentAddressed());
+        if (this.properties.isContentAddressed()) {
+            resourceLoaderSupport.setStagingMaxAge(this.properties.getStagingMaxAge());
+        }
+        return resourceLoaderSupport;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnExpression("'${http-gateway.resource-location-uri:}'.startsWith('s3://')")
+    public S3MultipartUploader s3MultipartUploader(AmazonS3 amazonS3) {
+        HttpGatewayProcessorS3Properties s3 = this.properties.getS3();
+        S3MultipartUploader s3MultipartUploader = new S3MultipartUploader(amazonS3, (int) s3.getPartSize().toBytes(),
+                s3.getUploadConcurrency(), s3.getMaxBuffers());
+        s3MultipartUploader.setBufferTimeout(s3.getBufferTimeout());
+        return s3MultipartUploader;
+    }
+
+    /**
+     * Replaces the client Spring Cloud AWS would register under the same name, so that s3:// resources are both read
+     * and written through the S3 compatible service.
+     */
+    @Bean
+    @ConditionalOnProperty("http-gateway.s3.endpoint")
+    public AmazonS3 amazonS3(ObjectProvider<AWSCredentialsProvider> credentialsProvider,
+            ObjectProvider<RegionProvider> regionProvider) {
+        HttpGatewayProcessorS3Properties s3 = this.properties.getS3();
+        RegionProvider region = regionProvider.getIfAvailable();
+        return AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(s3.getEndpoint(),
+                        region != null ? region.getRegion().getName() : Regions.DEFAULT_REGION.getName()))
+                .withPathStyleAccessEnabled(s3.isPathStyleAccess())
+                .withCredentials(credentialsProvider.getIfAvailable(DefaultAWSCredentialsProviderChain::getInstance))
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty("http-gateway.multipart.streaming")
+    public StreamingMultipartExternalizer streamingMultipartExternalizer() {
+        HttpGatewayProcessorMultipartProperties multipart = this.properties.getMultipart();
+        StreamingMultipartExternalizer externalizer = new StreamingMultipartExternalizer(resourceLoaderSupport(),
+                multipart.getUploadConcurrency());
+        externalizer.setWriteTimeout(multipart.getWriteTimeout());
+        if (multipart.getMaxPartSize() != null) {
+            externalizer.setMaxPartSize(multipart.getMaxPartSize().toBytes());
+        }
+        if (multipart.getMaxRequestSize() != null) {
+            externalizer.setMaxRequestSize(multipart.getMaxRequestSize().toBytes());
+        }
+        return externalizer;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
     public HttpRequestHandlingEndpointSupport httpSourceString() {
         return buildHttpRequestHandlerEndpointSpec("text/*", "application/json")
                 .requestPayloadType(String.class)
@@ -56,33 +456,89 @@ public class HttpGatewayProcessorConfiguration {
     }
 
     @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
     public HttpRequestHandlingEndpointSupport httpSourceBytes() {
         return buildHttpRequestHandlerEndpointSpec("*/*")
                 .get();
     }
 
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public ReactiveMessagingGateway reactiveMessagingGateway() {
+        ReactiveMessagingGateway gateway = new ReactiveMessagingGateway(resourceLoaderSupport(),
+                continuationRegistry(), requestChannel(), this.channels.input());
+        gateway.setHeaderMapper(headerMapper());
+        gateway.setTimeout(this.properties.getTimeout());
+        gateway.setMaxBodySize(this.properties.getMaxBodySize().toBytes());
+        gateway.setTimeoutPolicy(timeoutPolicy());
+        gateway.setReplyPartition(replyPartition());
+        gateway.setMetrics(gatewayMetrics());
+        gateway.setClaimCheckThreshold(this.properties.getClaimCheckThreshold() != null
+                ? this.properties.getClaimCheckThreshold().toBytes() : -1);
+        gateway.setReplyStreams(this.replyStreams.getIfAvailable());
+        gateway.setAsyncReplyStore(this.asyncReplyStore.getIfAvailable());
+        gateway.setRequestHedger(this.requestHedger.getIfAvailable());
+        gateway.setPriorityLanes(this.priorityLanes.getIfAvailable());
+        return gateway;
+    }
+
+    /**
+     * Matches the path pattern, and the status locations of async replies, the way the servlet request mapping does,
+     * as Ant-style patterns with a leading slash.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public RouterFunction<ServerResponse> reactiveGatewayRoute(ReactiveMessagingGateway reactiveMessagingGateway) {
+        List<String> patterns = Arrays.stream(gatewayPaths())
+                .map(pathPattern -> pathPattern.startsWith("/") ? pathPattern : "/" + pathPattern)
+                .collect(Collectors.toList());
+        AntPathMatcher pathMatcher = new AntPathMatcher();
+        return RouterFunctions.route(request -> patterns.stream().anyMatch(pattern ->
+                pathMatcher.match(pattern, request.path())), reactiveMessagingGateway);
+    }
+
+    /**
+     * Boot would prefer Tomcat, which is on the classpath for the servlet engine.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    private String[] gatewayPaths() {
+        AsyncReplyStore asyncReplyStore = this.asyncReplyStore.getIfAvailable();
+        if (asyncReplyStore == null) {
+            return new String[] {this.properties.getPathPattern()};
+        }
+        return new String[] {this.properties.getPathPattern(), asyncReplyStore.getStatusPathPattern()};
+    }
+
     private AsyncContextServletEndpointSpec buildHttpRequestHandlerEndpointSpec(final String... consumes) {
-        return new AsyncContextServletEndpointSpec(new AsyncContextServletMessagingGateway(
-                new ResourceLoaderSupport(resourceLoader, properties.getResourceLocationUri())),
-                this.properties.getPathPattern())
-                .headerMapper(new DefaultHttpHeaderMapper() {
-
-                    {
-                        DefaultHttpHeaderMapper.setupDefaultInboundMapper(this);
-                        setInboundHeaderNames(properties.getMappedRequestHeaders());
-                        setOutboundHeaderNames(properties.getMappedResponseHeaders());
-                    }
-
-                    protected Object getHttpHeader(HttpHeaders source, String name) {
-                        if (ACCEPT.equalsIgnoreCase(name)) {
-                            List<MediaType> mediaTypes = source.getAccept();
-                            return mediaTypes.stream().map(MimeType::toString).collect(Collectors.toList());
-                        } else {
-                            return super.getHttpHeader(source, name);
-                        }
-                    }
-                })
+        return new AsyncContextServletEndpointSpec(new AsyncContextServletMessagingGateway(resourceLoaderSupport()),
+                gatewayPaths())
+                .headerMapper(headerMapper())
                 .setTimeout(properties.getTimeout())
+                .timeoutPolicy(timeoutPolicy())
+                .continuationRegistry(continuationRegistry())
+                .replyPartition(replyPartition())
+                .admissionController(this.admissionController.getIfAvailable())
+                .retryAfter(this.properties.getAdmission().getRetryAfter())
+                .metrics(gatewayMetrics())
+                .streamingMultipartExternalizer(this.streamingMultipartExternalizer.getIfAvailable())
+                .claimCheckThreshold(this.properties.getClaimCheckThreshold() != null
+                        ? this.properties.getClaimCheckThreshold().toBytes() : -1)
+                .replyCache(this.replyCache.getIfAvailable())
+                .requestCoalescer(this.requestCoalescer.getIfAvailable())
+                .nonBlockingIo(this.properties.isNonBlockingIo())
+                .maxBodySize(this.properties.getMaxBodySize().toBytes())
+                .directReply(this.properties.getDirectReply().isEnabled())
+                .directReplyExecutor(this.directReplyExecutor.getIfAvailable())
+                .replyStreams(this.replyStreams.getIfAvailable())
+                .asyncReplyStore(this.asyncReplyStore.getIfAvailable())
+                .requestHedger(this.requestHedger.getIfAvailable())
+                .priorityLanes(this.priorityLanes.getIfAvailable())
+                .rateLimiter(this.rateLimiter.getIfAvailable())
                 .requestMapping(requestMapping ->
                         requestMapping.methods(HttpMethod.POST, HttpMethod.GET, HttpMethod.DELETE, HttpMethod.PUT,
                                 HttpMethod.OPTIONS)
@@ -91,10 +547,68 @@ public class HttpGatewayProcessorConfiguration {
                         crossOrigin.origin(this.properties.getCors().getAllowedOrigins())
                                 .allowedHeaders(this.properties.getCors().getAllowedHeaders())
                                 .allowCredentials(this.properties.getCors().getAllowCredentials()))
-                .requestChannel(this.channels.output())
+                .requestChannel(requestChannel())
                 .replyChannel(this.channels.input());
     }
 
+    private DefaultHttpHeaderMapper headerMapper() {
+        return new DefaultHttpHeaderMapper() {
+
+            {
+                DefaultHttpHeaderMapper.setupDefaultInboundMapper(this);
+                setInboundHeaderNames(properties.getMappedRequestHeaders());
+                setOutboundHeaderNames(properties.getMappedResponseHeaders());
+            }
+
+            protected Object getHttpHeader(HttpHeaders source, String name) {
+                if (ACCEPT.equalsIgnoreCase(name)) {
+                    List<MediaType> mediaTypes = source.getAccept();
+                    return mediaTypes.stream().map(MimeType::toString).collect(Collectors.toList());
+                } else {
+                    return super.getHttpHeader(source, name);
+                }
+            }
+
+            /**
+             * Publish the is_reference flag the gateway sets on claim-checked requests as the boolean replies carry,
+             * inbound headers of that name having been removed before.
+             */
+            @Override
+            public Map<String, Object> toHeaders(HttpHeaders source) {
+                Map<String, Object> headers = super.toHeaders(source);
+                String isReference = source.getFirst(IS_REFERENCE);
+                if (isReference != null) {
+                    headers.put(IS_REFERENCE, Boolean.valueOf(isReference));
+                }
+                return headers;
+            }
+        };
+    }
+
+    private MessageChannel requestChannel() {
+        RequestHedger requestHedger = this.requestHedger.getIfAvailable();
+        return requestHedger != null ? requestHedger : publishChannel();
+    }
+
+    private MessageChannel publishChannel() {
+        PriorityLanes priorityLanes = this.priorityLanes.getIfAvailable();
+        if (priorityLanes != null) {
+            return priorityLanes;
+        }
+        MessageBatcher messageBatcher = this.messageBatcher.getIfAvailable();
+        return messageBatcher != null ? messageBatcher : this.channels.output();
+    }
+
+    /**
+     * With more than one instance, replies are expected on the input partition matching the instance index.
+     */
+    private Integer replyPartition() {
+        if (this.bindingServiceProperties.getInstanceCount() > 1) {
+            return this.bindingServiceProperties.getInstanceIndex();
+        }
+        return null;
+    }
+
     @Bean
     public HttpFirewall allowUrlEncodedSlashHttpFirewall() {
         StrictHttpFirewall firewall = new StrictHttpFirewall();
@@ -106,8 +620,28 @@ public class HttpGatewayProcessorConfiguration {
     @Bean
     public CommonsMultipartResolver multipartResolver() {
         CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver();
+        // when streaming, the body is left unread for the StreamingMultipartExternalizer
+        multipartResolver.setResolveLazily(this.properties.getMultipart().isStreaming());
         return multipartResolver;
     }
-}
 
+    /**
+     * The app starters' security switch only applies to servlet applications; this applies it to the reactive engine.
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @EnableWebFluxSecurity
+    static class ReactiveSecurityConfiguration {
 
+        @Bean
+        public SecurityWebFilterChain httpGatewaySecurityWebFilterChain(ServerHttpSecurity http,
+                Environment environment) {
+            if (environment.getProperty("spring.cloud.streamapp.security.enabled", Boolean.class, true)) {
+                http.authorizeExchange().anyExchange().authenticated().and().httpBasic();
+            } else {
+                http.authorizeExchange().anyExchange().permitAll();
+            }
+            return http.csrf().disable().build();
+        }
+    }
+}
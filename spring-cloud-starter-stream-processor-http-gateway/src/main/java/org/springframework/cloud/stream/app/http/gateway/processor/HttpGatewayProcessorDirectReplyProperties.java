@@ -0,0 +1,43 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.direct-reply")
+@Validated
+public class HttpGatewayProcessorDirectReplyProperties {
+
+    /**
+     * Whether replies are written to the suspended response and completed directly rather than by dispatching the
+     * request through the container again.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of threads writing direct replies; 0 writes them on the thread consuming the reply, where a slow client
+     * holds up the replies behind it.
+     */
+    @Min(0)
+    private int writerThreads = 4;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWriterThreads() {
+        return this.writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+}
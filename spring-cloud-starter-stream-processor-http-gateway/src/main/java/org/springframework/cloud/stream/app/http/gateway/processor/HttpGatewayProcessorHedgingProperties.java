@@ -0,0 +1,102 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.hedging")
+@Validated
+public class HttpGatewayProcessorHedgingProperties {
+
+    /**
+     * Whether requests on routes with hedge are published once more, with the hedge header, if their reply is
+     * slower than the percentile of the route's reply latency. Cannot be combined with batching.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Percentile of a route's reply latency after which its requests are hedged.
+     */
+    private double percentile = 0.95;
+
+    /**
+     * Milliseconds a request waits at least before it is hedged.
+     */
+    @Min(0)
+    private long minDelay = 10;
+
+    /**
+     * Number of replies to observe on a route before its requests are hedged.
+     */
+    @Min(1)
+    private long minSamples = 100;
+
+    /**
+     * Fraction of the requests on hedged routes that may be hedged, across all routes.
+     */
+    private double budget = 0.05;
+
+    /**
+     * Number of hedges that may be sent in a burst before the budget has to be earned.
+     */
+    @Min(0)
+    private int budgetBurst = 10;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @DecimalMin(value = "0", inclusive = false)
+    @DecimalMax(value = "1", inclusive = false)
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public long getMinSamples() {
+        return this.minSamples;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    public double getBudget() {
+        return this.budget;
+    }
+
+    public void setBudget(double budget) {
+        this.budget = budget;
+    }
+
+    public int getBudgetBurst() {
+        return this.budgetBurst;
+    }
+
+    public void setBudgetBurst(int budgetBurst) {
+        this.budgetBurst = budgetBurst;
+    }
+}
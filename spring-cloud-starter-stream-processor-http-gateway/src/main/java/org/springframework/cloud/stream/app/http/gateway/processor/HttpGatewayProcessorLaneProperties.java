@@ -0,0 +1,119 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * Settings of a lane taking the requests that match all of its path pattern, header and content type.
+ *
+ * @author Haruhiko Nishi
+ */
+public class HttpGatewayProcessorLaneProperties {
+
+    /**
+     * Name of the lane, carried by its requests in the lane header.
+     */
+    private String name;
+
+    /**
+     * Ant-Style pattern of the request paths this lane takes.
+     */
+    private String pathPattern;
+
+    /**
+     * Request header the requests this lane takes carry.
+     */
+    private String headerName;
+
+    /**
+     * Value of header-name the requests this lane takes carry. Any value when not set.
+     */
+    private String headerValue;
+
+    /**
+     * Content type including those of the requests this lane takes, e.g. "multipart/*".
+     */
+    private String contentType;
+
+    /**
+     * Destination the lane's requests are published to. Defaults to the output binding.
+     */
+    private String destination;
+
+    /**
+     * Maximum number of the lane's requests waiting for a reply, 0 for no limit.
+     */
+    private int maxInFlight = 0;
+
+    /**
+     * Timeout value for the connection on this lane. Defaults to that of the request's route.
+     */
+    private Long timeout;
+
+    @NotEmpty
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPathPattern() {
+        return this.pathPattern;
+    }
+
+    public void setPathPattern(String pathPattern) {
+        this.pathPattern = pathPattern;
+    }
+
+    public String getHeaderName() {
+        return this.headerName;
+    }
+
+    public void setHeaderName(String headerName) {
+        this.headerName = headerName;
+    }
+
+    public String getHeaderValue() {
+        return this.headerValue;
+    }
+
+    public void setHeaderValue(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getDestination() {
+        return this.destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    @Min(0)
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Min(1)
+    public Long getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+}
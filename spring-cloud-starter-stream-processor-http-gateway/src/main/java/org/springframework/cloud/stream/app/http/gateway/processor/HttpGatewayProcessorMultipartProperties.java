@@ -0,0 +1,83 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.multipart")
+@Validated
+public class HttpGatewayProcessorMultipartProperties {
+
+    /**
+     * Whether multipart requests are parsed as they are read, writing each file part straight to its externalized location.
+     */
+    private boolean streaming = false;
+
+    /**
+     * Maximum size of a single part of a streamed multipart request. No limit when not set.
+     */
+    private DataSize maxPartSize;
+
+    /**
+     * Maximum size of a streamed multipart request. No limit when not set.
+     */
+    private DataSize maxRequestSize;
+
+    /**
+     * Number of file parts of streamed multipart requests written to their externalized location concurrently.
+     */
+    private int uploadConcurrency = 4;
+
+    /**
+     * Milliseconds a streamed multipart request waits for the writer of one of its file parts to catch up before it
+     * fails.
+     */
+    private long writeTimeout = 30000;
+
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public DataSize getMaxPartSize() {
+        return this.maxPartSize;
+    }
+
+    public void setMaxPartSize(DataSize maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    public DataSize getMaxRequestSize() {
+        return this.maxRequestSize;
+    }
+
+    public void setMaxRequestSize(DataSize maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    @Min(1)
+    public int getUploadConcurrency() {
+        return this.uploadConcurrency;
+    }
+
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    @Min(1)
+    public long getWriteTimeout() {
+        return this.writeTimeout;
+    }
+
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+}
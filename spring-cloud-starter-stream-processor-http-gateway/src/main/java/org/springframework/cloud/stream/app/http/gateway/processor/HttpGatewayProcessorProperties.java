@@ -3,9 +3,14 @@ package org.springframework.cloud.stream.app.http.gateway.processor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.integration.http.support.DefaultHttpHeaderMapper;
+import org.springframework.util.unit.DataSize;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Artem Bilan
@@ -24,6 +29,22 @@ public class HttpGatewayProcessorProperties {
      */
     private Long timeout = 300000L;
 
+    /**
+     * Per-path settings, the first route whose pattern matches a request applies.
+     */
+    private List<HttpGatewayProcessorRouteProperties> routes = new ArrayList<>();
+
+    /**
+     * Lanes separating kinds of requests, the first lane matching a request takes it.
+     */
+    private List<HttpGatewayProcessorLaneProperties> lanes = new ArrayList<>();
+
+    /**
+     * Adaptive timeout properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorAdaptiveTimeoutProperties adaptiveTimeout = new HttpGatewayProcessorAdaptiveTimeoutProperties();
+
     /**
      * Http Request Headers that will be mapped.
      */
@@ -32,6 +53,9 @@ public class HttpGatewayProcessorProperties {
             "Access-Control-Request-Method",
             "Access-Control-Request-Headers",
             "continuation_id",
+            "deadline",
+            "lane",
+            "reply_partition",
             "original_content_type",
             "X-*"
     };
@@ -54,12 +78,124 @@ public class HttpGatewayProcessorProperties {
      */
     private String resourceLocationUri = "file:///tmp/";
 
+    /**
+     * Whether externalized contents are keyed by their SHA-256 digest, storing identical contents once.
+     */
+    private boolean contentAddressed = false;
+
+    /**
+     * Milliseconds after which content staged while it is externalized content-addressed, and left behind by an
+     * interrupted upload, is deleted.
+     */
+    @Min(1)
+    private long stagingMaxAge = 86400000;
+
+    /**
+     * Size above which a non-multipart request body is externalized and published as a reference. No limit when not set.
+     */
+    private DataSize claimCheckThreshold;
+
+    /**
+     * Whether request bodies are read and replies written with non-blocking Servlet I/O, so that slow clients do not hold container threads.
+     */
+    private boolean nonBlockingIo = false;
+
+    /**
+     * Largest request body read into memory, by non-blocking I/O or the reactive engine, a larger one is answered
+     * with 413.
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(10);
+
+    /**
+     * Web stack requests are served on: 'servlet' parks them as suspended AsyncContexts, 'reactive' as Monos on WebFlux and Netty.
+     */
+    @NotNull
+    private Engine engine = Engine.SERVLET;
+
+    /**
+     * Identity of this gateway instance carried in continuation ids, along with a random incarnation. Defaults to the
+     * binding instance index.
+     */
+    private String instanceId;
+
     /**
      * CORS properties.
      */
     @NestedConfigurationProperty
     private HttpGatewayProcessorCorsProperties cors = new HttpGatewayProcessorCorsProperties();
 
+    /**
+     * Admission control properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorAdmissionProperties admission = new HttpGatewayProcessorAdmissionProperties();
+
+    /**
+     * Multipart properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorMultipartProperties multipart = new HttpGatewayProcessorMultipartProperties();
+
+    /**
+     * S3 upload properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorS3Properties s3 = new HttpGatewayProcessorS3Properties();
+
+    /**
+     * Reply cache properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorReplyCacheProperties replyCache = new HttpGatewayProcessorReplyCacheProperties();
+
+    /**
+     * Request coalescing properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorCoalescingProperties coalescing = new HttpGatewayProcessorCoalescingProperties();
+
+    /**
+     * Request batching properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorBatchingProperties batching = new HttpGatewayProcessorBatchingProperties();
+
+    /**
+     * Direct reply completion properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorDirectReplyProperties directReply = new HttpGatewayProcessorDirectReplyProperties();
+
+    /**
+     * Streamed reply properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorStreamingProperties streaming = new HttpGatewayProcessorStreamingProperties();
+
+    /**
+     * Async reply properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorAsyncReplyProperties asyncReply = new HttpGatewayProcessorAsyncReplyProperties();
+
+    /**
+     * Cancellation properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorCancellationProperties cancellation = new HttpGatewayProcessorCancellationProperties();
+
+    /**
+     * Hedging properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorHedgingProperties hedging = new HttpGatewayProcessorHedgingProperties();
+
+    /**
+     * Rate limit properties.
+     */
+    @NestedConfigurationProperty
+    private HttpGatewayProcessorRateLimitProperties rateLimit = new HttpGatewayProcessorRateLimitProperties();
+
     @NotEmpty
     public String getPathPattern() {
         return this.pathPattern;
@@ -78,6 +214,32 @@ public class HttpGatewayProcessorProperties {
         this.timeout = timeout;
     }
 
+    @Valid
+    public List<HttpGatewayProcessorRouteProperties> getRoutes() {
+        return this.routes;
+    }
+
+    public void setRoutes(List<HttpGatewayProcessorRouteProperties> routes) {
+        this.routes = routes;
+    }
+
+    @Valid
+    public List<HttpGatewayProcessorLaneProperties> getLanes() {
+        return this.lanes;
+    }
+
+    public void setLanes(List<HttpGatewayProcessorLaneProperties> lanes) {
+        this.lanes = lanes;
+    }
+
+    public HttpGatewayProcessorAdaptiveTimeoutProperties getAdaptiveTimeout() {
+        return this.adaptiveTimeout;
+    }
+
+    public void setAdaptiveTimeout(HttpGatewayProcessorAdaptiveTimeoutProperties adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
     public String[] getMappedRequestHeaders() {
         return this.mappedRequestHeaders;
     }
@@ -86,6 +248,14 @@ public class HttpGatewayProcessorProperties {
         this.mappedRequestHeaders = mappedRequestHeaders;
     }
 
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
     public HttpGatewayProcessorCorsProperties getCors() {
         return this.cors;
     }
@@ -94,6 +264,14 @@ public class HttpGatewayProcessorProperties {
         this.cors = cors;
     }
 
+    public HttpGatewayProcessorAdmissionProperties getAdmission() {
+        return this.admission;
+    }
+
+    public void setAdmission(HttpGatewayProcessorAdmissionProperties admission) {
+        this.admission = admission;
+    }
+
     public String[] getMappedResponseHeaders() {
         return mappedResponseHeaders;
     }
@@ -109,4 +287,149 @@ public class HttpGatewayProcessorProperties {
     public void setResourceLocationUri(String resourceLocationUri) {
         this.resourceLocationUri = resourceLocationUri;
     }
+
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+
+    public long getStagingMaxAge() {
+        return stagingMaxAge;
+    }
+
+    public void setStagingMaxAge(long stagingMaxAge) {
+        this.stagingMaxAge = stagingMaxAge;
+    }
+
+    public DataSize getClaimCheckThreshold() {
+        return claimCheckThreshold;
+    }
+
+    public void setClaimCheckThreshold(DataSize claimCheckThreshold) {
+        this.claimCheckThreshold = claimCheckThreshold;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public boolean isNonBlockingIo() {
+        return nonBlockingIo;
+    }
+
+    public void setNonBlockingIo(boolean nonBlockingIo) {
+        this.nonBlockingIo = nonBlockingIo;
+    }
+
+    @NotNull
+    public DataSize getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(DataSize maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public HttpGatewayProcessorMultipartProperties getMultipart() {
+        return this.multipart;
+    }
+
+    public void setMultipart(HttpGatewayProcessorMultipartProperties multipart) {
+        this.multipart = multipart;
+    }
+
+    public HttpGatewayProcessorS3Properties getS3() {
+        return this.s3;
+    }
+
+    public void setS3(HttpGatewayProcessorS3Properties s3) {
+        this.s3 = s3;
+    }
+
+    public HttpGatewayProcessorReplyCacheProperties getReplyCache() {
+        return this.replyCache;
+    }
+
+    public void setReplyCache(HttpGatewayProcessorReplyCacheProperties replyCache) {
+        this.replyCache = replyCache;
+    }
+
+    public HttpGatewayProcessorCoalescingProperties getCoalescing() {
+        return this.coalescing;
+    }
+
+    public void setCoalescing(HttpGatewayProcessorCoalescingProperties coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public HttpGatewayProcessorBatchingProperties getBatching() {
+        return this.batching;
+    }
+
+    public void setBatching(HttpGatewayProcessorBatchingProperties batching) {
+        this.batching = batching;
+    }
+
+    public HttpGatewayProcessorDirectReplyProperties getDirectReply() {
+        return this.directReply;
+    }
+
+    public void setDirectReply(HttpGatewayProcessorDirectReplyProperties directReply) {
+        this.directReply = directReply;
+    }
+
+    public enum Engine {
+
+        SERVLET,
+
+        REACTIVE
+
+    }
+
+    public HttpGatewayProcessorStreamingProperties getStreaming() {
+        return this.streaming;
+    }
+
+    public void setStreaming(HttpGatewayProcessorStreamingProperties streaming) {
+        this.streaming = streaming;
+    }
+
+    public HttpGatewayProcessorAsyncReplyProperties getAsyncReply() {
+        return this.asyncReply;
+    }
+
+    public void setAsyncReply(HttpGatewayProcessorAsyncReplyProperties asyncReply) {
+        this.asyncReply = asyncReply;
+    }
+
+    public HttpGatewayProcessorCancellationProperties getCancellation() {
+        return this.cancellation;
+    }
+
+    public void setCancellation(HttpGatewayProcessorCancellationProperties cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    public HttpGatewayProcessorHedgingProperties getHedging() {
+        return this.hedging;
+    }
+
+    public void setHedging(HttpGatewayProcessorHedgingProperties hedging) {
+        this.hedging = hedging;
+    }
+
+    public HttpGatewayProcessorRateLimitProperties getRateLimit() {
+        return this.rateLimit;
+    }
+
+    public void setRateLimit(HttpGatewayProcessorRateLimitProperties rateLimit) {
+        this.rateLimit = rateLimit;
+    }
 }
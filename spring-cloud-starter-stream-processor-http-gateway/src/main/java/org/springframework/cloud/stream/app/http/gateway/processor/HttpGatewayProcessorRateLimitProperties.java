@@ -0,0 +1,84 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.rate-limit")
+@Validated
+public class HttpGatewayProcessorRateLimitProperties {
+
+    /**
+     * Whether requests from a client over its rate are answered with 429 Too Many Requests.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Sustained number of requests admitted per client and second.
+     */
+    private double permitsPerSecond = 100;
+
+    /**
+     * Number of requests a client that has been idle may send at once.
+     */
+    private int burst = 100;
+
+    /**
+     * Request header identifying a client, e.g. an API key, which must be authenticated before the request reaches
+     * the gateway. Defaults to the remote address.
+     */
+    private String keyHeader;
+
+    /**
+     * SpEL expression evaluated against the HttpServletRequest identifying a client, e.g. "getHeader('X-Tenant')".
+     * Must only read what is authenticated before the request reaches the gateway. Takes precedence over key-header.
+     */
+    private String keyExpression;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @DecimalMin(value = "0", inclusive = false)
+    public double getPermitsPerSecond() {
+        return this.permitsPerSecond;
+    }
+
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    @Min(1)
+    public int getBurst() {
+        return this.burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public String getKeyHeader() {
+        return this.keyHeader;
+    }
+
+    public void setKeyHeader(String keyHeader) {
+        this.keyHeader = keyHeader;
+    }
+
+    public String getKeyExpression() {
+        return this.keyExpression;
+    }
+
+    public void setKeyExpression(String keyExpression) {
+        this.keyExpression = keyExpression;
+    }
+}
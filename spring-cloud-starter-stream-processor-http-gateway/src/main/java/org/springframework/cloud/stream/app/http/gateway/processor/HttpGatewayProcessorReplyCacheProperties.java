@@ -0,0 +1,84 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.reply-cache")
+@Validated
+public class HttpGatewayProcessorReplyCacheProperties {
+
+    /**
+     * Whether replies to GET requests are cached and repeated requests answered without publishing them.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum total size of the cached replies.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Replies larger than this are not cached.
+     */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+
+    /**
+     * Milliseconds a reply without a Cache-Control max-age is cached for, 0 to only cache replies with one.
+     */
+    private long timeToLive = 0;
+
+    /**
+     * Request headers whose values are part of the cache key.
+     */
+    private String[] varyHeaders = {"Accept", "Accept-Encoding"};
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @NotNull
+    public DataSize getMaxSize() {
+        return this.maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @NotNull
+    public DataSize getMaxEntrySize() {
+        return this.maxEntrySize;
+    }
+
+    public void setMaxEntrySize(DataSize maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @Min(0)
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public String[] getVaryHeaders() {
+        return this.varyHeaders;
+    }
+
+    public void setVaryHeaders(String[] varyHeaders) {
+        this.varyHeaders = varyHeaders;
+    }
+}
@@ -0,0 +1,80 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings applied to requests whose path matches {@link #getPathPattern()}.
+ *
+ * @author Haruhiko Nishi
+ */
+public class HttpGatewayProcessorRouteProperties {
+
+    /**
+     * Ant-Style pattern of the request paths this route applies to.
+     */
+    private String pathPattern;
+
+    /**
+     * Timeout value for the connection on this route. Defaults to http-gateway.timeout.
+     */
+    private Long timeout;
+
+    /**
+     * Whether to derive the timeout from the observed reply latency, up to the route's timeout.
+     */
+    private boolean adaptiveTimeout = false;
+
+    /**
+     * Whether requests on this route are answered with 202 Accepted and their reply stored, as if they preferred
+     * respond-async. Requires http-gateway.async-reply.enabled.
+     */
+    private boolean respondAsync = false;
+
+    /**
+     * Whether requests on this route, which must be idempotent, are published once more if their reply is slower
+     * than usual. Requires http-gateway.hedging.enabled.
+     */
+    private boolean hedge = false;
+
+    @NotEmpty
+    public String getPathPattern() {
+        return this.pathPattern;
+    }
+
+    public void setPathPattern(String pathPattern) {
+        this.pathPattern = pathPattern;
+    }
+
+    public Long getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+
+    public boolean isAdaptiveTimeout() {
+        return this.adaptiveTimeout;
+    }
+
+    public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
+    public boolean isRespondAsync() {
+        return this.respondAsync;
+    }
+
+    public void setRespondAsync(boolean respondAsync) {
+        this.respondAsync = respondAsync;
+    }
+
+    public boolean isHedge() {
+        return this.hedge;
+    }
+
+    public void setHedge(boolean hedge) {
+        this.hedge = hedge;
+    }
+}
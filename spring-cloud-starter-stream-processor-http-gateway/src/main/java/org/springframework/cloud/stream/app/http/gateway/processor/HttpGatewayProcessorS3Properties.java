@@ -0,0 +1,103 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.s3")
+@Validated
+public class HttpGatewayProcessorS3Properties {
+
+    /**
+     * Size of the parts externalized content is uploaded to an s3:// resource-location-uri in, at least 5MB.
+     */
+    private DataSize partSize = DataSize.ofMegabytes(8);
+
+    /**
+     * Number of parts uploaded concurrently.
+     */
+    private int uploadConcurrency = 4;
+
+    /**
+     * Maximum number of part buffers held in memory, writers wait for an upload to finish beyond that.
+     */
+    private int maxBuffers = 16;
+
+    /**
+     * Milliseconds a writer waits for a part buffer before failing the upload.
+     */
+    private long bufferTimeout = 30000;
+
+    /**
+     * Endpoint of an S3 compatible service to use instead of AWS, e.g. "http://localhost:9000".
+     */
+    private String endpoint;
+
+    /**
+     * Whether to address buckets in the path rather than the host name, as most S3 compatible services require.
+     */
+    private boolean pathStyleAccess = false;
+
+    public DataSize getPartSize() {
+        return this.partSize;
+    }
+
+    public void setPartSize(DataSize partSize) {
+        this.partSize = partSize;
+    }
+
+    @Min(1)
+    public int getUploadConcurrency() {
+        return this.uploadConcurrency;
+    }
+
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    @Min(1)
+    public int getMaxBuffers() {
+        return this.maxBuffers;
+    }
+
+    public void setMaxBuffers(int maxBuffers) {
+        this.maxBuffers = maxBuffers;
+    }
+
+    @Min(1)
+    public long getBufferTimeout() {
+        return this.bufferTimeout;
+    }
+
+    public void setBufferTimeout(long bufferTimeout) {
+        this.bufferTimeout = bufferTimeout;
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public boolean isPathStyleAccess() {
+        return this.pathStyleAccess;
+    }
+
+    public void setPathStyleAccess(boolean pathStyleAccess) {
+        this.pathStyleAccess = pathStyleAccess;
+    }
+
+    @AssertTrue(message = "part-size must be between 5MB and 2GB")
+    public boolean isPartSizeValid() {
+        return this.partSize.toBytes() >= S3MultipartUploader.MIN_PART_SIZE
+                && this.partSize.toBytes() <= Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,71 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author Haruhiko Nishi
+ */
+@ConfigurationProperties("http-gateway.streaming")
+@Validated
+public class HttpGatewayProcessorStreamingProperties {
+
+    /**
+     * Whether replies sent as several messages carrying chunk_sequence and is_last_chunk headers are streamed to the
+     * client as they arrive.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum milliseconds from the first chunk of a streamed reply to its last.
+     */
+    @Min(1)
+    private long timeout = 300000;
+
+    /**
+     * How far past the next chunk to write a chunk arriving out of order may be held, a stream whose chunks get
+     * further ahead is aborted.
+     */
+    @Min(1)
+    private int maxPendingChunks = 1024;
+
+    /**
+     * Number of threads writing the chunks of streamed replies to their clients.
+     */
+    @Min(1)
+    private int writerThreads = 4;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxPendingChunks() {
+        return this.maxPendingChunks;
+    }
+
+    public void setMaxPendingChunks(int maxPendingChunks) {
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    public int getWriterThreads() {
+        return this.writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+}
@@ -1,15 +1,27 @@
 package org.springframework.cloud.stream.app.http.gateway.processor;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.WritableResource;
@@ -18,19 +30,60 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 public class ResourceLoaderSupport {
 
+    private static final Log logger = LogFactory.getLog(ResourceLoaderSupport.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final String STAGING_KEY = "staging/";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     private ResourceLoader resourceLoader;
 
     private String location;
 
-    ResourceLoaderSupport(ResourceLoader resourceLoader, String location) {
+    private S3MultipartUploader s3MultipartUploader;
+
+    private boolean contentAddressed;
+
+    private ScheduledExecutorService stagingPurger;
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    public ResourceLoaderSupport(ResourceLoader resourceLoader, String location) {
         Assert.isTrue(location.endsWith("/") ^ (location.contains("{key}") && location.contains("{extension}")),
                 "resourceLocationUri should either end with '/' or has a 'key' and 'extension' variable");
         this.resourceLoader = resourceLoader;
         this.location = location;
     }
 
-    private static Map<String, Object> createUriVariables(String name, String extension) {
-        LocalDateTime localDateTime = LocalDateTime.now();
+    /**
+     * Set to write {@code s3://} locations with concurrent multipart uploads.
+     */
+    public void setS3MultipartUploader(S3MultipartUploader s3MultipartUploader) {
+        this.s3MultipartUploader = s3MultipartUploader;
+    }
+
+    /**
+     * Set to key externalized content by its SHA-256 digest rather than its file name, so that identical content is
+     * stored once and different content uploaded under the same name is not overwritten. Content is then stored under
+     * the part of the location before its first variable, so that its date variables do not give the same content a
+     * new location every second.
+     */
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    private Map<String, Object> createUriVariables(String name, String extension) {
+        LocalDateTime localDateTime = LocalDateTime.now(clock);
         Map<String, Object> variables = new HashMap<>();
         variables.put("key", Objects.requireNonNull(name));
         variables.put("extension", Objects.requireNonNull(extension));
@@ -43,18 +96,156 @@ public class ResourceLoaderSupport {
         return Collections.unmodifiableMap(variables);
     }
 
-    public String externalize(String prefix, Resource resource) throws IOException {
-        String filename = resource.getFilename();
-        String name = filename.substring(0, filename.lastIndexOf('.'));
-        String extension = filename.substring(filename.lastIndexOf('.'));
+    /**
+     * Externalize content that can be read more than once, such as a spooled multipart file. When content-addressed,
+     * the write is skipped altogether if the content is already stored, and otherwise staged and promoted like
+     * {@link #openOutputStream(String, String)} does, so a failed write never leaves partial content under a digest.
+     */
+    public ExternalizedContent externalize(String prefix, Resource resource) throws IOException {
+        if (contentAddressed) {
+            MessageDigest digest = newDigest();
+            long size;
+            try (InputStream inputStream = resource.getInputStream()) {
+                size = digest(inputStream, digest);
+            }
+            String hex = hex(digest.digest());
+            String extension = extension(resource.getFilename());
+            String uriPath = digestUri(hex, extension);
+            if (!getResource(uriPath).exists()) {
+                String stagingUri = stagingUri(extension);
+                try (InputStream inputStream = resource.getInputStream()) {
+                    copy(inputStream, stagingUri);
+                }
+                try {
+                    uriPath = promote(stagingUri, hex, extension);
+                } catch (IOException | RuntimeException e) {
+                    try {
+                        delete(stagingUri);
+                    } catch (IOException ex) {
+                        e.addSuppressed(ex);
+                    }
+                    throw e;
+                }
+            }
+            return new ExternalizedContent(uriPath, hex, size);
+        }
+        String uriPath = createLocation(prefix, resource.getFilename());
+        long size;
+        try (InputStream inputStream = resource.getInputStream()) {
+            size = copy(inputStream, uriPath);
+        }
+        return new ExternalizedContent(uriPath, null, size);
+    }
+
+    /**
+     * Open a stream externalizing content uploaded as {@code filename} that can only be read once.
+     */
+    public ExternalizingOutputStream openOutputStream(String prefix, String filename) throws IOException {
+        if (contentAddressed) {
+            String extension = extension(filename);
+            String stagingUri = stagingUri(extension);
+            return new ExternalizingOutputStream(this, getOutputStream(stagingUri), stagingUri, extension, newDigest());
+        }
+        String uriPath = createLocation(prefix, filename);
+        return new ExternalizingOutputStream(this, getOutputStream(uriPath), uriPath, null, null);
+    }
+
+    /**
+     * Determine where content uploaded as {@code filename} is externalized, without writing anything yet.
+     */
+    public String createLocation(String prefix, String filename) {
+        int dot = filename.lastIndexOf('.');
+        String name = dot < 0 ? filename : filename.substring(0, dot);
         String key = prefix + "/" + UUID.nameUUIDFromBytes(name.getBytes()).toString();
-        String uriPath = uriPath(key, extension);
-        Resource target = createResource(uriPath);
-        WritableResource writableResource = (WritableResource) target;
-        try (OutputStream outputStream = writableResource.getOutputStream()) {
-            IOUtils.copy(resource.getInputStream(), outputStream);
+        return uriPath(key, extension(filename));
+    }
+
+    /**
+     * A fresh location next to the externalized content, outside any date based path of the location template, so
+     * that staged content left behind can be found by {@link #purgeStaging(long)}.
+     */
+    private String stagingUri(String extension) {
+        return stagingLocation() + UUID.randomUUID() + extension;
+    }
+
+    private String stagingLocation() {
+        return baseLocation() + STAGING_KEY;
+    }
+
+    /**
+     * Where content-addressed content is stored, which only depends on the content.
+     */
+    private String digestUri(String digest, String extension) {
+        return baseLocation() + digest + extension;
+    }
+
+    /**
+     * The location up to the directory holding its first variable.
+     */
+    private String baseLocation() {
+        int variable = location.indexOf('{');
+        return variable < 0 ? location : location.substring(0, location.lastIndexOf('/', variable) + 1);
+    }
+
+    /**
+     * Purge staged content older than the given age every half that age. Content is staged while it is written
+     * content-addressed and normally promoted or discarded right after, but is left behind when the gateway stops
+     * in between.
+     */
+    public void setStagingMaxAge(long stagingMaxAge) {
+        Assert.isTrue(stagingMaxAge > 0, "'stagingMaxAge' must be greater than 0");
+        Assert.state(this.stagingPurger == null, "staging is already purged");
+        this.stagingPurger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-gateway-staging-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, stagingMaxAge / 2);
+        this.stagingPurger.scheduleWithFixedDelay(() -> {
+            try {
+                purgeStaging(stagingMaxAge);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to purge staged content under " + stagingLocation(), e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Delete staged content, and for S3 the incomplete uploads of staged content, older than the given age.
+     *
+     * @return the number of objects deleted or uploads aborted
+     */
+    public int purgeStaging(long maxAge) throws IOException {
+        String stagingLocation = stagingLocation();
+        long before = System.currentTimeMillis() - maxAge;
+        if (s3MultipartUploader != null && stagingLocation.startsWith("s3://")) {
+            return s3MultipartUploader.purge(stagingLocation, before);
         }
-        return uriPath;
+        Resource staging = getResource(stagingLocation);
+        if (!staging.isFile() || !staging.exists()) {
+            return 0;
+        }
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(staging.getFile().toPath())) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toMillis() < before
+                        && Files.deleteIfExists(file)) {
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+
+    public void shutdown() {
+        if (this.stagingPurger != null) {
+            this.stagingPurger.shutdownNow();
+        }
+    }
+
+    private static String extension(String filename) {
+        int dot = filename != null ? filename.lastIndexOf('.') : -1;
+        return dot < 0 ? "" : filename.substring(dot);
     }
 
     private String uriPath(String name, String extension) {
@@ -75,7 +266,117 @@ public class ResourceLoaderSupport {
         return resource;
     }
 
+    /**
+     * Open a stream writing externalized content to the given location, which is complete once the stream is closed.
+     */
+    public OutputStream getOutputStream(String uriString) throws IOException {
+        if (s3MultipartUploader != null && uriString.startsWith("s3://")) {
+            return s3MultipartUploader.openStream(uriString);
+        }
+        return ((WritableResource) createResource(uriString)).getOutputStream();
+    }
+
     public Resource getResource(String location) {
         return resourceLoader.getResource(location);
     }
+
+    /**
+     * Move staged content to the location named after its digest, unless that location already holds it.
+     */
+    String promote(String stagingUri, String digest, String extension) throws IOException {
+        String uriPath = digestUri(digest, extension);
+        if (getResource(uriPath).exists()) {
+            delete(stagingUri);
+            return uriPath;
+        }
+        if (s3MultipartUploader != null && uriPath.startsWith("s3://")) {
+            s3MultipartUploader.move(stagingUri, uriPath);
+            return uriPath;
+        }
+        Resource staged = getResource(stagingUri);
+        Resource target = createResource(uriPath);
+        if (staged.isFile() && target.isFile()) {
+            Files.move(staged.getFile().toPath(), target.getFile().toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            try (InputStream inputStream = staged.getInputStream()) {
+                copy(inputStream, uriPath);
+            }
+            delete(stagingUri);
+        }
+        return uriPath;
+    }
+
+    /**
+     * Write the content to the given location, discarding what was written if reading or writing fails rather than
+     * closing the stream, which would store truncated content.
+     */
+    private long copy(InputStream inputStream, String uriString) throws IOException {
+        OutputStream outputStream = getOutputStream(uriString);
+        if (outputStream instanceof S3MultipartOutputStream) {
+            // closing a failed upload aborts it
+            try {
+                long size = IOUtils.copyLarge(inputStream, outputStream);
+                outputStream.close();
+                return size;
+            } catch (IOException | RuntimeException e) {
+                ((S3MultipartOutputStream) outputStream).abort();
+                throw e;
+            }
+        }
+        try {
+            long size;
+            try {
+                size = IOUtils.copyLarge(inputStream, outputStream);
+            } finally {
+                outputStream.close();
+            }
+            return size;
+        } catch (IOException | RuntimeException e) {
+            try {
+                delete(uriString);
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+    }
+
+    void delete(String uriString) throws IOException {
+        if (s3MultipartUploader != null && uriString.startsWith("s3://")) {
+            s3MultipartUploader.delete(uriString);
+            return;
+        }
+        Resource resource = getResource(uriString);
+        if (resource.isFile()) {
+            Files.deleteIfExists(resource.getFile().toPath());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static long digest(InputStream inputStream, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+            size += n;
+        }
+        return size;
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
 }
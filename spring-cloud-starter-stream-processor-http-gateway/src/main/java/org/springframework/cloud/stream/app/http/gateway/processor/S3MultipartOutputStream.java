@@ -0,0 +1,184 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.PartETag;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * {@link OutputStream} filling part buffers from an {@link S3MultipartUploader} and uploading every full one in the
+ * background. Content smaller than a part is written with a single put on {@link #close()}.
+ * <p>
+ * A part that failed to upload fails the next write, aborting the upload, rather than only the final
+ * {@link #close()}. A writer that fails for any other reason has to {@link #abort()} the stream instead of closing it,
+ * which would store the content written so far.
+ *
+ * @author Haruhiko Nishi
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+    private static final Log logger = LogFactory.getLog(S3MultipartOutputStream.class);
+
+    private final S3MultipartUploader uploader;
+
+    private final String bucket;
+
+    private final String key;
+
+    private final List<Future<PartETag>> parts = new ArrayList<>();
+
+    private byte[] buffer;
+
+    private int count;
+
+    private String uploadId;
+
+    private volatile boolean aborted;
+
+    private volatile RuntimeException failure;
+
+    private boolean closed;
+
+    S3MultipartOutputStream(S3MultipartUploader uploader, String bucket, String key) {
+        this.uploader = uploader;
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (this.buffer == null) {
+                this.buffer = this.uploader.acquireBuffer();
+            }
+            if (this.failure != null) {
+                this.closed = true;
+                abortUpload();
+                throw new IOException("Failed to upload part of s3://" + this.bucket + "/" + this.key, this.failure);
+            }
+            int n = Math.min(len, this.buffer.length - this.count);
+            System.arraycopy(b, off, this.buffer, this.count, n);
+            this.count += n;
+            off += n;
+            len -= n;
+            if (this.count == this.buffer.length) {
+                uploadPart();
+            }
+        }
+    }
+
+    private void uploadPart() throws IOException {
+        try {
+            if (this.uploadId == null) {
+                this.uploadId = this.uploader.initiate(this.bucket, this.key);
+            }
+            this.parts.add(this.uploader.uploadPart(this.bucket, this.key, this.uploadId, this.parts.size() + 1,
+                    this.buffer, this.count, () -> this.aborted, e -> this.failure = e));
+        } catch (RuntimeException e) {
+            this.uploader.releaseBuffer(this.buffer);
+            throw new IOException("Failed to upload part of s3://" + this.bucket + "/" + this.key, e);
+        } finally {
+            this.buffer = null;
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Complete the upload, aborting it if any part failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.uploadId == null) {
+                this.uploader.putObject(this.bucket, this.key, this.buffer != null ? this.buffer : new byte[0],
+                        this.count);
+                releaseBuffer();
+            } else {
+                if (this.count > 0) {
+                    uploadPart();
+                }
+                releaseBuffer();
+                List<PartETag> partETags = new ArrayList<>(this.parts.size());
+                for (Future<PartETag> part : this.parts) {
+                    partETags.add(part.get());
+                }
+                this.uploader.complete(this.bucket, this.key, this.uploadId, partETags);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortUpload();
+            throw new InterruptedIOException();
+        } catch (ExecutionException | AmazonClientException e) {
+            abortUpload();
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("Failed to upload s3://" + this.bucket + "/" + this.key, cause);
+        } catch (IOException | RuntimeException e) {
+            abortUpload();
+            throw e;
+        }
+    }
+
+    /**
+     * Give up on the upload, discarding the parts uploaded so far.
+     */
+    public void abort() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        abortUpload();
+    }
+
+    private void abortUpload() {
+        this.aborted = true;
+        releaseBuffer();
+        if (this.uploadId == null) {
+            return;
+        }
+        for (Future<PartETag> part : this.parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // aborting anyway
+            }
+        }
+        try {
+            this.uploader.abort(this.bucket, this.key, this.uploadId);
+        } catch (AmazonClientException e) {
+            logger.warn("Failed to abort the upload of s3://" + this.bucket + "/" + this.key
+                    + ", its parts remain until a lifecycle rule removes them", e);
+        }
+    }
+
+    private void releaseBuffer() {
+        if (this.buffer != null) {
+            this.uploader.releaseBuffer(this.buffer);
+            this.buffer = null;
+            this.count = 0;
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Writes externalized content to S3 as multipart uploads whose parts are uploaded concurrently.
+ * <p>
+ * Part buffers come from a bounded pool: a writer that gets ahead of the uploads blocks until a part has been
+ * uploaded and its buffer returned, which bounds the memory used to {@code maxBuffers * partSize}. A writer waits at
+ * most the buffer timeout, so that uploads stalled by one destination do not hold up writers indefinitely.
+ *
+ * @author Haruhiko Nishi
+ */
+public class S3MultipartUploader {
+
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private static final int MAX_PARTS = 10000;
+
+    private final AmazonS3 amazonS3;
+
+    private final int partSize;
+
+    private final ExecutorService executor;
+
+    private final Semaphore buffers;
+
+    private final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+
+    private long bufferTimeout = 30000;
+
+    public S3MultipartUploader(AmazonS3 amazonS3, int partSize, int concurrency, int maxBuffers) {
+        Assert.isTrue(partSize >= MIN_PART_SIZE, "'partSize' must be at least 5MB");
+        Assert.isTrue(maxBuffers > 0, "'maxBuffers' must be positive");
+        this.amazonS3 = amazonS3;
+        this.partSize = partSize;
+        this.buffers = new Semaphore(maxBuffers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Milliseconds a writer waits for a part buffer before failing.
+     */
+    public void setBufferTimeout(long bufferTimeout) {
+        this.bufferTimeout = bufferTimeout;
+    }
+
+    /**
+     * Open a stream writing to the given {@code s3://bucket/key} location. The object is created when the stream is
+     * closed, or not at all when it is {@link S3MultipartOutputStream#abort() aborted}.
+     */
+    public S3MultipartOutputStream openStream(String uri) {
+        String[] location = bucketAndKey(uri);
+        return new S3MultipartOutputStream(this, location[0], location[1]);
+    }
+
+    /**
+     * Move an object with a server side copy, copying objects larger than a single copy allows in parts.
+     */
+    void move(String fromUri, String toUri) {
+        String[] from = bucketAndKey(fromUri);
+        String[] to = bucketAndKey(toUri);
+        long size = this.amazonS3.getObjectMetadata(from[0], from[1]).getContentLength();
+        if (size <= MAX_COPY_SIZE) {
+            this.amazonS3.copyObject(from[0], from[1], to[0], to[1]);
+        } else {
+            copyInParts(from, to, size);
+        }
+        this.amazonS3.deleteObject(from[0], from[1]);
+    }
+
+    private void copyInParts(String[] from, String[] to, long size) {
+        long partSize = Math.max(this.partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = initiate(to[0], to[1]);
+        try {
+            List<PartETag> partETags = new ArrayList<>();
+            for (long position = 0; position < size; position += partSize) {
+                partETags.add(this.amazonS3.copyPart(new CopyPartRequest()
+                        .withSourceBucketName(from[0])
+                        .withSourceKey(from[1])
+                        .withDestinationBucketName(to[0])
+                        .withDestinationKey(to[1])
+                        .withUploadId(uploadId)
+                        .withPartNumber(partETags.size() + 1)
+                        .withFirstByte(position)
+                        .withLastByte(Math.min(position + partSize, size) - 1))
+                        .getPartETag());
+            }
+            complete(to[0], to[1], uploadId, partETags);
+        } catch (RuntimeException e) {
+            abort(to[0], to[1], uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * Delete the objects under the given {@code s3://bucket/prefix} last modified before the given time, and abort
+     * the multipart uploads to it initiated before then.
+     *
+     * @return the number of objects deleted and uploads aborted
+     */
+    int purge(String prefixUri, long before) {
+        String[] location = bucketAndKey(prefixUri);
+        Date cutoff = new Date(before);
+        int purged = 0;
+        ListObjectsV2Request listObjects = new ListObjectsV2Request()
+                .withBucketName(location[0])
+                .withPrefix(location[1]);
+        ListObjectsV2Result objects;
+        do {
+            objects = this.amazonS3.listObjectsV2(listObjects);
+            for (S3ObjectSummary object : objects.getObjectSummaries()) {
+                if (object.getLastModified().before(cutoff)) {
+                    this.amazonS3.deleteObject(location[0], object.getKey());
+                    purged++;
+                }
+            }
+            listObjects.setContinuationToken(objects.getNextContinuationToken());
+        } while (objects.isTruncated());
+        ListMultipartUploadsRequest listUploads = new ListMultipartUploadsRequest(location[0])
+                .withPrefix(location[1]);
+        MultipartUploadListing uploads;
+        do {
+            uploads = this.amazonS3.listMultipartUploads(listUploads);
+            for (MultipartUpload upload : uploads.getMultipartUploads()) {
+                if (upload.getInitiated().before(cutoff)) {
+                    abort(location[0], upload.getKey(), upload.getUploadId());
+                    purged++;
+                }
+            }
+            listUploads.setKeyMarker(uploads.getNextKeyMarker());
+            listUploads.setUploadIdMarker(uploads.getNextUploadIdMarker());
+        } while (uploads.isTruncated());
+        return purged;
+    }
+
+    void delete(String uri) {
+        String[] location = bucketAndKey(uri);
+        this.amazonS3.deleteObject(location[0], location[1]);
+    }
+
+    private static String[] bucketAndKey(String uri) {
+        Assert.isTrue(uri.startsWith("s3://"), "not an s3 uri: " + uri);
+        String location = uri.substring("s3://".length());
+        int slash = location.indexOf('/');
+        Assert.isTrue(slash > 0 && slash < location.length() - 1, "no bucket or key in " + uri);
+        return new String[] {location.substring(0, slash), location.substring(slash + 1)};
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    byte[] acquireBuffer() throws IOException {
+        try {
+            if (!this.buffers.tryAcquire(this.bufferTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out after " + this.bufferTimeout + "ms waiting for an upload buffer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        byte[] buffer = this.pool.poll();
+        return buffer != null ? buffer : new byte[this.partSize];
+    }
+
+    void releaseBuffer(byte[] buffer) {
+        this.pool.offer(buffer);
+        this.buffers.release();
+    }
+
+    void putObject(String bucket, String key, byte[] buffer, int length) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        this.amazonS3.putObject(bucket, key, new ByteArrayInputStream(buffer, 0, length), metadata);
+    }
+
+    String initiate(String bucket, String key) {
+        return this.amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+    }
+
+    /**
+     * Upload a part in the background, returning its buffer to the pool once done. The part is skipped if the
+     * upload has been aborted by the time it runs. A failure is passed to {@code failed} before the buffer is
+     * returned, so a writer waiting for that buffer learns of it.
+     */
+    Future<PartETag> uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] buffer,
+            int length, BooleanSupplier aborted, Consumer<RuntimeException> failed) {
+        return this.executor.submit(() -> {
+            try {
+                if (aborted.getAsBoolean()) {
+                    return null;
+                }
+                return this.amazonS3.uploadPart(new UploadPartRequest()
+                        .withBucketName(bucket)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                        .withPartSize(length))
+                        .getPartETag();
+            } catch (RuntimeException e) {
+                failed.accept(e);
+                throw e;
+            } finally {
+                releaseBuffer(buffer);
+            }
+        });
+    }
+
+    void complete(String bucket, String key, String uploadId, List<PartETag> partETags) {
+        this.amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+    }
+
+    void abort(String bucket, String key, String uploadId) {
+        this.amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+    }
+
+}
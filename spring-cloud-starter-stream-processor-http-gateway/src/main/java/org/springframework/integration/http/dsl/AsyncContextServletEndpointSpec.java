@@ -1,6 +1,21 @@
 package org.springframework.integration.http.dsl;
 
+import org.springframework.integration.http.inbound.AdmissionController;
 import org.springframework.integration.http.inbound.AsyncContextServletMessagingGateway;
+import org.springframework.integration.http.inbound.AsyncReplyStore;
+import org.springframework.integration.http.inbound.GatewayMetrics;
+import org.springframework.integration.http.inbound.PriorityLanes;
+import org.springframework.integration.http.inbound.RateLimiter;
+import org.springframework.integration.http.inbound.ReplyCache;
+import org.springframework.integration.http.inbound.ReplyStreams;
+import org.springframework.integration.http.inbound.RequestCoalescer;
+import org.springframework.integration.http.inbound.RequestHedger;
+import org.springframework.integration.http.inbound.ResourceResponseWriter;
+import org.springframework.integration.http.inbound.StreamingMultipartExternalizer;
+import org.springframework.integration.http.inbound.TimeoutPolicy;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+
+import java.util.concurrent.Executor;
 
 public class AsyncContextServletEndpointSpec extends BaseHttpInboundEndpointSpec<AsyncContextServletEndpointSpec, AsyncContextServletMessagingGateway> {
 
@@ -17,4 +32,104 @@ public class AsyncContextServletEndpointSpec extends BaseHttpInboundEndpointSpec
         this.target.setTimeout(timeout);
         return this;
     }
+
+    public AsyncContextServletEndpointSpec timeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        this.target.setTimeoutPolicy(timeoutPolicy);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec continuationRegistry(ContinuationRegistry continuationRegistry) {
+        this.target.setContinuationRegistry(continuationRegistry);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec admissionController(AdmissionController admissionController) {
+        this.target.setAdmissionController(admissionController);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec retryAfter(long retryAfter) {
+        this.target.setRetryAfter(retryAfter);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec metrics(GatewayMetrics metrics) {
+        this.target.setMetrics(metrics);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec resourceResponseWriter(ResourceResponseWriter resourceResponseWriter) {
+        this.target.setResourceResponseWriter(resourceResponseWriter);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec streamingMultipartExternalizer(StreamingMultipartExternalizer externalizer) {
+        this.target.setStreamingMultipartExternalizer(externalizer);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec claimCheckThreshold(long claimCheckThreshold) {
+        this.target.setClaimCheckThreshold(claimCheckThreshold);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec replyCache(ReplyCache replyCache) {
+        this.target.setReplyCache(replyCache);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec requestCoalescer(RequestCoalescer requestCoalescer) {
+        this.target.setRequestCoalescer(requestCoalescer);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec nonBlockingIo(boolean nonBlockingIo) {
+        this.target.setNonBlockingIo(nonBlockingIo);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec maxBodySize(long maxBodySize) {
+        this.target.setMaxBodySize(maxBodySize);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec directReply(boolean directReply) {
+        this.target.setDirectReply(directReply);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec directReplyExecutor(Executor directReplyExecutor) {
+        this.target.setDirectReplyExecutor(directReplyExecutor);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec replyStreams(ReplyStreams replyStreams) {
+        this.target.setReplyStreams(replyStreams);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec asyncReplyStore(AsyncReplyStore asyncReplyStore) {
+        this.target.setAsyncReplyStore(asyncReplyStore);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec requestHedger(RequestHedger requestHedger) {
+        this.target.setRequestHedger(requestHedger);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec priorityLanes(PriorityLanes priorityLanes) {
+        this.target.setPriorityLanes(priorityLanes);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec rateLimiter(RateLimiter rateLimiter) {
+        this.target.setRateLimiter(rateLimiter);
+        return this;
+    }
+
+    public AsyncContextServletEndpointSpec replyPartition(Integer replyPartition) {
+        this.target.setReplyPartition(replyPartition);
+        return this;
+    }
 }
@@ -0,0 +1,165 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.util.Assert;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of requests parked waiting for a reply, globally and optionally per client.
+ * <p>
+ * Admission is a CAS on a counter; per-client counters are removed again once a client has nothing
+ * in flight. A counter is retired by moving it to a negative value before it is removed, so a
+ * concurrent admission that still holds it retries with a fresh one instead of being lost.
+ */
+public class AdmissionController {
+
+    private static final int RETIRED = -1;
+
+    private final int maxInFlight;
+
+    private final int maxInFlightPerClient;
+
+    private final ClientKeyResolver clientKeyResolver;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ConcurrentMap<String, AtomicInteger> inFlightPerClient = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param maxInFlight maximum number of requests in flight, 0 for no limit
+     * @param maxInFlightPerClient maximum number of requests in flight per client, 0 for no limit
+     * @param clientKeyResolver how to identify a client
+     */
+    public AdmissionController(int maxInFlight, int maxInFlightPerClient, ClientKeyResolver clientKeyResolver) {
+        Assert.isTrue(maxInFlight >= 0, "'maxInFlight' must not be negative");
+        Assert.isTrue(maxInFlightPerClient >= 0, "'maxInFlightPerClient' must not be negative");
+        Assert.notNull(clientKeyResolver, "'clientKeyResolver' must not be null");
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerClient = maxInFlightPerClient;
+        this.clientKeyResolver = clientKeyResolver;
+    }
+
+    /**
+     * @return a permit to release once the request is done, or {@code null} if the request must be rejected
+     */
+    public Permit tryAcquire(HttpServletRequest request) {
+        return tryAcquire(request, true);
+    }
+
+    /**
+     * @param global whether the request counts against the global limit as well as its client's, rather than being
+     * bounded by a budget of its own such as its lane's
+     * @return a permit to release once the request is done, or {@code null} if the request must be rejected
+     */
+    public Permit tryAcquire(HttpServletRequest request, boolean global) {
+        if (global && !tryIncrement(this.inFlight, this.maxInFlight)) {
+            this.rejected.increment();
+            return null;
+        }
+        String clientKey = null;
+        AtomicInteger clientInFlight = null;
+        if (this.maxInFlightPerClient > 0) {
+            clientKey = this.clientKeyResolver.resolve(request);
+            clientInFlight = acquireClient(clientKey);
+            if (clientInFlight == null) {
+                if (global) {
+                    this.inFlight.decrementAndGet();
+                }
+                this.rejected.increment();
+                return null;
+            }
+        }
+        return new Permit(clientKey, clientInFlight, global);
+    }
+
+    public int getInFlightCount() {
+        return this.inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    private AtomicInteger acquireClient(String clientKey) {
+        while (true) {
+            AtomicInteger counter = this.inFlightPerClient.computeIfAbsent(clientKey, key -> new AtomicInteger());
+            int current = counter.get();
+            if (current == RETIRED) {
+                this.inFlightPerClient.remove(clientKey, counter);
+                continue;
+            }
+            if (current >= this.maxInFlightPerClient) {
+                return null;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return counter;
+            }
+        }
+    }
+
+    private void releaseClient(String clientKey, AtomicInteger counter) {
+        while (true) {
+            int current = counter.get();
+            if (current == 1) {
+                if (counter.compareAndSet(1, RETIRED)) {
+                    this.inFlightPerClient.remove(clientKey, counter);
+                    return;
+                }
+            } else if (counter.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter, int max) {
+        if (max == 0) {
+            counter.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = counter.get();
+            if (current >= max) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public final class Permit {
+
+        private final String clientKey;
+
+        private final AtomicInteger clientInFlight;
+
+        private final boolean global;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String clientKey, AtomicInteger clientInFlight, boolean global) {
+            this.clientKey = clientKey;
+            this.clientInFlight = clientInFlight;
+            this.global = global;
+        }
+
+        public void release() {
+            if (this.released.compareAndSet(false, true)) {
+                if (this.clientInFlight != null) {
+                    releaseClient(this.clientKey, this.clientInFlight);
+                }
+                if (this.global) {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+}
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizedContent;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizingOutputStream;
 import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
@@ -13,6 +15,8 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.integration.http.converter.MultipartAwareFormHttpMessageConverter;
 import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.integration.http.inbound.continuation.ServletContinuation;
 import org.springframework.integration.http.inbound.continuation.Continuations;
 import org.springframework.integration.http.multipart.MultipartHttpInputMessage;
 import org.springframework.integration.http.multipart.UploadedMultipartFile;
@@ -23,15 +27,29 @@ import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.*;
 import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.util.UrlPathHelper;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Inbound Messaging Gateway that handles HTTP Requests. May be configured as a bean in the Application Context and
@@ -65,16 +83,75 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
 
     private static final String CONTINUATION_ID = "continuation_id";
 
+    private static final String REPLY_PARTITION = "reply_partition";
+
+    private static final String IS_REFERENCE = "is_reference";
+
+    private static final String DEADLINE = "deadline";
+
+    private static final String PREFER = "Prefer";
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
     private static final long TIMEOUT = 300000;
 
+    private static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    private static final String REQUEST_START_ATTRIBUTE = AsyncContextServletMessagingGateway.class.getName() + ".START";
+
+    private static final String STREAM_ABORTED_ATTRIBUTE =
+            AsyncContextServletMessagingGateway.class.getName() + ".STREAM_ABORTED";
+
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private volatile boolean convertExceptions;
 
     private long timeout = TIMEOUT;
 
+    private TimeoutPolicy timeoutPolicy;
+
     private ResourceLoaderSupport resourceLoaderSupport;
 
+    private ContinuationRegistry continuationRegistry = Continuations.getRegistry();
+
+    private String replyPartition;
+
+    private AdmissionController admissionController;
+
+    private long retryAfter = 1;
+
+    private GatewayMetrics metrics = GatewayMetrics.NOOP;
+
+    private ResourceResponseWriter resourceResponseWriter = new ResourceResponseWriter();
+
+    private StreamingMultipartExternalizer streamingMultipartExternalizer;
+
+    private long claimCheckThreshold = -1;
+
+    private ReplyCache replyCache;
+
+    private RequestCoalescer requestCoalescer;
+
+    private boolean nonBlockingIo;
+
+    private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    private boolean directReply;
+
+    private Executor directReplyExecutor;
+
+    private ReplyStreams replyStreams;
+
+    private AsyncReplyStore asyncReplyStore;
+
+    private RequestHedger requestHedger;
+
+    private PriorityLanes priorityLanes;
+
+    private RateLimiter rateLimiter;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
     public AsyncContextServletMessagingGateway(ResourceLoaderSupport resourceLoaderSupport) {
         super(false);
         this.resourceLoaderSupport = resourceLoaderSupport;
@@ -86,16 +163,67 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
     protected void doStart() {
         SubscribableChannel channel = (SubscribableChannel) this.getReplyChannel();
         channel.subscribe(message -> {
-            String continuationId = message.getHeaders().get(CONTINUATION_ID, String.class);
-            Continuation continuation = Continuations.getContinuation(Integer.parseInt(continuationId));
-            if (continuation != null && !continuation.isExpired()) {
-                continuation.setReply(message);
-            } else {
-                logger.warn("Client connection with " + continuationId + " has timed out. Failed to respond with message: " + message);
+            if (!MessageBatcher.isBatch(message)) {
+                reply(message);
+                return;
             }
+            List<Message<?>> replies;
+            try {
+                replies = MessageBatcher.split(message);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.error("Failed to split batched reply: " + message, e);
+                return;
+            }
+            replies.forEach(this::reply);
         });
     }
 
+    private void reply(Message<?> message) {
+        String continuationId = message.getHeaders().get(CONTINUATION_ID, String.class);
+        if (continuationId != null && !continuationRegistry.isLocal(continuationId)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignoring reply for " + continuationId + " owned by another gateway instance");
+            }
+            return;
+        }
+        if (asyncReplyStore != null && asyncReplyStore.complete(continuationId, message)) {
+            return;
+        }
+        if (requestHedger != null && !ReplyStreams.isChunk(message) && requestHedger.replied(continuationId)) {
+            return;
+        }
+        if (replyStreams != null && ReplyStreams.isChunk(message)) {
+            replyChunk(continuationId, message);
+            return;
+        }
+        int followers = requestCoalescer != null ? requestCoalescer.replied(continuationId, message) : 0;
+        Continuation continuation = continuationRegistry.get(continuationId);
+        if (continuation != null && !continuation.isExpired()) {
+            continuation.setReply(message);
+        } else if (followers == 0) {
+            metrics.lateReply();
+            logger.warn("Client connection with " + continuationId + " has timed out. Failed to respond with message: " + message);
+        }
+    }
+
+    /**
+     * Streamed replies are not shared with coalesced requests: those are answered with 503 and may retry.
+     */
+    private void replyChunk(String continuationId, Message<?> chunk) {
+        if (replyStreams.offer(continuationId, chunk)) {
+            return;
+        }
+        Continuation continuation = continuationRegistry.get(continuationId);
+        if (continuation != null && !continuation.isExpired() && replyStreams.open(continuation, chunk)) {
+            if (requestCoalescer != null) {
+                requestCoalescer.failed(continuationId);
+            }
+        } else {
+            metrics.lateReply();
+            logger.warn("Client connection with " + continuationId + " has timed out. Failed to stream chunk: " + chunk);
+        }
+    }
+
     public void setConvertExceptions(boolean convertExceptions) {
         this.convertExceptions = convertExceptions;
     }
@@ -104,55 +232,558 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
         this.timeout = timeout;
     }
 
+    /**
+     * Decide the timeout per request, overriding {@link #setTimeout(long)}.
+     */
+    public void setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    public void setContinuationRegistry(ContinuationRegistry continuationRegistry) {
+        Assert.notNull(continuationRegistry, "'continuationRegistry' must not be null");
+        this.continuationRegistry = continuationRegistry;
+    }
+
+    /**
+     * Partition replies for this instance are expected on, sent along with every request as
+     * the {@code reply_partition} header so that backends can route the reply back to this node.
+     */
+    public void setReplyPartition(Integer replyPartition) {
+        this.replyPartition = replyPartition != null ? replyPartition.toString() : null;
+    }
+
+    /**
+     * Bound the number of requests waiting for a reply. Requests over the limit are rejected with
+     * 503 before anything is published.
+     */
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * Seconds sent in the {@code Retry-After} header of rejected requests.
+     */
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public void setMetrics(GatewayMetrics metrics) {
+        Assert.notNull(metrics, "'metrics' must not be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the writer used for {@link Resource} replies, e.g. resolved {@code is_reference} replies.
+     * {@code null} hands them to the {@link HttpMessageConverter}s like any other reply.
+     */
+    public void setResourceResponseWriter(ResourceResponseWriter resourceResponseWriter) {
+        this.resourceResponseWriter = resourceResponseWriter;
+    }
+
+    /**
+     * Set to parse multipart requests as they are read instead of through the {@code multipartResolver}, which
+     * should then resolve lazily so that the body is left unread.
+     */
+    public void setStreamingMultipartExternalizer(StreamingMultipartExternalizer streamingMultipartExternalizer) {
+        this.streamingMultipartExternalizer = streamingMultipartExternalizer;
+    }
+
+    /**
+     * Set the size in bytes above which a non-multipart request body is externalized and published as a reference,
+     * in the {@code uri} and {@code original_content_type} shape of {@code is_reference} replies. -1, the default,
+     * publishes every body as is.
+     */
+    public void setClaimCheckThreshold(long claimCheckThreshold) {
+        this.claimCheckThreshold = claimCheckThreshold;
+    }
+
+    /**
+     * Answer repeated GET requests from cached replies without publishing them.
+     */
+    public void setReplyCache(ReplyCache replyCache) {
+        this.replyCache = replyCache;
+    }
+
+    /**
+     * Publish only one of identical concurrent GET requests and answer all of them with its reply.
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Read request bodies and write replies without blocking a container thread on the client, with a
+     * {@link javax.servlet.ReadListener} and {@link javax.servlet.WriteListener} on the request's
+     * {@link javax.servlet.AsyncContext}. Multipart requests, bodies to be claim-checked and {@link Resource} replies
+     * are still read and written blocking.
+     */
+    public void setNonBlockingIo(boolean nonBlockingIo) {
+        this.nonBlockingIo = nonBlockingIo;
+    }
+
+    /**
+     * Bodies read into memory by non-blocking I/O that are larger than this are answered with 413. 10MB by default.
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        Assert.isTrue(maxBodySize > 0, "'maxBodySize' must be positive");
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Write replies straight to the suspended response and complete it, instead of dispatching the request through
+     * the container, and its filters, once more.
+     */
+    public void setDirectReply(boolean directReply) {
+        this.directReply = directReply;
+    }
+
+    /**
+     * Where direct replies are written; {@code null}, the default, writes them on the thread delivering the reply.
+     */
+    public void setDirectReplyExecutor(Executor directReplyExecutor) {
+        this.directReplyExecutor = directReplyExecutor;
+    }
+
+    /**
+     * Stream replies sent as several chunks to the client as they arrive, as Server-Sent Events if it accepts
+     * {@code text/event-stream} and as a chunked body otherwise. Chunks are written on the thread delivering them.
+     */
+    public void setReplyStreams(ReplyStreams replyStreams) {
+        this.replyStreams = replyStreams;
+    }
+
+    /**
+     * Answer requests on async routes, or preferring {@code respond-async}, with 202 and the location their reply
+     * can be fetched from once it has arrived, instead of keeping them waiting.
+     */
+    public void setAsyncReplyStore(AsyncReplyStore asyncReplyStore) {
+        this.asyncReplyStore = asyncReplyStore;
+    }
+
+    /**
+     * Tell the hedger the request channel is wrapped in about replies, and drop the second reply to hedged requests
+     * without a warning.
+     */
+    public void setRequestHedger(RequestHedger requestHedger) {
+        this.requestHedger = requestHedger;
+    }
+
+    /**
+     * Publish the requests taken by a lane to the lane's channel, within its in-flight budget and timeout, through
+     * the lanes the request channel is wrapped in. Requests rejected because their lane is full are answered with 503.
+     * The requests of a lane with an in-flight budget of its own only count against the per-client admission limit.
+     */
+    public void setPriorityLanes(PriorityLanes priorityLanes) {
+        this.priorityLanes = priorityLanes;
+    }
+
+    /**
+     * Answer requests from clients over their rate with 429 before anything else is done for them.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     public final void handleRequest(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
             throws IOException {
+        if (servletRequest.getAttribute(STREAM_ABORTED_ATTRIBUTE) != null) {
+            // failing the dispatch of a committed response makes the container close the connection without the
+            // last chunk, so the client can tell the reply is truncated
+            throw new IOException("Reply stream " + servletRequest.getAttribute(ServletContinuation.ID_ATTRIBUTE)
+                    + " aborted");
+        }
         Object responseContent = null;
+        if (rateLimiter != null && servletRequest.getAttribute(ServletContinuation.ATTRIBUTE) == null) {
+            long wait = rateLimiter.tryAcquire(servletRequest);
+            if (wait > 0) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Rejecting request from " + servletRequest.getRemoteAddr() + ": rate limit exceeded");
+                }
+                reject(new ServletServerHttpResponse(servletResponse), HttpStatus.TOO_MANY_REQUESTS,
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+                return;
+            }
+        }
         ServletServerHttpRequest request = prepareRequest(servletRequest);
         MediaType contentType = request.getHeaders().getContentType();
         if (contentType != null && contentType.getCharset() != null) {
             MediaType mediaType = new MediaType(contentType.getType(), contentType.getSubtype());
             request.getHeaders().setContentType(mediaType);
         }
+        // only ever set by the gateway itself, a client must not make it read a uri of its choosing
+        request.getHeaders().remove(IS_REFERENCE);
+        // only ever set by the gateway itself, a client must not pick a lane of its choosing
+        request.getHeaders().remove(PriorityLanes.LANE);
         ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
-        Continuation continuation = Continuations.getContinuation(servletRequest, timeout);
-        request.getHeaders().set(CONTINUATION_ID, continuation.getId().toString());
+        ServletContinuation continuation = (ServletContinuation) servletRequest.getAttribute(ServletContinuation.ATTRIBUTE);
+        if (continuation == null) {
+            String path = asyncReplyStore != null || priorityLanes != null
+                    ? urlPathHelper.getLookupPathForRequest(servletRequest) : null;
+            boolean respondsAsync = false;
+            if (asyncReplyStore != null) {
+                if (asyncReplyStore.isStatusRequest(servletRequest.getMethod(), path)) {
+                    writeStoredReply(request, response, asyncReplyStore.get(path));
+                    return;
+                }
+                respondsAsync = asyncReplyStore.respondsAsync(path, Collections.list(servletRequest.getHeaders(PREFER)));
+            }
+            ReplyCache.CachedReply cachedReply = replyCache != null && !respondsAsync
+                    ? replyCache.get(servletRequest) : null;
+            if (cachedReply != null) {
+                servletRequest.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+                try {
+                    response.getHeaders().set(HttpHeaders.AGE, Long.toString(cachedReply.getAge()));
+                    responseContent = setupResponseAndConvertReply(response, cachedReply.getReply());
+                } catch (Exception e) {
+                    responseContent = handleExceptionInternal(e);
+                }
+                writeResponseContent(responseContent, servletRequest, request, response);
+                metrics.replied(servletRequest, servletResponse.getStatus(), elapsedNanos(servletRequest));
+                return;
+            }
+            PriorityLanes.Lane lane = priorityLanes != null ? priorityLanes.select(path, request.getHeaders()) : null;
+            if (lane != null && !lane.tryAcquire()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Rejecting request from " + servletRequest.getRemoteAddr() + ": lane " + lane.getName()
+                            + " is full");
+                }
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, priorityLanes.getRetryAfter());
+                return;
+            }
+            AdmissionController.Permit permit = null;
+            if (admissionController != null) {
+                // a lane with a budget of its own is kept out of the global limit, so the other lanes cannot use up
+                // the room it has been given
+                permit = admissionController.tryAcquire(servletRequest, lane == null || !lane.hasBudget());
+                if (permit == null) {
+                    if (lane != null) {
+                        lane.release();
+                    }
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Rejecting request from " + servletRequest.getRemoteAddr() + ": too many requests in flight");
+                    }
+                    reject(response, HttpStatus.SERVICE_UNAVAILABLE, retryAfter);
+                    return;
+                }
+            }
+            if (respondsAsync) {
+                acceptAsync(request, response, permit, lane);
+                return;
+            }
+            long requestTimeout = lane != null && lane.getTimeout() >= 0 ? lane.getTimeout()
+                    : timeoutPolicy != null ? timeoutPolicy.getTimeout(servletRequest) : timeout;
+            servletRequest.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+            continuation = continuationRegistry.getContinuation(servletRequest, requestTimeout);
+            request.getHeaders().set(DEADLINE, Long.toString(System.currentTimeMillis() + requestTimeout));
+            if (permit != null) {
+                continuation.addDisposeCallback(permit::release);
+            }
+            if (lane != null) {
+                continuation.addDisposeCallback(lane::release);
+                request.getHeaders().set(PriorityLanes.LANE, lane.getName());
+            }
+            if (directReply) {
+                continuation.setReplyHandler((context, reply) -> completeDirectly(context, request, reply));
+            }
+        }
+        request.getHeaders().set(CONTINUATION_ID, continuation.getId());
+        if (replyPartition != null) {
+            request.getHeaders().set(REPLY_PARTITION, replyPartition);
+        }
         Message<?> responseMessage = continuation.dispatch(servletRequest);
         try {
             if (continuation.isExpired()) {
+                if (timeoutPolicy != null) {
+                    timeoutPolicy.recordLatency(servletRequest,
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos(servletRequest)));
+                }
+                metrics.timedOut(servletRequest);
                 response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
             } else {
                 if (responseMessage == null) {
-                    RequestEntity<Object> httpEntity = prepareRequestEntity(request);
-                    doHandleRequest(servletRequest, httpEntity, servletResponse);
-                } else {
-                    Boolean isReference = responseMessage.getHeaders().get("is_reference", Boolean.class);
-                    if (isReference != null && isReference) {
-                        Object payload = responseMessage.getPayload();
-                        JsonNode jsonNode;
-                        if (payload instanceof byte[]) {
-                            jsonNode = objectMapper.readTree((byte[])payload);
+                    if (requestCoalescer == null || requestCoalescer.join(servletRequest, continuation)) {
+                        if (nonBlockingIo && canReadAsync(request)) {
+                            readAsync(request, servletResponse, continuation);
                         } else {
-                            jsonNode = objectMapper.valueToTree(payload);
+                            RequestEntity<Object> httpEntity = prepareRequestEntity(request);
+                            doHandleRequest(servletRequest, httpEntity, servletResponse);
+                            metrics.published(servletRequest, elapsedNanos(servletRequest));
                         }
-                        String originalContentType = jsonNode.path(ORIGINAL_CONTENT_TYPE).asText();
-                        String uri = jsonNode.path("uri").asText();
-                        Assert.isTrue(!StringUtils.isEmpty(originalContentType), "'original_content_type' not found");
-                        Assert.isTrue(!StringUtils.isEmpty(uri), "'uri' not found");
-                        Resource resource = resourceLoaderSupport.getResource(uri);
-                        MimeType mimeType = MimeType.valueOf(originalContentType);
-                        responseMessage = MessageBuilder.withPayload(resource).setHeader(MessageHeaders.CONTENT_TYPE, mimeType.toString()).build();
-                    } else {
-                        MimeType mimeType = responseMessage.getHeaders()
-                                .get(MessageHeaders.CONTENT_TYPE, MimeType.class);
-                        responseMessage = MessageBuilder.fromMessage(responseMessage)
-                                .setHeader(MessageHeaders.CONTENT_TYPE, mimeType.toString()).build();
                     }
+                } else if (replyStreams != null && ReplyStreams.isChunk(responseMessage)) {
+                    streamReply(servletRequest.startAsync(), request, response, responseMessage);
+                    return;
+                } else {
+                    responseMessage = prepareReply(responseMessage, servletRequest);
                     responseContent = setupResponseAndConvertReply(response, responseMessage);
+                    cacheReply(servletRequest, servletResponse, responseMessage);
                 }
             }
+        } catch (MaxUploadSizeExceededException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rejecting multipart request: " + e.getMessage());
+            }
+            response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+            response.flush();
+            if (servletRequest.isAsyncStarted()) {
+                servletRequest.getAsyncContext().complete();
+            }
+            return;
+        } catch (Exception e) {
+            if (requestCoalescer != null && responseMessage == null) {
+                requestCoalescer.failed(continuation.getId());
+            }
+            responseContent = handleExceptionInternal(e);
+        }
+        writeResponseContent(responseContent, servletRequest, request, response);
+        if (responseMessage != null) {
+            metrics.replied(servletRequest, servletResponse.getStatus(), elapsedNanos(servletRequest));
+        }
+    }
+
+    /**
+     * Cache a reply about to be written with 200, before it is, so that a client repeating the request as soon as it
+     * has the reply finds it.
+     */
+    private void cacheReply(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
+            Message<?> responseMessage) {
+        if (replyCache != null && servletResponse.getStatus() == HttpStatus.OK.value()) {
+            replyCache.put(servletRequest, responseMessage);
+        }
+    }
+
+    private Message<?> prepareReply(Message<?> responseMessage, HttpServletRequest servletRequest) throws IOException {
+        if (timeoutPolicy != null) {
+            timeoutPolicy.recordLatency(servletRequest, TimeUnit.NANOSECONDS.toMillis(elapsedNanos(servletRequest)));
+        }
+        return resolveReply(responseMessage);
+    }
+
+    private Message<?> resolveReply(Message<?> responseMessage) throws IOException {
+        Boolean isReference = responseMessage.getHeaders().get(IS_REFERENCE, Boolean.class);
+        if (isReference != null && isReference) {
+            return resolveReference(responseMessage);
+        }
+        MimeType mimeType = responseMessage.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        return MessageBuilder.fromMessage(responseMessage)
+                .setHeader(MessageHeaders.CONTENT_TYPE, mimeType.toString()).build();
+    }
+
+    /**
+     * Publish the request and answer it with 202 right away; its reply is kept in the {@link AsyncReplyStore}, which
+     * holds on to the admission permit and the lane the request was given until the reply arrives or expires.
+     */
+    private void acceptAsync(ServletServerHttpRequest request, ServletServerHttpResponse response,
+            AdmissionController.Permit permit, PriorityLanes.Lane lane) throws IOException {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        servletRequest.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+        String continuationId = continuationRegistry.issueId();
+        request.getHeaders().set(CONTINUATION_ID, continuationId);
+        request.getHeaders().set(DEADLINE,
+                Long.toString(System.currentTimeMillis() + asyncReplyStore.getTimeToLive()));
+        if (replyPartition != null) {
+            request.getHeaders().set(REPLY_PARTITION, replyPartition);
+        }
+        if (lane != null) {
+            request.getHeaders().set(PriorityLanes.LANE, lane.getName());
+        }
+        Object responseContent = null;
+        String location = servletRequest.getContextPath() + asyncReplyStore.accept(continuationId, () -> {
+            if (permit != null) {
+                permit.release();
+            }
+            if (lane != null) {
+                lane.release();
+            }
+        });
+        try {
+            RequestEntity<Object> httpEntity = prepareRequestEntity(request);
+            doHandleRequest(servletRequest, httpEntity, response.getServletResponse());
+            metrics.published(servletRequest, elapsedNanos(servletRequest));
+            response.setStatusCode(HttpStatus.ACCEPTED);
+            response.getHeaders().set(HttpHeaders.LOCATION, location);
+            response.getHeaders().set(PREFERENCE_APPLIED, AsyncReplyStore.RESPOND_ASYNC);
         } catch (Exception e) {
+            asyncReplyStore.discard(continuationId);
             responseContent = handleExceptionInternal(e);
         }
+        if (!writeResponseContent(responseContent, servletRequest, request, response)) {
+            response.flush();
+        }
+    }
+
+    /**
+     * Answer a status request with the stored reply, with 202 while it has not arrived, or with 404 if the location is
+     * unknown or has expired.
+     */
+    private void writeStoredReply(ServletServerHttpRequest request, ServletServerHttpResponse response,
+            AsyncReplyStore.Result result) throws IOException {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        Object responseContent = null;
+        if (result == null) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+        } else if (!result.isDone()) {
+            response.setStatusCode(HttpStatus.ACCEPTED);
+            response.getHeaders().set(HttpHeaders.LOCATION, servletRequest.getRequestURI());
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(asyncReplyStore.getRetryAfter()));
+        } else {
+            try {
+                responseContent = setupResponseAndConvertReply(response, resolveReply(result.getReply()));
+            } catch (Exception e) {
+                responseContent = handleExceptionInternal(e);
+            }
+        }
+        if (!writeResponseContent(responseContent, servletRequest, request, response)) {
+            response.flush();
+        }
+    }
+
+    private void completeDirectly(AsyncContext context, ServletServerHttpRequest request, Message<?> reply) {
+        if (directReplyExecutor == null) {
+            writeDirectly(context, request, reply);
+            return;
+        }
+        try {
+            directReplyExecutor.execute(() -> writeDirectly(context, request, reply));
+        } catch (RejectedExecutionException e) {
+            writeDirectly(context, request, reply);
+        }
+    }
+
+    /**
+     * The part of {@link #handleRequest} a resumed dispatch runs, minus the dispatch itself.
+     */
+    private void writeDirectly(AsyncContext context, ServletServerHttpRequest request, Message<?> reply) {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        HttpServletResponse servletResponse = (HttpServletResponse) context.getResponse();
+        ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+        boolean completesAsync = false;
+        try {
+            if (replyStreams != null && ReplyStreams.isChunk(reply)) {
+                streamReply(context, request, response, reply);
+                completesAsync = true;
+                return;
+            }
+            Message<?> responseMessage = reply;
+            Object responseContent;
+            try {
+                responseMessage = prepareReply(reply, servletRequest);
+                responseContent = setupResponseAndConvertReply(response, responseMessage);
+                cacheReply(servletRequest, servletResponse, responseMessage);
+            } catch (Exception e) {
+                responseContent = handleExceptionInternal(e);
+            }
+            completesAsync = writeResponseContent(responseContent, servletRequest, request, response);
+            if (!completesAsync) {
+                response.flush();
+            }
+            metrics.replied(servletRequest, servletResponse.getStatus(), elapsedNanos(servletRequest));
+        } catch (Exception e) {
+            logger.error("Failed to write reply " + reply, e);
+            if (!servletResponse.isCommitted()) {
+                servletResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        } finally {
+            if (!completesAsync) {
+                try {
+                    context.complete();
+                } catch (IllegalStateException e) {
+                    // completed already, e.g. by the container after an error
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the status and headers of the first chunk to arrive and hand the response over to the request's reply
+     * stream, whose writer threads write the chunks and complete the context once the last one is written. An aborted
+     * stream is dispatched to fail instead, after an error event when the client asked for Server-Sent Events.
+     */
+    private void streamReply(AsyncContext context, ServletServerHttpRequest request, ServletServerHttpResponse response,
+            Message<?> firstChunk) throws IOException {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        String continuationId = (String) servletRequest.getAttribute(ServletContinuation.ID_ATTRIBUTE);
+        boolean eventStream = ReplyStreams.isEventStream(request.getHeaders().getAccept());
+        Object responseContent = setupResponseAndConvertReply(response, prepareReply(firstChunk, servletRequest));
+        if (responseContent instanceof HttpStatus) {
+            response.setStatusCode((HttpStatus) responseContent);
+        }
+        response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        if (eventStream) {
+            response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+            response.getHeaders().setCacheControl("no-cache");
+        }
+        OutputStream body = response.getBody();
+        response.flush();
+        context.setTimeout(0);
+        context.addListener(new AsyncListener() {
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                replyStreams.abort(continuationId);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                replyStreams.abort(continuationId);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+
+        });
+        metrics.replied(servletRequest, response.getServletResponse().getStatus(), elapsedNanos(servletRequest));
+        ReplyStreams.ChunkWriter writer = new ReplyStreams.ChunkWriter() {
+
+            @Override
+            public void write(Message<?> chunk) throws IOException {
+                body.write(eventStream ? ReplyStreams.eventOf(chunk) : ReplyStreams.bytesOf(chunk));
+                body.flush();
+            }
+
+            @Override
+            public void complete() {
+                try {
+                    context.complete();
+                } catch (IllegalStateException e) {
+                    // completed already, e.g. by the container after an error
+                }
+            }
+
+            @Override
+            public void abort() {
+                if (eventStream) {
+                    try {
+                        body.write(ReplyStreams.abortedEvent());
+                        body.flush();
+                    } catch (IOException e) {
+                        // the client has gone away already
+                    }
+                }
+                servletRequest.setAttribute(STREAM_ABORTED_ATTRIBUTE, Boolean.TRUE);
+                try {
+                    context.dispatch();
+                } catch (IllegalStateException e) {
+                    // completed already, e.g. by the container after an error
+                }
+            }
+
+        };
+        if (!replyStreams.attach(continuationId, writer)) {
+            writer.abort();
+        }
+    }
+
+    /**
+     * @return whether the response is written asynchronously, and its context completed, once this method returns
+     */
+    private boolean writeResponseContent(Object responseContent, HttpServletRequest servletRequest,
+            ServletServerHttpRequest request, ServletServerHttpResponse response) throws IOException {
         if (responseContent != null) {
             if (responseContent instanceof HttpStatus) {
                 response.setStatusCode((HttpStatus) responseContent);
@@ -170,16 +801,144 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
                             .filter(entry -> !outputHeaders.containsKey(entry.getKey()))
                             .forEach(entry -> outputHeaders.put(entry.getKey(), entry.getValue()));
                 }
-                if (responseContent != null) {
+                if (responseContent instanceof Resource && resourceResponseWriter != null) {
+                    resourceResponseWriter.write((Resource) responseContent, servletRequest, response);
+                } else if (responseContent != null && nonBlockingIo) {
+                    writeResponseAsync(responseContent, servletRequest, response, request.getHeaders().getAccept());
+                    return true;
+                } else if (responseContent != null) {
                     writeResponse(responseContent, response, request.getHeaders().getAccept());
                 } else {
                     response.flush();
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * Turn a reply carrying the {@code uri} and {@code original_content_type} of externalized content into
+     * one carrying the {@link Resource} itself.
+     */
+    protected Message<Resource> resolveReference(Message<?> message) throws IOException {
+        Object payload = message.getPayload();
+        JsonNode jsonNode;
+        if (payload instanceof byte[]) {
+            jsonNode = objectMapper.readTree((byte[])payload);
+        } else {
+            jsonNode = objectMapper.valueToTree(payload);
+        }
+        String originalContentType = jsonNode.path(ORIGINAL_CONTENT_TYPE).asText();
+        String uri = jsonNode.path("uri").asText();
+        Assert.isTrue(!StringUtils.isEmpty(originalContentType), "'original_content_type' not found");
+        Assert.isTrue(!StringUtils.isEmpty(uri), "'uri' not found");
+        Resource resource = resourceLoaderSupport.getResource(uri);
+        MimeType mimeType = MimeType.valueOf(originalContentType);
+        return MessageBuilder.withPayload(resource).setHeader(MessageHeaders.CONTENT_TYPE, mimeType.toString()).build();
+    }
+
+    private boolean canReadAsync(ServletServerHttpRequest request) {
+        if (request instanceof MultipartHttpInputMessage || isMultipart(request) || !isReadable(request)) {
+            return false;
+        }
+        long contentLength = request.getHeaders().getContentLength();
+        return claimCheckThreshold < 0 || (contentLength >= 0 && contentLength <= claimCheckThreshold);
+    }
+
+    /**
+     * Publish the request once its body has been read, on the container thread that reads its end.
+     */
+    private void readAsync(ServletServerHttpRequest request, HttpServletResponse servletResponse,
+            Continuation continuation) throws IOException {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        NonBlockingServletIo.read(servletRequest, maxBodySize, body -> {
+            if (continuation.isExpired()) {
+                // answered with 504 already while the body was still arriving
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Not publishing request " + continuation.getId() + ": it has timed out");
+                }
+                return;
+            }
+            RequestEntity<Object> httpEntity = prepareRequestEntity(new BufferedServletServerHttpRequest(request, body));
+            doHandleRequest(servletRequest, httpEntity, servletResponse);
+            metrics.published(servletRequest, elapsedNanos(servletRequest));
+        }, e -> {
+            HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+            if (e instanceof MaxUploadSizeExceededException) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Rejecting request: " + e.getMessage());
+                }
+                status = HttpStatus.PAYLOAD_TOO_LARGE;
+            } else {
+                logger.error("Failed to publish request", e);
+            }
+            if (requestCoalescer != null) {
+                requestCoalescer.failed(continuation.getId());
+            }
+            if (servletRequest.isAsyncStarted()) {
+                if (!servletResponse.isCommitted()) {
+                    servletResponse.setStatus(status.value());
+                }
+                try {
+                    servletRequest.getAsyncContext().complete();
+                } catch (IllegalStateException ex) {
+                    // completed already
+                }
+            }
+        });
+    }
+
+    /**
+     * Convert the reply into memory and write it out once the client can take it, in a new asynchronous cycle of the
+     * resumed request.
+     */
+    private void writeResponseAsync(Object content, HttpServletRequest servletRequest,
+            ServletServerHttpResponse response, List<MediaType> acceptTypes) throws IOException {
+        BufferingServletServerHttpResponse bufferingResponse = new BufferingServletServerHttpResponse(response);
+        writeResponse(content, bufferingResponse, acceptTypes);
+        AsyncContext context;
+        if (servletRequest.isAsyncStarted()) {
+            // written directly, still in the cycle the request was suspended in
+            context = servletRequest.getAsyncContext();
+        } else {
+            context = servletRequest.startAsync();
+            context.setTimeout(timeout);
+        }
+        bufferingResponse.writeAsync(context);
+    }
+
+    private static long elapsedNanos(HttpServletRequest servletRequest) {
+        Long start = (Long) servletRequest.getAttribute(REQUEST_START_ATTRIBUTE);
+        return start != null ? System.nanoTime() - start : 0;
+    }
+
+    private void reject(ServletServerHttpResponse response, HttpStatus status, long retryAfter) throws IOException {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.flush();
     }
 
     protected RequestEntity<Object> prepareRequestEntity(ServletServerHttpRequest request) throws IOException {
+        if (streamingMultipartExternalizer != null && isMultipart(request)) {
+            HttpServletRequest servletRequest = request.getServletRequest();
+            ArrayNode arrayNode = streamingMultipartExternalizer.externalize(servletRequest,
+                    servletRequest.getServerName() + servletRequest.getPathInfo(), metrics);
+            return multipartRequestEntity(request, arrayNode);
+        }
+        if (claimCheckThreshold >= 0 && !(request instanceof MultipartHttpInputMessage) && isReadable(request)) {
+            long contentLength = request.getHeaders().getContentLength();
+            if (contentLength > claimCheckThreshold) {
+                return claimCheck(request, null);
+            }
+            if (contentLength < 0) {
+                // unknown length, only buffer up to the threshold
+                byte[] head = readUpTo(request.getBody(), claimCheckThreshold + 1);
+                if (head.length > claimCheckThreshold) {
+                    return claimCheck(request, head);
+                }
+                request = new BufferedServletServerHttpRequest(request, head);
+            }
+        }
         Object requestBody = null;
         if (isReadable(request)) {
             requestBody = extractRequestBody(request);
@@ -197,11 +956,17 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
                     if (o instanceof UploadedMultipartFile) {
                         UploadedMultipartFile multipartFile = (UploadedMultipartFile) o;
                         ObjectNode objectNode = objectMapper.createObjectNode();
-                        String uriString = resourceLoaderSupport.externalize(serverName + pathInfo, multipartFile.getResource());
+                        long start = System.nanoTime();
+                        ExternalizedContent content = resourceLoaderSupport.externalize(serverName + pathInfo, multipartFile.getResource());
+                        metrics.externalized(content.getSize(), System.nanoTime() - start);
                         objectNode.put("formParameterName", multipartFile.getName());
                         objectNode.put("originalFileName", multipartFile.getOriginalFilename());
                         objectNode.put("contentType", multipartFile.getContentType());
-                        objectNode.put("uri", uriString);
+                        objectNode.put("uri", content.getUri());
+                        objectNode.put("size", content.getSize());
+                        if (content.getDigest() != null) {
+                            objectNode.put("digest", content.getDigest());
+                        }
                         arrayNode.add(objectNode);
                     } else if(o instanceof String[]) {
                         String[] values = (String[]) o;
@@ -213,18 +978,132 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
                     }
                 }
             }
-            MediaType mediaType = request.getHeaders().getContentType();
+            return multipartRequestEntity(request, arrayNode);
+        }
 
-            if (mediaType != null) {
-                Assert.isTrue(mediaType.isCompatibleWith(MediaType.MULTIPART_FORM_DATA),
-                        "invalid MediaType: " + mediaType);
-                request.getHeaders().set("original_content_type", mediaType.toString());
+        return new RequestEntity<>(requestBody, request.getHeaders(), request.getMethod(), request.getURI());
+    }
+
+    private RequestEntity<Object> claimCheck(ServletServerHttpRequest request, byte[] head) throws IOException {
+        HttpServletRequest servletRequest = request.getServletRequest();
+        String pathInfo = servletRequest.getPathInfo();
+        String lastSegment = StringUtils.getFilename(pathInfo);
+        String extension = lastSegment != null ? StringUtils.getFilenameExtension(lastSegment) : null;
+        String filename = UUID.randomUUID() + (extension != null ? "." + extension : "");
+        long start = System.nanoTime();
+        ExternalizingOutputStream outputStream = resourceLoaderSupport.openOutputStream(
+                servletRequest.getServerName() + pathInfo, filename);
+        try {
+            if (head != null) {
+                outputStream.write(head);
             }
-            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
-            return new RequestEntity<>(arrayNode, request.getHeaders(), request.getMethod(), request.getURI());
+            StreamUtils.copy(request.getBody(), outputStream);
+            outputStream.close();
+        } catch (IOException | RuntimeException e) {
+            outputStream.abort();
+            throw e;
         }
+        ExternalizedContent content = outputStream.getContent();
+        metrics.externalized(content.getSize(), System.nanoTime() - start);
 
-        return new RequestEntity<>(requestBody, request.getHeaders(), request.getMethod(), request.getURI());
+        String originalContentType = servletRequest.getContentType() != null
+                ? servletRequest.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        ObjectNode objectNode = objectMapper.createObjectNode();
+        objectNode.put(ORIGINAL_CONTENT_TYPE, originalContentType);
+        objectNode.put("uri", content.getUri());
+        objectNode.put("size", content.getSize());
+        if (content.getDigest() != null) {
+            objectNode.put("digest", content.getDigest());
+        }
+        HttpHeaders headers = request.getHeaders();
+        headers.set(ORIGINAL_CONTENT_TYPE, originalContentType);
+        headers.set(IS_REFERENCE, "true");
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new RequestEntity<>(objectNode, headers, request.getMethod(), request.getURI());
+    }
+
+    private static byte[] readUpTo(InputStream inputStream, long limit) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+        int n;
+        while (outputStream.size() < limit && (n = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A request whose body has been read into memory already.
+     */
+    private static final class BufferedServletServerHttpRequest extends ServletServerHttpRequest {
+
+        private final HttpHeaders headers;
+
+        private final byte[] body;
+
+        private BufferedServletServerHttpRequest(ServletServerHttpRequest request, byte[] body) {
+            super(request.getServletRequest());
+            this.headers = request.getHeaders();
+            this.body = body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(this.body);
+        }
+    }
+
+    /**
+     * A response whose body is collected in memory, to be written with a {@link javax.servlet.WriteListener}.
+     */
+    private static final class BufferingServletServerHttpResponse extends ServletServerHttpResponse {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private BufferingServletServerHttpResponse(ServletServerHttpResponse response) {
+            super(response.getServletResponse());
+            getHeaders().putAll(response.getHeaders());
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return this.body;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        private void writeAsync(AsyncContext context) throws IOException {
+            byte[] bytes = this.body.toByteArray();
+            getHeaders().setContentLength(bytes.length);
+            // writes the headers without committing the response
+            ServletOutputStream outputStream = (ServletOutputStream) super.getBody();
+            NonBlockingServletIo.write(context, outputStream, bytes);
+        }
+    }
+
+    private static boolean isMultipart(ServletServerHttpRequest request) {
+        MediaType mediaType = request.getHeaders().getContentType();
+        return mediaType != null && MediaType.MULTIPART_FORM_DATA.includes(mediaType);
+    }
+
+    private static RequestEntity<Object> multipartRequestEntity(ServletServerHttpRequest request, ArrayNode arrayNode) {
+        MediaType mediaType = request.getHeaders().getContentType();
+
+        if (mediaType != null) {
+            Assert.isTrue(mediaType.isCompatibleWith(MediaType.MULTIPART_FORM_DATA),
+                    "invalid MediaType: " + mediaType);
+            request.getHeaders().set(ORIGINAL_CONTENT_TYPE, mediaType.toString());
+        }
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return new RequestEntity<>(arrayNode, request.getHeaders(), request.getMethod(), request.getURI());
     }
 
     private Object handleExceptionInternal(Exception ex) throws IOException {
@@ -241,7 +1120,7 @@ public class AsyncContextServletMessagingGateway extends HttpRequestHandlingEndp
         }
     }
 
-    private void writeResponse(Object content, ServletServerHttpResponse response, List<MediaType> acceptTypesArg)
+    protected void writeResponse(Object content, ServletServerHttpResponse response, List<MediaType> acceptTypesArg)
             throws IOException {
 
         List<MediaType> acceptTypes = acceptTypesArg;
@@ -0,0 +1,277 @@
+package org.springframework.integration.http.inbound;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.integration.http.inbound.continuation.HashedWheelExpiry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the replies to requests that were answered with {@code 202 Accepted} right away instead of being kept waiting,
+ * until their client fetches them from the status location it was given.
+ * <p>
+ * A request is answered this way if its path matches one of the async routes or it carries
+ * {@code Prefer: respond-async}. Its status location is made of its {@code continuation_id} and a random token, so
+ * only the client that was given it can fetch the reply. Entries are kept for the time to live from the moment they
+ * are accepted, and again from the moment their reply arrives; the store is bounded by the total size of the replies.
+ * An accepted request still counts against the limits it was admitted under until its reply arrives or the time to
+ * live elapses, whichever comes first. A streamed reply cannot be stored, its request is answered with 502 instead.
+ *
+ * @author Haruhiko Nishi
+ */
+public class AsyncReplyStore {
+
+    public static final String RESPOND_ASYNC = "respond-async";
+
+    /**
+     * Rough per-entry overhead of the key, the reply headers and the cache itself.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private static final char TOKEN_SEPARATOR = '.';
+
+    private static final String CONTINUATION_ID = "continuation_id";
+
+    private static final String STREAMED_REPLY = "streamed replies cannot be answered asynchronously";
+
+    private static final Log logger = LogFactory.getLog(AsyncReplyStore.class);
+
+    private final String statusPath;
+
+    private final long timeToLive;
+
+    private final Cache<String, Result> cache;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<String> routes = new ArrayList<>();
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final HashedWheelExpiry expiry = new HashedWheelExpiry();
+
+    private long retryAfter = 1;
+
+    /**
+     * @param statusPath path within the application the status locations are under
+     * @param maxSize maximum total size of the stored replies in bytes
+     * @param timeToLive milliseconds an entry is kept for
+     */
+    public AsyncReplyStore(String statusPath, long maxSize, long timeToLive) {
+        Assert.hasText(statusPath, "'statusPath' must not be empty");
+        Assert.isTrue(maxSize > 0, "'maxSize' must be positive");
+        Assert.isTrue(timeToLive > 0, "'timeToLive' must be positive");
+        String path = statusPath.startsWith("/") ? statusPath : "/" + statusPath;
+        this.statusPath = StringUtils.trimTrailingCharacter(path, '/');
+        this.timeToLive = timeToLive;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String key, Result result) -> result.weight)
+                .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Answer all requests whose path matches the Ant-style pattern with 202, whether they ask for it or not.
+     */
+    public void addRoute(String pathPattern) {
+        this.routes.add(pathPattern);
+    }
+
+    /**
+     * Seconds a client polling a reply that has not arrived yet is asked to wait.
+     */
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * @return the pattern of the paths of the status locations, for request mappings
+     */
+    public String getStatusPathPattern() {
+        return this.statusPath + "/**";
+    }
+
+    public boolean isStatusRequest(String method, String path) {
+        return HttpMethod.GET.matches(method) && path.startsWith(this.statusPath + "/");
+    }
+
+    /**
+     * @param prefer the values of the request's {@code Prefer} headers
+     */
+    public boolean respondsAsync(String path, List<String> prefer) {
+        for (String value : prefer) {
+            for (String preference : StringUtils.tokenizeToStringArray(value, ",")) {
+                if (RESPOND_ASYNC.equalsIgnoreCase(StringUtils.tokenizeToStringArray(preference, "=;")[0])) {
+                    return true;
+                }
+            }
+        }
+        for (String route : this.routes) {
+            if (this.pathMatcher.match(route, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expect the reply to a request that is about to be published and answered with 202.
+     * @return the status location of its reply, within the application
+     */
+    public String accept(String continuationId) {
+        return accept(continuationId, null);
+    }
+
+    /**
+     * Expect the reply to a request that is about to be published and answered with 202.
+     * @param release run once the reply arrives or the time to live elapses, e.g. to give back the permits the
+     * request was admitted with
+     * @return the status location of its reply, within the application
+     */
+    public String accept(String continuationId, Runnable release) {
+        String token = UUID.randomUUID().toString();
+        Result result = new Result(token, null, weightOf(continuationId, null), release);
+        this.cache.put(continuationId, result);
+        if (release != null) {
+            this.expiry.schedule(result::release, this.timeToLive);
+        }
+        this.accepted.increment();
+        return this.statusPath + "/" + continuationId + TOKEN_SEPARATOR + token;
+    }
+
+    /**
+     * Forget an accepted request that could not be published after all.
+     */
+    public void discard(String continuationId) {
+        Result result = this.cache.asMap().remove(continuationId);
+        if (result != null) {
+            result.release();
+        }
+    }
+
+    /**
+     * Store the reply to an accepted request. The first chunk of a streamed reply is stored as a 502 rather than as
+     * the reply, and the chunks after it are dropped, so that a truncated body is never handed out as the reply.
+     * @return whether the reply was expected, i.e. its request was answered with 202
+     */
+    public boolean complete(String continuationId, Message<?> reply) {
+        if (continuationId == null) {
+            return false;
+        }
+        return this.cache.asMap().computeIfPresent(continuationId, (id, pending) -> {
+            if (pending.reply != null) {
+                return pending;
+            }
+            pending.release();
+            Message<?> stored = reply;
+            if (ReplyStreams.isChunk(reply)) {
+                logger.warn("Request " + id + " was answered with 202 but its reply is streamed");
+                stored = MessageBuilder.withPayload(STREAMED_REPLY)
+                        .setHeader(CONTINUATION_ID, id)
+                        .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                        .setHeader(org.springframework.integration.http.HttpHeaders.STATUS_CODE, HttpStatus.BAD_GATEWAY)
+                        .build();
+            }
+            return new Result(pending.token, stored, weightOf(id, stored), null);
+        }) != null;
+    }
+
+    /**
+     * @return the entry for a status location, or {@code null} if it is unknown or has expired
+     */
+    public Result get(String path) {
+        if (!path.startsWith(this.statusPath + "/")) {
+            return null;
+        }
+        String key = path.substring(this.statusPath.length() + 1);
+        int separator = key.lastIndexOf(TOKEN_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        Result result = this.cache.getIfPresent(key.substring(0, separator));
+        return result != null && result.token.equals(key.substring(separator + 1)) ? result : null;
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    /**
+     * @return the number of requests answered with 202
+     */
+    public long getAcceptedCount() {
+        return this.accepted.sum();
+    }
+
+    public void stop() {
+        this.expiry.stop();
+    }
+
+    private static int weightOf(String continuationId, Message<?> reply) {
+        long size = reply != null ? Math.max(0, ReplyCache.sizeOf(reply.getPayload())) : 0;
+        return (int) Math.min(Integer.MAX_VALUE, size + continuationId.length() * 2 + ENTRY_OVERHEAD);
+    }
+
+    public static final class Result {
+
+        private final String token;
+
+        private final Message<?> reply;
+
+        private final int weight;
+
+        private final AtomicReference<Runnable> release;
+
+        private Result(String token, Message<?> reply, int weight, Runnable release) {
+            this.token = token;
+            this.reply = reply;
+            this.weight = weight;
+            this.release = new AtomicReference<>(release);
+        }
+
+        public boolean isDone() {
+            return this.reply != null;
+        }
+
+        /**
+         * @return the reply, or {@code null} if it has not arrived yet
+         */
+        public Message<?> getReply() {
+            return this.reply;
+        }
+
+        private void release() {
+            Runnable release = this.release.getAndSet(null);
+            if (release != null) {
+                release.run();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.springframework.integration.http.inbound;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Tells the backends that a request is no longer waited for, so they can drop the work still queued for it.
+ * <p>
+ * A cancellation is a message whose payload and {@value #CONTINUATION_ID} header are the id of the request, with the
+ * {@value #CANCEL_REASON} header set to {@code timeout} or {@code client_gone}. Cancellations are sent on a thread of
+ * their own, as requests are given up on by the expiry and container threads, and are dropped rather than queued
+ * beyond a bound.
+ *
+ * @author Haruhiko Nishi
+ */
+public class CancellationPublisher implements ContinuationRegistry.CancellationListener {
+
+    public static final String CONTINUATION_ID = "continuation_id";
+
+    public static final String CANCEL_REASON = "cancel_reason";
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final Log logger = LogFactory.getLog(CancellationPublisher.class);
+
+    private final Supplier<MessageChannel> channelSupplier;
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile MessageChannel channel;
+
+    /**
+     * @param channelSupplier resolves the channel cancellations are sent to once the first one is
+     */
+    public CancellationPublisher(Supplier<MessageChannel> channelSupplier) {
+        this(channelSupplier, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public CancellationPublisher(Supplier<MessageChannel> channelSupplier, int queueCapacity) {
+        Assert.notNull(channelSupplier, "'channelSupplier' must not be null");
+        Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be greater than 0");
+        this.channelSupplier = channelSupplier;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "http-gateway-cancellations");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> this.dropped.increment());
+    }
+
+    @Override
+    public void cancelled(String continuationId, ContinuationRegistry.CancelReason reason) {
+        Message<String> cancellation = MessageBuilder.withPayload(continuationId)
+                .setHeader(CONTINUATION_ID, continuationId)
+                .setHeader(CANCEL_REASON, reason.name().toLowerCase(Locale.ROOT))
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN_VALUE)
+                .build();
+        this.executor.execute(() -> send(cancellation));
+    }
+
+    public long getSentCount() {
+        return this.sent.sum();
+    }
+
+    public long getDroppedCount() {
+        return this.dropped.sum();
+    }
+
+    public void stop() {
+        this.executor.shutdown();
+    }
+
+    private void send(Message<String> cancellation) {
+        try {
+            MessageChannel channel = this.channel;
+            if (channel == null) {
+                channel = this.channelSupplier.get();
+                this.channel = channel;
+            }
+            channel.send(cancellation);
+            this.sent.increment();
+        } catch (RuntimeException e) {
+            this.dropped.increment();
+            logger.warn("Failed to send cancellation of " + cancellation.getPayload(), e);
+        }
+    }
+
+}
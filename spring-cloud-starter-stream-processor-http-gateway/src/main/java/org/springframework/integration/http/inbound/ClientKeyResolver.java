@@ -0,0 +1,49 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Strategy to identify the client a request originates from, e.g. for per-client limits.
+ */
+@FunctionalInterface
+public interface ClientKeyResolver {
+
+    String resolve(HttpServletRequest request);
+
+    static ClientKeyResolver remoteAddress() {
+        return HttpServletRequest::getRemoteAddr;
+    }
+
+    /**
+     * Use the value of the given header, falling back to the remote address when it is absent.
+     */
+    static ClientKeyResolver header(String headerName) {
+        Assert.hasText(headerName, "'headerName' must not be empty");
+        return request -> {
+            String value = request.getHeader(headerName);
+            return StringUtils.hasText(value) ? value : request.getRemoteAddr();
+        };
+    }
+
+    /**
+     * Use the value of the given expression evaluated against the request, e.g. {@code getHeader('X-Tenant')}, falling
+     * back to the remote address when it is empty.
+     */
+    static ClientKeyResolver expression(Expression expression) {
+        Assert.notNull(expression, "'expression' must not be null");
+        EvaluationContext evaluationContext = SimpleEvaluationContext.forReadOnlyDataBinding()
+                .withInstanceMethods()
+                .build();
+        return request -> {
+            String value = expression.getValue(evaluationContext, request, String.class);
+            return StringUtils.hasText(value) ? value : request.getRemoteAddr();
+        };
+    }
+
+}
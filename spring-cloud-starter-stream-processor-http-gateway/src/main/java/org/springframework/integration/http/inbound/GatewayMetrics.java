@@ -0,0 +1,46 @@
+package org.springframework.integration.http.inbound;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Callbacks for the continuation lifecycle of {@link AsyncContextServletMessagingGateway}. Implementations
+ * are called on the request and reply hot paths and must not block.
+ * <p>
+ * {@link ReactiveMessagingGateway} has no {@link HttpServletRequest} to pass and passes {@code null}.
+ */
+public interface GatewayMetrics {
+
+    GatewayMetrics NOOP = new GatewayMetrics() {
+    };
+
+    /**
+     * A request has been published, {@code nanos} after it was received.
+     */
+    default void published(HttpServletRequest request, long nanos) {
+    }
+
+    /**
+     * A reply has been written with the given status, {@code nanos} after the request was received.
+     */
+    default void replied(HttpServletRequest request, int status, long nanos) {
+    }
+
+    /**
+     * A request has been answered with 504 because no reply arrived in time.
+     */
+    default void timedOut(HttpServletRequest request) {
+    }
+
+    /**
+     * A reply arrived for a continuation that no longer exists.
+     */
+    default void lateReply() {
+    }
+
+    /**
+     * A multipart file has been externalized.
+     */
+    default void externalized(long bytes, long nanos) {
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.springframework.integration.http.inbound;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed-size histogram of latencies in milliseconds with a relative error of at most 12.5%.
+ * <p>
+ * Values below 16 get a bucket each, larger values are grouped into 8 sub-buckets per power of two.
+ * Counts are halved every {@code window} samples so that percentiles follow the recent latency profile.
+ */
+class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+
+    private static final int SUB_BUCKETS = 8;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS);
+
+    private final AtomicLong samples = new AtomicLong();
+
+    private final long window;
+
+    LatencyHistogram(long window) {
+        this.window = window;
+    }
+
+    void record(long millis) {
+        this.buckets.incrementAndGet(indexOf(Math.max(0, millis)));
+        if (this.samples.incrementAndGet() % this.window == 0) {
+            decay();
+        }
+    }
+
+    long getSampleCount() {
+        return this.samples.get();
+    }
+
+    /**
+     * @return the upper bound of the bucket containing the given percentile, or -1 when empty
+     */
+    long percentile(double percentile) {
+        int length = this.buckets.length();
+        long[] counts = new long[length];
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long cumulative = 0;
+        for (int i = 0; i < length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(length - 1);
+    }
+
+    private void decay() {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            long count;
+            do {
+                count = this.buckets.get(i);
+            } while (!this.buckets.compareAndSet(i, count, count >> 1));
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int sub = (int) ((value >> (exponent - 3)) & (SUB_BUCKETS - 1));
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 3)) - 1;
+    }
+
+}
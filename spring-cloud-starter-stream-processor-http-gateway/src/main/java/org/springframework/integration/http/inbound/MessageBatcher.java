@@ -0,0 +1,354 @@
+package org.springframework.integration.http.inbound;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link MessageChannel} that groups the messages sent to it into batch messages sent to a target channel, so that
+ * the per-message overhead of the binder is paid once per batch.
+ * <p>
+ * A batch is sent once it holds {@code maxCount} messages or {@code maxBytes} of encoded items, or {@code linger}
+ * milliseconds after its first message, whichever comes first. Every message is encoded into its item as it is sent,
+ * so the size of a batch is that of the payload it is sent with. Its payload is a JSON array with one
+ * {@code {"headers": {...}, "payload": ...}} item per message, binary payloads going to {@code payload_base64} instead,
+ * and it carries the {@code is_batch} header. Every item keeps its own {@code continuation_id}, and a reply in the same
+ * shape is split back into one reply per item by {@link #split(Message)}.
+ *
+ * @author Haruhiko Nishi
+ */
+public class MessageBatcher implements MessageChannel {
+
+    public static final String IS_BATCH = "is_batch";
+
+    public static final String BATCH_SIZE = "batch_size";
+
+    private static final String HEADERS = "headers";
+
+    private static final String PAYLOAD = "payload";
+
+    private static final String PAYLOAD_BASE64 = "payload_base64";
+
+    private static final String REPLY_PARTITION = "reply_partition";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Log logger = LogFactory.getLog(MessageBatcher.class);
+
+    private final MessageChannel target;
+
+    private final int maxCount;
+
+    private final long maxBytes;
+
+    private final long linger;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+
+    private BiConsumer<Message<?>, Exception> failureHandler = (message, e) -> {
+    };
+
+    private List<Message<?>> batch = new ArrayList<>();
+
+    private List<byte[]> batchItems = new ArrayList<>();
+
+    private long batchBytes;
+
+    private long generation;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param target where batches are sent
+     * @param maxCount maximum number of messages in a batch
+     * @param maxBytes maximum size of the encoded items of a batch in bytes; a larger message is sent in a batch of its
+     * own
+     * @param linger maximum milliseconds a message waits for its batch to fill up
+     */
+    public MessageBatcher(MessageChannel target, int maxCount, long maxBytes, long linger) {
+        Assert.notNull(target, "'target' must not be null");
+        Assert.isTrue(maxCount > 0, "'maxCount' must be positive");
+        Assert.isTrue(maxBytes > 0, "'maxBytes' must be positive");
+        Assert.isTrue(linger >= 0, "'linger' must not be negative");
+        this.target = target;
+        this.maxCount = maxCount;
+        this.maxBytes = maxBytes;
+        this.linger = linger;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-gateway-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called for every message of a batch that could not be sent, e.g. to answer its request with an error.
+     */
+    public void setFailureHandler(BiConsumer<Message<?>, Exception> failureHandler) {
+        Assert.notNull(failureHandler, "'failureHandler' must not be null");
+        this.failureHandler = failureHandler;
+    }
+
+    @Override
+    public boolean send(Message<?> message) {
+        return send(message, -1);
+    }
+
+    @Override
+    public boolean send(Message<?> message, long timeout) {
+        Assert.state(!this.stopped, "MessageBatcher has been stopped");
+        byte[] item;
+        try {
+            item = objectMapper.writeValueAsBytes(toItem(message));
+        } catch (IOException e) {
+            throw new MessageDeliveryException(message, "Failed to encode message into a batch item", e);
+        }
+        // the separating comma
+        long size = item.length + 1;
+        List<Batch> ready = null;
+        synchronized (this.lock) {
+            if (!this.batch.isEmpty() && this.batchBytes + size > this.maxBytes) {
+                ready = new ArrayList<>(2);
+                ready.add(takeBatch());
+            }
+            this.batch.add(message);
+            this.batchItems.add(item);
+            this.batchBytes += size;
+            if (this.batch.size() >= this.maxCount || this.batchBytes >= this.maxBytes || this.linger == 0) {
+                if (ready == null) {
+                    ready = new ArrayList<>(1);
+                }
+                ready.add(takeBatch());
+            } else if (this.batch.size() == 1) {
+                scheduleLinger(this.generation);
+            }
+        }
+        if (ready != null) {
+            for (Batch batch : ready) {
+                sendBatch(batch);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Send what has been batched so far.
+     */
+    public void flush() {
+        Batch batch;
+        synchronized (this.lock) {
+            batch = takeBatch();
+        }
+        if (!batch.messages.isEmpty()) {
+            sendBatch(batch);
+        }
+    }
+
+    /**
+     * Send what has been batched so far and refuse further messages.
+     */
+    public void stop() {
+        this.stopped = true;
+        this.scheduler.shutdownNow();
+        flush();
+    }
+
+    private void scheduleLinger(long generation) {
+        this.scheduler.schedule(() -> {
+            Batch batch = null;
+            synchronized (this.lock) {
+                if (this.generation == generation) {
+                    batch = takeBatch();
+                }
+            }
+            if (batch != null && !batch.messages.isEmpty()) {
+                sendBatch(batch);
+            }
+        }, this.linger, TimeUnit.MILLISECONDS);
+    }
+
+    private Batch takeBatch() {
+        Batch batch = new Batch(this.batch, this.batchItems, this.batchBytes);
+        this.batch = new ArrayList<>();
+        this.batchItems = new ArrayList<>();
+        this.batchBytes = 0;
+        this.generation++;
+        return batch;
+    }
+
+    private void sendBatch(Batch batch) {
+        try {
+            this.target.send(toBatch(batch));
+        } catch (Exception e) {
+            logger.error("Failed to send a batch of " + batch.messages.size() + " messages", e);
+            for (Message<?> message : batch.messages) {
+                this.failureHandler.accept(message, e);
+            }
+        }
+    }
+
+    private static ObjectNode toItem(Message<?> message) {
+        ObjectNode item = objectMapper.createObjectNode();
+        ObjectNode headers = item.putObject(HEADERS);
+        for (Map.Entry<String, Object> header : message.getHeaders().entrySet()) {
+            String name = header.getKey();
+            if (!MessageHeaders.ID.equals(name) && !MessageHeaders.TIMESTAMP.equals(name)) {
+                headers.set(name, headerValue(header.getValue()));
+            }
+        }
+        Object payload = message.getPayload();
+        if (payload instanceof byte[]) {
+            item.put(PAYLOAD_BASE64, Base64.getEncoder().encodeToString((byte[]) payload));
+        } else if (payload instanceof String) {
+            item.put(PAYLOAD, (String) payload);
+        } else {
+            item.set(PAYLOAD, objectMapper.valueToTree(payload));
+        }
+        return item;
+    }
+
+    /**
+     * Join the items encoded already into the JSON array of the batch.
+     */
+    private static Message<byte[]> toBatch(Batch batch) {
+        byte[] payload = new byte[(int) batch.bytes + 1];
+        payload[0] = '[';
+        int position = 1;
+        for (byte[] item : batch.items) {
+            if (position > 1) {
+                payload[position++] = ',';
+            }
+            System.arraycopy(item, 0, payload, position, item.length);
+            position += item.length;
+        }
+        payload[position] = ']';
+        List<Message<?>> messages = batch.messages;
+        Object replyPartition = messages.get(messages.size() - 1).getHeaders().get(REPLY_PARTITION);
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(payload)
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                .setHeader(IS_BATCH, true)
+                .setHeader(BATCH_SIZE, messages.size());
+        if (replyPartition != null) {
+            builder.setHeader(REPLY_PARTITION, replyPartition);
+        }
+        return builder.build();
+    }
+
+    private static JsonNode headerValue(Object value) {
+        if (value instanceof Collection) {
+            ArrayNode values = objectMapper.createArrayNode();
+            for (Object element : (Collection<?>) value) {
+                values.add(String.valueOf(element));
+            }
+            return values;
+        }
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return objectMapper.valueToTree(value);
+        }
+        return objectMapper.getNodeFactory().textNode(String.valueOf(value));
+    }
+
+
+    /**
+     * Whether the message is a batch, as sent by this class or replied in the same shape.
+     */
+    public static boolean isBatch(Message<?> message) {
+        Object isBatch = message.getHeaders().get(IS_BATCH);
+        return Boolean.TRUE.equals(isBatch) || "true".equals(isBatch);
+    }
+
+    /**
+     * Split a batch into its items. Textual payloads become {@code String}s, {@code payload_base64} and JSON payloads
+     * {@code byte[]}, and a {@code contentType} header a {@link MimeType}.
+     */
+    public static List<Message<?>> split(Message<?> batch) throws IOException {
+        Object payload = batch.getPayload();
+        JsonNode items = payload instanceof byte[]
+                ? objectMapper.readTree((byte[]) payload)
+                : objectMapper.readTree(payload.toString());
+        Assert.isTrue(items.isArray(), "a batch must be a JSON array");
+        List<Message<?>> messages = new ArrayList<>(items.size());
+        for (JsonNode item : items) {
+            MessageBuilder<?> builder;
+            if (item.has(PAYLOAD_BASE64)) {
+                builder = MessageBuilder.withPayload(Base64.getDecoder().decode(item.get(PAYLOAD_BASE64).asText()));
+            } else {
+                JsonNode itemPayload = item.path(PAYLOAD);
+                builder = itemPayload.isTextual()
+                        ? MessageBuilder.withPayload(itemPayload.asText())
+                        : MessageBuilder.withPayload(objectMapper.writeValueAsString(itemPayload)
+                                .getBytes(StandardCharsets.UTF_8));
+            }
+            Iterator<Map.Entry<String, JsonNode>> headers = item.path(HEADERS).fields();
+            while (headers.hasNext()) {
+                Map.Entry<String, JsonNode> header = headers.next();
+                builder.setHeader(header.getKey(), fromJson(header.getKey(), header.getValue()));
+            }
+            messages.add(builder.build());
+        }
+        return messages;
+    }
+
+    private static Object fromJson(String name, JsonNode value) {
+        if (MessageHeaders.CONTENT_TYPE.equals(name) && value.isTextual()) {
+            return MimeType.valueOf(value.asText());
+        }
+        if (value.isArray()) {
+            List<String> values = new ArrayList<>(value.size());
+            value.forEach(element -> values.add(element.asText()));
+            return values;
+        }
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        if (value.isNumber()) {
+            return value.numberValue();
+        }
+        return value.asText();
+    }
+
+    /**
+     * Messages taken from the batcher together with their encoded items and the size of those.
+     */
+    private static final class Batch {
+
+        private final List<Message<?>> messages;
+
+        private final List<byte[]> items;
+
+        private final long bytes;
+
+        private Batch(List<Message<?>> messages, List<byte[]> items, long bytes) {
+            this.messages = messages;
+            this.items = items;
+            this.bytes = bytes;
+        }
+    }
+
+}
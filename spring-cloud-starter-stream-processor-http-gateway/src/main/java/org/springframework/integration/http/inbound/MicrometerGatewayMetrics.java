@@ -0,0 +1,234 @@
+package org.springframework.integration.http.inbound;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.util.Assert;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link GatewayMetrics} backed by Micrometer.
+ * <p>
+ * Meters tagged by path pattern and status are created once and then looked up by pattern and status
+ * code index, so recording does not allocate.
+ */
+public class MicrometerGatewayMetrics implements GatewayMetrics {
+
+    private static final String PREFIX = "http.gateway.";
+
+    private static final int MAX_STATUS = 600;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Function<HttpServletRequest, String> pathPatternResolver;
+
+    private final String defaultPathPattern;
+
+    private final ConcurrentMap<String, Timer[]> replyTimers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> timeoutCounters = new ConcurrentHashMap<>();
+
+    private final Timer publishTimer;
+
+    private final Counter lateReplies;
+
+    private final DistributionSummary externalizedBytes;
+
+    private final Timer externalizeTimer;
+
+    /**
+     * @param pathPatternResolver resolves the path pattern a request is tagged with, {@code null} results
+     * in {@code defaultPathPattern}
+     */
+    public MicrometerGatewayMetrics(MeterRegistry meterRegistry, Function<HttpServletRequest, String> pathPatternResolver,
+            String defaultPathPattern) {
+        Assert.notNull(meterRegistry, "'meterRegistry' must not be null");
+        Assert.notNull(pathPatternResolver, "'pathPatternResolver' must not be null");
+        Assert.hasText(defaultPathPattern, "'defaultPathPattern' must not be empty");
+        this.meterRegistry = meterRegistry;
+        this.pathPatternResolver = pathPatternResolver;
+        this.defaultPathPattern = defaultPathPattern;
+        this.publishTimer = Timer.builder(PREFIX + "publish")
+                .description("Time from receiving a request to publishing it")
+                .register(meterRegistry);
+        this.lateReplies = Counter.builder(PREFIX + "replies.late")
+                .description("Replies that arrived after their request expired")
+                .register(meterRegistry);
+        this.externalizedBytes = DistributionSummary.builder(PREFIX + "externalized")
+                .description("Size of externalized multipart files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.externalizeTimer = Timer.builder(PREFIX + "externalize")
+                .description("Time to externalize a multipart file")
+                .register(meterRegistry);
+    }
+
+    public MicrometerGatewayMetrics bindContinuationRegistry(ContinuationRegistry continuationRegistry) {
+        Gauge.builder(PREFIX + "continuations.in.flight", continuationRegistry, ContinuationRegistry::size)
+                .description("Requests waiting for a reply")
+                .register(this.meterRegistry);
+        FunctionCounter.builder(PREFIX + "continuations.reclaimed", continuationRegistry,
+                ContinuationRegistry::getReclaimedCount)
+                .description("Requests that timed out, errored or were abandoned by the client")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindAdmissionController(AdmissionController admissionController) {
+        FunctionCounter.builder(PREFIX + "admission.rejected", admissionController,
+                AdmissionController::getRejectedCount)
+                .description("Requests rejected because too many were in flight")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindReplyCache(ReplyCache replyCache) {
+        CaffeineCacheMetrics.monitor(this.meterRegistry, replyCache.getCache(), "http.gateway.replies");
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindRequestCoalescer(RequestCoalescer requestCoalescer) {
+        FunctionCounter.builder(PREFIX + "coalesced", requestCoalescer, RequestCoalescer::getCoalescedCount)
+                .description("Requests answered with the reply of an identical request in flight")
+                .register(this.meterRegistry);
+        Gauge.builder(PREFIX + "coalesced.flights", requestCoalescer, RequestCoalescer::getFlightCount)
+                .description("Published requests other requests are waiting on")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindReplyStreams(ReplyStreams replyStreams) {
+        Gauge.builder(PREFIX + "streams", replyStreams, ReplyStreams::size)
+                .description("Replies being streamed to their clients chunk by chunk")
+                .register(this.meterRegistry);
+        FunctionCounter.builder(PREFIX + "streams.aborted", replyStreams, ReplyStreams::getAbortedCount)
+                .description("Streamed replies given up on before their last chunk")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindAsyncReplyStore(AsyncReplyStore asyncReplyStore) {
+        FunctionCounter.builder(PREFIX + "async.accepted", asyncReplyStore, AsyncReplyStore::getAcceptedCount)
+                .description("Requests answered with 202 Accepted and a status location")
+                .register(this.meterRegistry);
+        Gauge.builder(PREFIX + "async.stored", asyncReplyStore, AsyncReplyStore::size)
+                .description("Replies, and requests still waiting for one, held for polling clients")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindCancellationPublisher(CancellationPublisher cancellationPublisher) {
+        FunctionCounter.builder(PREFIX + "cancellations", cancellationPublisher, CancellationPublisher::getSentCount)
+                .description("Cancellations sent for requests that timed out or whose client went away")
+                .register(this.meterRegistry);
+        FunctionCounter.builder(PREFIX + "cancellations.dropped", cancellationPublisher,
+                CancellationPublisher::getDroppedCount)
+                .description("Cancellations that could not be sent")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindRequestHedger(RequestHedger requestHedger) {
+        FunctionCounter.builder(PREFIX + "hedges", requestHedger, RequestHedger::getHedgedCount)
+                .description("Requests published once more because their reply was slower than usual")
+                .register(this.meterRegistry);
+        FunctionCounter.builder(PREFIX + "hedges.denied", requestHedger, RequestHedger::getDeniedCount)
+                .description("Hedges not published because the hedge budget was spent")
+                .register(this.meterRegistry);
+        FunctionCounter.builder(PREFIX + "hedges.ignored", requestHedger, RequestHedger::getIgnoredCount)
+                .description("Second replies to hedged requests that were dropped")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindRateLimiter(RateLimiter rateLimiter) {
+        FunctionCounter.builder(PREFIX + "rate.limited", rateLimiter, RateLimiter::getRejectedCount)
+                .description("Requests rejected with 429 because their client was over its rate")
+                .register(this.meterRegistry);
+        Gauge.builder(PREFIX + "rate.limiter.clients", rateLimiter, RateLimiter::size)
+                .description("Clients whose rate is being tracked")
+                .register(this.meterRegistry);
+        return this;
+    }
+
+    public MicrometerGatewayMetrics bindPriorityLanes(PriorityLanes priorityLanes) {
+        for (PriorityLanes.Lane lane : priorityLanes.getLanes()) {
+            Gauge.builder(PREFIX + "lane.in.flight", lane, PriorityLanes.Lane::getInFlightCount)
+                    .description("Requests of the lane waiting for a reply")
+                    .tag("lane", lane.getName())
+                    .register(this.meterRegistry);
+            FunctionCounter.builder(PREFIX + "lane.rejected", lane, PriorityLanes.Lane::getRejectedCount)
+                    .description("Requests rejected because their lane was full")
+                    .tag("lane", lane.getName())
+                    .register(this.meterRegistry);
+        }
+        return this;
+    }
+
+    @Override
+    public void published(HttpServletRequest request, long nanos) {
+        this.publishTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void replied(HttpServletRequest request, int status, long nanos) {
+        String pathPattern = pathPatternOf(request);
+        Timer[] timers = this.replyTimers.get(pathPattern);
+        if (timers == null) {
+            timers = this.replyTimers.computeIfAbsent(pathPattern, key -> new Timer[MAX_STATUS]);
+        }
+        int index = status > 0 && status < MAX_STATUS ? status : 0;
+        Timer timer = timers[index];
+        if (timer == null) {
+            timer = Timer.builder(PREFIX + "reply")
+                    .description("Round trip time from receiving a request to writing its reply")
+                    .tag("pathPattern", pathPattern)
+                    .tag("status", Integer.toString(status))
+                    .publishPercentileHistogram()
+                    .register(this.meterRegistry);
+            timers[index] = timer;
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void timedOut(HttpServletRequest request) {
+        String pathPattern = pathPatternOf(request);
+        Counter counter = this.timeoutCounters.get(pathPattern);
+        if (counter == null) {
+            counter = this.timeoutCounters.computeIfAbsent(pathPattern, key ->
+                    Counter.builder(PREFIX + "timeouts")
+                            .description("Requests answered with 504")
+                            .tag("pathPattern", key)
+                            .register(this.meterRegistry));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void lateReply() {
+        this.lateReplies.increment();
+    }
+
+    @Override
+    public void externalized(long bytes, long nanos) {
+        this.externalizedBytes.record(bytes);
+        this.externalizeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String pathPatternOf(HttpServletRequest request) {
+        String pathPattern = request != null ? this.pathPatternResolver.apply(request) : null;
+        return pathPattern != null ? pathPattern : this.defaultPathPattern;
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.springframework.integration.http.inbound;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads request bodies with a {@link ReadListener} and writes response bodies with a {@link WriteListener}, so that a
+ * slow client only holds a container thread while data can actually move.
+ * <p>
+ * Both require the request to be in asynchronous mode. The body is read into memory, as the blocking
+ * {@code extractRequestBody} would, up to a maximum size, and written from memory.
+ *
+ * @author Haruhiko Nishi
+ */
+final class NonBlockingServletIo {
+
+    private static final Log logger = LogFactory.getLog(NonBlockingServletIo.class);
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private NonBlockingServletIo() {
+    }
+
+    @FunctionalInterface
+    interface BodyHandler {
+
+        void handle(byte[] body) throws Exception;
+
+    }
+
+    /**
+     * Read the body of a request already in asynchronous mode and hand it to {@code bodyHandler} on the container
+     * thread that reads its end. A body declared, or found, to be larger than {@code maxBodySize} is not read any
+     * further and fails with {@link MaxUploadSizeExceededException}.
+     */
+    static void read(HttpServletRequest request, long maxBodySize, BodyHandler bodyHandler,
+            Consumer<Throwable> errorHandler) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodySize) {
+            errorHandler.accept(new MaxUploadSizeExceededException(maxBodySize));
+            return;
+        }
+        ServletInputStream inputStream = request.getInputStream();
+        // the declared length is only trusted as far as the first chunk goes, the buffer grows as data actually arrives
+        ByteArrayOutputStream body = new ByteArrayOutputStream(
+                contentLength > 0 ? (int) Math.min(contentLength, CHUNK_SIZE) : CHUNK_SIZE);
+        inputStream.setReadListener(new ReadListener() {
+
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+
+            private boolean tooLarge;
+
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (!this.tooLarge && inputStream.isReady() && !inputStream.isFinished()) {
+                    int n = inputStream.read(this.buffer);
+                    if (n == -1) {
+                        break;
+                    }
+                    if (body.size() + n > maxBodySize) {
+                        this.tooLarge = true;
+                        errorHandler.accept(new MaxUploadSizeExceededException(maxBodySize));
+                        return;
+                    }
+                    body.write(this.buffer, 0, n);
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                if (this.tooLarge) {
+                    return;
+                }
+                try {
+                    bodyHandler.handle(body.toByteArray());
+                } catch (Exception e) {
+                    errorHandler.accept(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errorHandler.accept(t);
+            }
+        });
+    }
+
+    /**
+     * Write the body to an output stream whose headers have been written, completing the context once it has all
+     * been flushed or the client has failed or timed out.
+     */
+    static void write(AsyncContext context, ServletOutputStream outputStream, byte[] body) {
+        context.addListener(new AsyncListener() {
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Timed out writing the response to " + event.getSuppliedRequest().getRemoteAddr());
+                }
+                complete(event.getAsyncContext());
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                complete(event.getAsyncContext());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        outputStream.setWriteListener(new WriteListener() {
+
+            private int offset;
+
+            /**
+             * The context is only completed once the stream is ready again, i.e. the last chunk has been flushed.
+             */
+            @Override
+            public void onWritePossible() throws IOException {
+                while (outputStream.isReady()) {
+                    if (this.offset == body.length) {
+                        complete(context);
+                        return;
+                    }
+                    int n = Math.min(CHUNK_SIZE, body.length - this.offset);
+                    outputStream.write(body, this.offset, n);
+                    this.offset += n;
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to write the response", t);
+                }
+                complete(context);
+            }
+        });
+    }
+
+    private static void complete(AsyncContext context) {
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // completed already, e.g. by the container after an error
+        }
+    }
+
+}
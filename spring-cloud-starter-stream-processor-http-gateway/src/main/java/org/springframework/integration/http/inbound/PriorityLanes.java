@@ -0,0 +1,248 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Separates kinds of traffic, e.g. bulk uploads from interactive calls, so that one kind saturating the gateway does
+ * not hold up the other.
+ * <p>
+ * The first lane whose path pattern, header and content type all match a request takes it. The request is published
+ * with the {@value #LANE} header to the lane's own channel, admitted only while the lane has fewer requests in flight
+ * than its budget and given the lane's timeout. Requests taken by no lane are published to the default channel as
+ * before. Sits in front of the default channel like {@link MessageBatcher}.
+ *
+ * @author Haruhiko Nishi
+ */
+public class PriorityLanes implements MessageChannel {
+
+    public static final String LANE = "lane";
+
+    private final MessageChannel target;
+
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private final Map<String, Lane> lanesByName = new HashMap<>();
+
+    private long retryAfter = 1;
+
+    /**
+     * @param target channel of the requests taken by no lane, and of lanes without a channel of their own
+     */
+    public PriorityLanes(MessageChannel target) {
+        Assert.notNull(target, "'target' must not be null");
+        this.target = target;
+    }
+
+    public void addLane(Lane lane) {
+        Assert.notNull(lane, "'lane' must not be null");
+        Assert.isTrue(!this.lanesByName.containsKey(lane.name), () -> "Duplicate lane " + lane.name);
+        this.lanes.add(lane);
+        this.lanesByName.put(lane.name, lane);
+    }
+
+    public List<Lane> getLanes() {
+        return this.lanes;
+    }
+
+    /**
+     * Seconds a request rejected because its lane is full is asked to wait.
+     */
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    /**
+     * @param path the path of the request within the application
+     * @return the lane taking the request, or {@code null} if none does
+     */
+    public Lane select(String path, HttpHeaders headers) {
+        for (Lane lane : this.lanes) {
+            if (lane.matches(path, headers)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean send(Message<?> message) {
+        return send(message, -1);
+    }
+
+    @Override
+    public boolean send(Message<?> message, long timeout) {
+        Object name = message.getHeaders().get(LANE);
+        Lane lane = name != null ? this.lanesByName.get(name.toString()) : null;
+        MessageChannel channel = lane != null ? lane.channel() : null;
+        if (channel == null) {
+            channel = this.target;
+        }
+        return timeout < 0 ? channel.send(message) : channel.send(message, timeout);
+    }
+
+    public static final class Lane {
+
+        private static final PathMatcher pathMatcher = new AntPathMatcher();
+
+        private final String name;
+
+        private final Supplier<MessageChannel> channelSupplier;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private volatile MessageChannel channel;
+
+        private String pathPattern;
+
+        private String headerName;
+
+        private String headerValue;
+
+        private MediaType contentType;
+
+        private int maxInFlight;
+
+        private long timeout = -1;
+
+        /**
+         * @param channelSupplier resolves the lane's channel once the first request is published to it, or
+         * {@code null} to publish to the default channel
+         */
+        public Lane(String name, Supplier<MessageChannel> channelSupplier) {
+            Assert.hasText(name, "'name' must not be empty");
+            this.name = name;
+            this.channelSupplier = channelSupplier;
+        }
+
+        /**
+         * Take requests whose path matches the Ant-style pattern.
+         */
+        public void setPathPattern(String pathPattern) {
+            this.pathPattern = pathPattern;
+        }
+
+        /**
+         * Take requests carrying the header, with the given value unless it is {@code null}.
+         */
+        public void setHeader(String headerName, String headerValue) {
+            this.headerName = headerName;
+            this.headerValue = headerValue;
+        }
+
+        /**
+         * Take requests whose content type is included in the given one, e.g. {@code multipart/*}.
+         */
+        public void setContentType(MediaType contentType) {
+            this.contentType = contentType;
+        }
+
+        /**
+         * Maximum number of the lane's requests in flight, 0 for no limit.
+         */
+        public void setMaxInFlight(int maxInFlight) {
+            Assert.isTrue(maxInFlight >= 0, "'maxInFlight' must not be negative");
+            this.maxInFlight = maxInFlight;
+        }
+
+        /**
+         * Milliseconds the lane's requests wait for their reply, -1 for the timeout they would get otherwise.
+         */
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getTimeout() {
+            return this.timeout;
+        }
+
+        /**
+         * @return whether the lane bounds the number of its requests in flight itself
+         */
+        public boolean hasBudget() {
+            return this.maxInFlight > 0;
+        }
+
+        /**
+         * @return whether the request may be published, in which case {@link #release()} has to be called once it
+         * is done
+         */
+        public boolean tryAcquire() {
+            int current;
+            do {
+                current = this.inFlight.get();
+                if (this.maxInFlight > 0 && current >= this.maxInFlight) {
+                    this.rejected.increment();
+                    return false;
+                }
+            } while (!this.inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        public void release() {
+            this.inFlight.decrementAndGet();
+        }
+
+        public int getInFlightCount() {
+            return this.inFlight.get();
+        }
+
+        public long getRejectedCount() {
+            return this.rejected.sum();
+        }
+
+        private boolean matches(String path, HttpHeaders headers) {
+            if (this.pathPattern != null && !pathMatcher.match(this.pathPattern, path)) {
+                return false;
+            }
+            if (this.headerName != null) {
+                List<String> values = headers.get(this.headerName);
+                if (values == null || (this.headerValue != null && !values.contains(this.headerValue))) {
+                    return false;
+                }
+            }
+            if (this.contentType != null) {
+                MediaType contentType = headers.getContentType();
+                return contentType != null && this.contentType.includes(contentType);
+            }
+            return true;
+        }
+
+        private MessageChannel channel() {
+            if (this.channelSupplier == null) {
+                return null;
+            }
+            MessageChannel channel = this.channel;
+            if (channel == null) {
+                channel = this.channelSupplier.get();
+                this.channel = channel;
+            }
+            return channel;
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.util.Assert;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of requests per client with a token bucket per client key.
+ * <p>
+ * A bucket is a single theoretical arrival time advanced by CAS: a request is admitted if advancing it by the interval
+ * between two permits keeps it within the burst of now. Buckets are spread over stripes by key, and every sweep
+ * interval the stripes are swept of the buckets that have filled up again on a thread of their own, away from the
+ * requests, so only clients active within the last burst are remembered. A bucket is retired before it is removed,
+ * like the counters of {@link AdmissionController}, so a concurrent admission that still holds it retries with a fresh
+ * one instead of being lost.
+ *
+ * @author Haruhiko Nishi
+ */
+public class RateLimiter {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private static final int STRIPES = 64;
+
+    private static final long DEFAULT_SWEEP_INTERVAL = 1000;
+
+    private final long interval;
+
+    private final long tolerance;
+
+    private final ClientKeyResolver clientKeyResolver;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentMap<String, AtomicLong>[] stripes = new ConcurrentMap[STRIPES];
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * @param permitsPerSecond sustained number of requests admitted per client and second
+     * @param burst number of requests a client that has been idle may send at once
+     * @param clientKeyResolver how to identify a client
+     */
+    public RateLimiter(double permitsPerSecond, int burst, ClientKeyResolver clientKeyResolver) {
+        this(permitsPerSecond, burst, clientKeyResolver, DEFAULT_SWEEP_INTERVAL);
+    }
+
+    /**
+     * @param sweepInterval milliseconds between two sweeps of the buckets that have filled up again
+     */
+    public RateLimiter(double permitsPerSecond, int burst, ClientKeyResolver clientKeyResolver, long sweepInterval) {
+        Assert.isTrue(permitsPerSecond > 0, "'permitsPerSecond' must be greater than 0");
+        Assert.isTrue(burst > 0, "'burst' must be greater than 0");
+        Assert.notNull(clientKeyResolver, "'clientKeyResolver' must not be null");
+        Assert.isTrue(sweepInterval > 0, "'sweepInterval' must be greater than 0");
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.tolerance = this.interval * burst;
+        this.clientKeyResolver = clientKeyResolver;
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-gateway-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise the nanoseconds until its client may send another one
+     */
+    public long tryAcquire(HttpServletRequest request) {
+        String clientKey = this.clientKeyResolver.resolve(request);
+        ConcurrentMap<String, AtomicLong> stripe = stripeFor(clientKey);
+        long wait;
+        do {
+            wait = tryAcquire(stripe.computeIfAbsent(clientKey, key -> new AtomicLong(System.nanoTime())));
+        } while (wait < 0);
+        if (wait > 0) {
+            this.rejected.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * @return the number of clients remembered
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<String, AtomicLong> stripe : this.stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    public void stop() {
+        this.sweeper.shutdownNow();
+    }
+
+    /**
+     * @return 0 if admitted, the nanoseconds to wait if not, -1 if the bucket has been retired
+     */
+    private long tryAcquire(AtomicLong bucket) {
+        while (true) {
+            long arrival = bucket.get();
+            if (arrival == RETIRED) {
+                return -1;
+            }
+            long now = System.nanoTime();
+            long next = (arrival - now > 0 ? arrival : now) + this.interval;
+            if (next - now > this.tolerance) {
+                return next - now - this.tolerance;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void sweep() {
+        for (ConcurrentMap<String, AtomicLong> stripe : this.stripes) {
+            long now = System.nanoTime();
+            stripe.forEach((key, bucket) -> {
+                long arrival = bucket.get();
+                if (arrival != RETIRED && arrival - now <= 0 && bucket.compareAndSet(arrival, RETIRED)) {
+                    stripe.remove(key, bucket);
+                }
+            });
+        }
+    }
+
+    private ConcurrentMap<String, AtomicLong> stripeFor(String clientKey) {
+        int hash = clientKey.hashCode();
+        return this.stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+}
@@ -0,0 +1,668 @@
+package org.springframework.integration.http.inbound;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizedContent;
+import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.integration.http.inbound.continuation.MonoContinuation;
+import org.springframework.integration.http.support.DefaultHttpHeaderMapper;
+import org.springframework.integration.mapping.HeaderMapper;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the gateway on the reactive stack. Every request is published with a {@code continuation_id} just as by
+ * {@link AsyncContextServletMessagingGateway}, but it is parked as the {@link Mono} of a {@link MonoContinuation}
+ * rather than as a suspended {@link javax.servlet.AsyncContext}, so no thread is held while it waits for its reply.
+ * <p>
+ * Requests and replies have the same shapes as on the servlet stack: multipart files and bodies above the claim-check
+ * threshold are externalized and published as references, and {@code is_reference} replies are streamed from their
+ * resource. Storage is only ever written and read, and requests only ever published, on a scheduler meant for
+ * blocking calls, as a binder may block sending.
+ *
+ * @author Haruhiko Nishi
+ */
+public class ReactiveMessagingGateway implements HandlerFunction<ServerResponse> {
+
+    private static final Log logger = LogFactory.getLog(ReactiveMessagingGateway.class);
+
+    private static final String ORIGINAL_CONTENT_TYPE = "original_content_type";
+
+    private static final String CONTINUATION_ID = "continuation_id";
+
+    private static final String REPLY_PARTITION = "reply_partition";
+
+    private static final String IS_REFERENCE = "is_reference";
+
+    private static final String DEADLINE = "deadline";
+
+    private static final String PREFER = "Prefer";
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    private static final long TIMEOUT = 300000;
+
+    private static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ResourceLoaderSupport resourceLoaderSupport;
+
+    private final ContinuationRegistry continuationRegistry;
+
+    private final MessageChannel requestChannel;
+
+    private final SubscribableChannel replyChannel;
+
+    private final MessageHandler replyHandler = this::reply;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private HeaderMapper<HttpHeaders> headerMapper = DefaultHttpHeaderMapper.inboundMapper();
+
+    private long timeout = TIMEOUT;
+
+    private RouteTimeoutPolicy timeoutPolicy;
+
+    private String replyPartition;
+
+    private GatewayMetrics metrics = GatewayMetrics.NOOP;
+
+    private long claimCheckThreshold = -1;
+
+    private Scheduler blockingScheduler = Schedulers.elastic();
+
+    private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    private ReplyStreams replyStreams;
+
+    private AsyncReplyStore asyncReplyStore;
+
+    private RequestHedger requestHedger;
+
+    private PriorityLanes priorityLanes;
+
+    public ReactiveMessagingGateway(ResourceLoaderSupport resourceLoaderSupport,
+            ContinuationRegistry continuationRegistry, MessageChannel requestChannel,
+            SubscribableChannel replyChannel) {
+        Assert.notNull(resourceLoaderSupport, "'resourceLoaderSupport' must not be null");
+        Assert.notNull(continuationRegistry, "'continuationRegistry' must not be null");
+        Assert.notNull(requestChannel, "'requestChannel' must not be null");
+        Assert.notNull(replyChannel, "'replyChannel' must not be null");
+        this.resourceLoaderSupport = resourceLoaderSupport;
+        this.continuationRegistry = continuationRegistry;
+        this.requestChannel = requestChannel;
+        this.replyChannel = replyChannel;
+    }
+
+    public void setHeaderMapper(HeaderMapper<HttpHeaders> headerMapper) {
+        Assert.notNull(headerMapper, "'headerMapper' must not be null");
+        this.headerMapper = headerMapper;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Decide the timeout per request path, overriding {@link #setTimeout(long)}.
+     */
+    public void setTimeoutPolicy(RouteTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setReplyPartition(Integer)
+     */
+    public void setReplyPartition(Integer replyPartition) {
+        this.replyPartition = replyPartition != null ? replyPartition.toString() : null;
+    }
+
+    public void setMetrics(GatewayMetrics metrics) {
+        Assert.notNull(metrics, "'metrics' must not be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setClaimCheckThreshold(long)
+     */
+    public void setClaimCheckThreshold(long claimCheckThreshold) {
+        this.claimCheckThreshold = claimCheckThreshold;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setMaxBodySize(long)
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        Assert.isTrue(maxBodySize > 0, "'maxBodySize' must be positive");
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Set the scheduler externalized contents are written, requests published and {@code is_reference} replies read
+     * on.
+     */
+    public void setBlockingScheduler(Scheduler blockingScheduler) {
+        Assert.notNull(blockingScheduler, "'blockingScheduler' must not be null");
+        this.blockingScheduler = blockingScheduler;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setReplyStreams(ReplyStreams)
+     */
+    public void setReplyStreams(ReplyStreams replyStreams) {
+        this.replyStreams = replyStreams;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setAsyncReplyStore(AsyncReplyStore)
+     */
+    public void setAsyncReplyStore(AsyncReplyStore asyncReplyStore) {
+        this.asyncReplyStore = asyncReplyStore;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setRequestHedger(RequestHedger)
+     */
+    public void setRequestHedger(RequestHedger requestHedger) {
+        this.requestHedger = requestHedger;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setPriorityLanes(PriorityLanes)
+     */
+    public void setPriorityLanes(PriorityLanes priorityLanes) {
+        this.priorityLanes = priorityLanes;
+    }
+
+    public void start() {
+        this.replyChannel.subscribe(this.replyHandler);
+    }
+
+    public void stop() {
+        this.replyChannel.unsubscribe(this.replyHandler);
+    }
+
+    private void reply(Message<?> message) {
+        if (!MessageBatcher.isBatch(message)) {
+            replyOne(message);
+            return;
+        }
+        List<Message<?>> replies;
+        try {
+            replies = MessageBatcher.split(message);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Failed to split batched reply: " + message, e);
+            return;
+        }
+        replies.forEach(this::replyOne);
+    }
+
+    private void replyOne(Message<?> message) {
+        String continuationId = message.getHeaders().get(CONTINUATION_ID, String.class);
+        if (continuationId != null && !this.continuationRegistry.isLocal(continuationId)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignoring reply for " + continuationId + " owned by another gateway instance");
+            }
+            return;
+        }
+        if (this.asyncReplyStore != null && this.asyncReplyStore.complete(continuationId, message)) {
+            return;
+        }
+        if (this.requestHedger != null && !ReplyStreams.isChunk(message) && this.requestHedger.replied(continuationId)) {
+            return;
+        }
+        boolean chunk = this.replyStreams != null && ReplyStreams.isChunk(message);
+        if (chunk && this.replyStreams.offer(continuationId, message)) {
+            return;
+        }
+        Continuation continuation = this.continuationRegistry.get(continuationId);
+        if (continuation == null
+                || !(chunk ? this.replyStreams.open(continuation, message) : continuation.setReply(message))) {
+            this.metrics.lateReply();
+            logger.warn("Client connection with " + continuationId + " has timed out. Failed to respond with message: " + message);
+        }
+    }
+
+    @Override
+    public Mono<ServerResponse> handle(ServerRequest request) {
+        long start = System.nanoTime();
+        String path = request.path();
+        if (this.asyncReplyStore != null && this.asyncReplyStore.isStatusRequest(request.methodName(), path)) {
+            return storedReply(request, this.asyncReplyStore.get(path));
+        }
+        PriorityLanes.Lane lane = this.priorityLanes != null ? selectLane(request, path) : null;
+        if (lane != null && !lane.tryAcquire()) {
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(this.priorityLanes.getRetryAfter()))
+                    .build();
+        }
+        if (this.asyncReplyStore != null && this.asyncReplyStore.respondsAsync(path, request.headers().header(PREFER))) {
+            return acceptAsync(request, start, lane);
+        }
+        long requestTimeout = lane != null && lane.getTimeout() >= 0 ? lane.getTimeout()
+                : this.timeoutPolicy != null ? this.timeoutPolicy.getTimeout(path) : this.timeout;
+        MonoContinuation continuation = this.continuationRegistry.registerMono(requestTimeout);
+        if (lane != null) {
+            continuation.addDisposeCallback(lane::release);
+        }
+        return toMessage(request, continuation.getId(), System.currentTimeMillis() + requestTimeout, lane)
+                .publishOn(this.blockingScheduler)
+                .flatMap(message -> {
+                    this.requestChannel.send(message);
+                    this.metrics.published(null, System.nanoTime() - start);
+                    return continuation.getReply();
+                })
+                .flatMap(reply -> {
+                    if (this.timeoutPolicy != null) {
+                        this.timeoutPolicy.recordLatency(path,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                    return toResponse(request, continuation.getId(), reply);
+                })
+                .doOnNext(response -> this.metrics.replied(null, response.statusCode().value(),
+                        System.nanoTime() - start))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (this.timeoutPolicy != null) {
+                        this.timeoutPolicy.recordLatency(path,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                    this.metrics.timedOut(null);
+                    return ServerResponse.status(HttpStatus.GATEWAY_TIMEOUT).build();
+                }))
+                .doOnError(e -> continuation.cancel())
+                .doOnCancel(continuation::cancel);
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#setAsyncReplyStore(AsyncReplyStore)
+     */
+    private Mono<ServerResponse> acceptAsync(ServerRequest request, long start, PriorityLanes.Lane lane) {
+        String continuationId = this.continuationRegistry.issueId();
+        long deadline = System.currentTimeMillis() + this.asyncReplyStore.getTimeToLive();
+        URI location = URI.create(this.asyncReplyStore.accept(continuationId, lane != null ? lane::release : null));
+        return toMessage(request, continuationId, deadline, lane)
+                .publishOn(this.blockingScheduler)
+                .flatMap(message -> {
+                    this.requestChannel.send(message);
+                    this.metrics.published(null, System.nanoTime() - start);
+                    return ServerResponse.accepted()
+                            .location(location)
+                            .header(PREFERENCE_APPLIED, AsyncReplyStore.RESPOND_ASYNC)
+                            .build();
+                })
+                .doOnError(e -> this.asyncReplyStore.discard(continuationId))
+                .doOnCancel(() -> this.asyncReplyStore.discard(continuationId));
+    }
+
+    private Mono<ServerResponse> storedReply(ServerRequest request, AsyncReplyStore.Result result) {
+        if (result == null) {
+            return ServerResponse.notFound().build();
+        }
+        if (!result.isDone()) {
+            return ServerResponse.accepted()
+                    .location(request.uri())
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(this.asyncReplyStore.getRetryAfter()))
+                    .build();
+        }
+        return toResponse(request, result.getReply().getHeaders().get(CONTINUATION_ID, String.class),
+                result.getReply());
+    }
+
+    private PriorityLanes.Lane selectLane(ServerRequest request, String path) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(request.headers().asHttpHeaders());
+        headers.remove(PriorityLanes.LANE);
+        return this.priorityLanes.select(path, headers);
+    }
+
+    private Mono<Message<?>> toMessage(ServerRequest request, String continuationId, long deadline,
+            PriorityLanes.Lane lane) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(request.headers().asHttpHeaders());
+        // only ever set by the gateway itself, a client must not make it read a uri of its choosing
+        headers.remove(IS_REFERENCE);
+        // only ever set by the gateway itself, a client must not pick a lane of its choosing
+        headers.remove(PriorityLanes.LANE);
+        MediaType contentType = headers.getContentType();
+        Charset charset = contentType != null && contentType.getCharset() != null
+                ? contentType.getCharset() : StandardCharsets.UTF_8;
+        if (contentType != null && contentType.getCharset() != null) {
+            contentType = new MediaType(contentType.getType(), contentType.getSubtype());
+            headers.setContentType(contentType);
+        }
+        String prefix = request.uri().getHost() + request.path();
+        Mono<Object> payload;
+        if (contentType != null && MediaType.MULTIPART_FORM_DATA.includes(contentType)) {
+            headers.set(ORIGINAL_CONTENT_TYPE, contentType.toString());
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            payload = externalizeParts(request, prefix);
+        } else if (this.claimCheckThreshold >= 0 && headers.getContentLength() > this.claimCheckThreshold) {
+            payload = claimCheck(request.body(BodyExtractors.toDataBuffers()), request, headers, prefix);
+        } else {
+            boolean text = isText(contentType);
+            payload = readBody(request, headers.getContentLength())
+                    .<Object>flatMap(bytes -> {
+                        if (this.claimCheckThreshold >= 0 && bytes.length > this.claimCheckThreshold) {
+                            // unknown length, only known to be too large once read
+                            return claimCheck(Flux.just(this.bufferFactory.wrap(bytes)), request, headers, prefix);
+                        }
+                        return Mono.just(text ? new String(bytes, charset) : bytes);
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(request::queryParams));
+        }
+        return payload.map(body -> {
+            MessageBuilder<Object> builder = MessageBuilder.withPayload(body)
+                    .copyHeaders(this.headerMapper.toHeaders(headers))
+                    .setHeader(org.springframework.integration.http.HttpHeaders.REQUEST_URL, request.uri().toString())
+                    .setHeader(org.springframework.integration.http.HttpHeaders.REQUEST_METHOD,
+                            request.methodName())
+                    .setHeader(CONTINUATION_ID, continuationId)
+                    .setHeader(DEADLINE, Long.toString(deadline));
+            if (headers.getContentType() != null) {
+                builder.setHeader(MessageHeaders.CONTENT_TYPE, headers.getContentType().toString());
+            }
+            if (this.replyPartition != null) {
+                builder.setHeader(REPLY_PARTITION, this.replyPartition);
+            }
+            if (lane != null) {
+                builder.setHeader(PriorityLanes.LANE, lane.getName());
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Read a body into memory, failing with 413 once it is declared, or found, to be larger than the maximum body size.
+     * @return the body, or empty if there is none
+     */
+    private Mono<byte[]> readBody(ServerRequest request, long contentLength) {
+        if (contentLength > this.maxBodySize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+        return request.body(BodyExtractors.toDataBuffers())
+                .collect(ByteArrayOutputStream::new, (body, buffer) -> {
+                    try {
+                        if (body.size() + buffer.readableByteCount() > this.maxBodySize) {
+                            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE);
+                        }
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        body.write(bytes, 0, bytes.length);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .filter(body -> body.size() > 0)
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    private static boolean isText(MediaType contentType) {
+        return contentType != null
+                && (MediaType.TEXT_PLAIN.isCompatibleWith(contentType) || "text".equals(contentType.getType())
+                || MediaType.APPLICATION_JSON.isCompatibleWith(contentType));
+    }
+
+    /**
+     * Externalize the files of a multipart request in the order they arrive, into the JSON array the servlet
+     * stack publishes.
+     */
+    private Mono<Object> externalizeParts(ServerRequest request, String prefix) {
+        return request.body(BodyExtractors.toParts())
+                .concatMap(part -> {
+                    if (part instanceof FilePart) {
+                        FilePart filePart = (FilePart) part;
+                        long start = System.nanoTime();
+                        return externalize(filePart.content(), prefix, filePart.filename())
+                                .map(content -> {
+                                    this.metrics.externalized(content.getSize(), System.nanoTime() - start);
+                                    ObjectNode objectNode = objectMapper.createObjectNode();
+                                    objectNode.put("formParameterName", filePart.name());
+                                    objectNode.put("originalFileName", filePart.filename());
+                                    MediaType contentType = filePart.headers().getContentType();
+                                    objectNode.put("contentType", contentType != null ? contentType.toString() : null);
+                                    objectNode.put("uri", content.getUri());
+                                    objectNode.put("size", content.getSize());
+                                    if (content.getDigest() != null) {
+                                        objectNode.put("digest", content.getDigest());
+                                    }
+                                    return objectNode;
+                                });
+                    }
+                    if (part instanceof FormFieldPart) {
+                        ObjectNode objectNode = objectMapper.createObjectNode();
+                        objectNode.put(part.name(), ((FormFieldPart) part).value());
+                        return Mono.just(objectNode);
+                    }
+                    return discard(part);
+                })
+                .collect(objectMapper::createArrayNode, ArrayNode::add)
+                .cast(Object.class);
+    }
+
+    private static Mono<ObjectNode> discard(Part part) {
+        return part.content().doOnNext(DataBufferUtils::release).then(Mono.empty());
+    }
+
+    private Mono<Object> claimCheck(Flux<DataBuffer> body, ServerRequest request, HttpHeaders headers,
+            String prefix) {
+        String lastSegment = StringUtils.getFilename(request.path());
+        String extension = lastSegment != null ? StringUtils.getFilenameExtension(lastSegment) : null;
+        String filename = UUID.randomUUID() + (extension != null ? "." + extension : "");
+        String originalContentType = request.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+        if (originalContentType == null) {
+            originalContentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        String contentType = originalContentType;
+        long start = System.nanoTime();
+        return externalize(body, prefix, filename).<Object>map(content -> {
+            this.metrics.externalized(content.getSize(), System.nanoTime() - start);
+            ObjectNode objectNode = objectMapper.createObjectNode();
+            objectNode.put(ORIGINAL_CONTENT_TYPE, contentType);
+            objectNode.put("uri", content.getUri());
+            objectNode.put("size", content.getSize());
+            if (content.getDigest() != null) {
+                objectNode.put("digest", content.getDigest());
+            }
+            headers.set(ORIGINAL_CONTENT_TYPE, contentType);
+            headers.set(IS_REFERENCE, "true");
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            return objectNode;
+        });
+    }
+
+    /**
+     * Write the content to storage as it is received, on the blocking scheduler.
+     */
+    private Mono<ExternalizedContent> externalize(Flux<DataBuffer> content, String prefix, String filename) {
+        return Mono.fromCallable(() -> this.resourceLoaderSupport.openOutputStream(prefix, filename))
+                .subscribeOn(this.blockingScheduler)
+                .flatMap(outputStream -> DataBufferUtils.write(content.publishOn(this.blockingScheduler), outputStream)
+                        .doOnNext(DataBufferUtils::release)
+                        .then(Mono.fromCallable(() -> {
+                            outputStream.close();
+                            return outputStream.getContent();
+                        }))
+                        .doOnError(e -> outputStream.abort())
+                        .doOnCancel(outputStream::abort));
+    }
+
+    private Mono<ServerResponse> toResponse(ServerRequest request, String continuationId, Message<?> reply) {
+        HttpHeaders headers = new HttpHeaders();
+        this.headerMapper.fromHeaders(reply.getHeaders(), headers);
+        HttpStatus status = statusOf(reply);
+        Boolean isReference = reply.getHeaders().get(IS_REFERENCE, Boolean.class);
+        if (isReference != null && isReference) {
+            return Mono.fromCallable(() -> resolveReference(reply))
+                    .subscribeOn(this.blockingScheduler)
+                    .flatMap(reference -> ServerResponse.status(status)
+                            .headers(responseHeaders -> responseHeaders.putAll(headers))
+                            .contentType(reference.contentType)
+                            .body(BodyInserters.fromDataBuffers(
+                                    DataBufferUtils.read(reference.resource, this.bufferFactory, BUFFER_SIZE)
+                                            .subscribeOn(this.blockingScheduler))));
+        }
+        ServerResponse.BodyBuilder builder = ServerResponse.status(status)
+                .headers(responseHeaders -> responseHeaders.putAll(headers));
+        if (this.replyStreams != null && ReplyStreams.isChunk(reply)) {
+            Flux<Message<?>> chunks = streamOf(continuationId);
+            if (ReplyStreams.isEventStream(request.headers().accept())) {
+                return builder.contentType(MediaType.TEXT_EVENT_STREAM)
+                        .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                        .body(BodyInserters.fromServerSentEvents(chunks.map(chunk -> ServerSentEvent
+                                .builder(new String(ReplyStreams.bytesOf(chunk), StandardCharsets.UTF_8))
+                                .id(Long.toString(ReplyStreams.sequenceOf(chunk)))
+                                .build())
+                                .onErrorResume(e -> Flux.just(ServerSentEvent.builder("reply stream aborted")
+                                        .event("error")
+                                        .build())
+                                        .concatWith(Mono.error(e)))));
+            }
+            return builder.headers(responseHeaders -> responseHeaders.remove(HttpHeaders.CONTENT_LENGTH))
+                    .body(BodyInserters.fromDataBuffers(
+                            chunks.map(chunk -> this.bufferFactory.wrap(ReplyStreams.bytesOf(chunk)))));
+        }
+        MimeType mimeType = contentTypeOf(reply);
+        if (mimeType != null) {
+            builder.contentType(new MediaType(mimeType.getType(), mimeType.getSubtype(), mimeType.getParameters()));
+        }
+        return builder.body(BodyInserters.fromObject(reply.getPayload()));
+    }
+
+    /**
+     * The chunks of the request's reply stream, which is aborted if the client goes away or falls more than the
+     * reorder window behind. An aborted stream ends with an error, so that the connection is closed without the last
+     * chunk.
+     */
+    private Flux<Message<?>> streamOf(String continuationId) {
+        return Flux.<Message<?>>create(sink -> {
+            sink.onCancel(() -> this.replyStreams.abort(continuationId));
+            boolean attached = this.replyStreams.attach(continuationId, new ReplyStreams.ChunkWriter() {
+
+                @Override
+                public void write(Message<?> chunk) {
+                    sink.next(chunk);
+                }
+
+                @Override
+                public void complete() {
+                    sink.complete();
+                }
+
+                @Override
+                public void abort() {
+                    sink.error(new IOException("Reply stream " + continuationId + " aborted"));
+                }
+
+            });
+            if (!attached) {
+                sink.error(new IOException("Reply stream " + continuationId + " aborted"));
+            }
+        }).onBackpressureBuffer(this.replyStreams.getMaxPendingChunks());
+    }
+
+    private static HttpStatus statusOf(Message<?> reply) {
+        Object status = reply.getHeaders().get(org.springframework.integration.http.HttpHeaders.STATUS_CODE);
+        if (status instanceof HttpStatus) {
+            return (HttpStatus) status;
+        }
+        if (status instanceof Number) {
+            return HttpStatus.valueOf(((Number) status).intValue());
+        }
+        if (status instanceof String) {
+            return HttpStatus.valueOf(Integer.parseInt((String) status));
+        }
+        return HttpStatus.OK;
+    }
+
+    private static MimeType contentTypeOf(Message<?> reply) {
+        Object contentType = reply.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType instanceof MimeType) {
+            return (MimeType) contentType;
+        }
+        if (contentType != null) {
+            return MimeType.valueOf(contentType.toString());
+        }
+        return null;
+    }
+
+    /**
+     * @see AsyncContextServletMessagingGateway#resolveReference(Message)
+     */
+    private Reference resolveReference(Message<?> message) throws IOException {
+        Object payload = message.getPayload();
+        JsonNode jsonNode;
+        if (payload instanceof byte[]) {
+            jsonNode = objectMapper.readTree((byte[]) payload);
+        } else if (payload instanceof String) {
+            jsonNode = objectMapper.readTree((String) payload);
+        } else {
+            jsonNode = objectMapper.valueToTree(payload);
+        }
+        String originalContentType = jsonNode.path(ORIGINAL_CONTENT_TYPE).asText();
+        String uri = jsonNode.path("uri").asText();
+        Assert.isTrue(!StringUtils.isEmpty(originalContentType), "'original_content_type' not found");
+        Assert.isTrue(!StringUtils.isEmpty(uri), "'uri' not found");
+        return new Reference(this.resourceLoaderSupport.getResource(uri), MediaType.parseMediaType(originalContentType));
+    }
+
+    private static final class Reference {
+
+        private final Resource resource;
+
+        private final MediaType contentType;
+
+        private Reference(Resource resource, MediaType contentType) {
+            this.resource = resource;
+            this.contentType = contentType;
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+package org.springframework.integration.http.inbound;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the replies to GET requests so that repeated requests for the same resource are answered without
+ * publishing them again.
+ * <p>
+ * Entries are keyed on method, request URI, query string and the values of the configured {@code Vary} headers, and
+ * live for the {@code s-maxage} or {@code max-age} of the reply's {@code Cache-Control} header, or the default time
+ * to live when it has neither. Replies marked {@code no-store}, {@code no-cache} or {@code private} are not stored,
+ * nor are replies to requests carrying {@code Authorization} unless marked {@code public} or {@code s-maxage}.
+ * Replies setting a cookie, replies to requests carrying one, and replies whose own {@code Vary} header names a
+ * request header that is not part of the key are never stored, as they may differ between users.
+ * The cache is bounded by the total size of the cached payloads and evicts by W-TinyLFU.
+ *
+ * @author Haruhiko Nishi
+ */
+public class ReplyCache {
+
+    private static final String KEY_ATTRIBUTE = ReplyCache.class.getName() + ".KEY";
+
+    /**
+     * Rough per-entry overhead of the key, the reply headers and the cache itself.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final Cache<String, CachedReply> cache;
+
+    private final long defaultTimeToLive;
+
+    private final RequestKeyResolver keyResolver;
+
+    private final Set<String> varyHeaders = new HashSet<>();
+
+    private long maxEntrySize = Long.MAX_VALUE;
+
+    /**
+     * @param maxSize maximum total size of the cached replies in bytes
+     * @param defaultTimeToLive milliseconds a reply without {@code max-age} is cached for, 0 to only cache replies
+     * with one
+     * @param varyHeaders request headers whose values are part of the key
+     */
+    public ReplyCache(long maxSize, long defaultTimeToLive, Collection<String> varyHeaders) {
+        Assert.isTrue(maxSize > 0, "'maxSize' must be positive");
+        Assert.isTrue(defaultTimeToLive >= 0, "'defaultTimeToLive' must not be negative");
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.keyResolver = RequestKeyResolver.varying(varyHeaders);
+        if (varyHeaders != null) {
+            varyHeaders.forEach(header -> this.varyHeaders.add(header.toLowerCase(Locale.ROOT)));
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String key, CachedReply reply) -> reply.weight)
+                .expireAfter(new Expiry<String, CachedReply>() {
+
+                    @Override
+                    public long expireAfterCreate(String key, CachedReply reply, long currentTime) {
+                        return reply.timeToLive;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedReply reply, long currentTime,
+                            long currentDuration) {
+                        return reply.timeToLive;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedReply reply, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Replies with a larger payload are not cached.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @return the cached reply for the request, or {@code null} if it has to be published; the request is then
+     * remembered for {@link #put(HttpServletRequest, Message)}
+     */
+    public CachedReply get(HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return null;
+        }
+        String key = this.keyResolver.resolve(request);
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        CachedReply reply = null;
+        if (cacheControl == null || !hasDirective(cacheControl, "no-cache")) {
+            reply = this.cache.getIfPresent(key);
+        }
+        if (reply == null && (cacheControl == null || !hasDirective(cacheControl, "no-store"))) {
+            request.setAttribute(KEY_ATTRIBUTE, key);
+        }
+        return reply;
+    }
+
+    /**
+     * Cache a reply written with 200 to a request {@link #get(HttpServletRequest)} missed.
+     */
+    public void put(HttpServletRequest request, Message<?> reply) {
+        String key = (String) request.getAttribute(KEY_ATTRIBUTE);
+        if (key == null) {
+            return;
+        }
+        request.removeAttribute(KEY_ATTRIBUTE);
+        if (request.getHeader(HttpHeaders.COOKIE) != null || header(reply, HttpHeaders.SET_COOKIE) != null
+                || !variesOnKeyOnly(reply)) {
+            return;
+        }
+        long timeToLive = timeToLive(reply, request.getHeader(HttpHeaders.AUTHORIZATION) != null);
+        if (timeToLive <= 0) {
+            return;
+        }
+        long size = sizeOf(reply.getPayload());
+        if (size < 0 || size > this.maxEntrySize) {
+            return;
+        }
+        int weight = (int) Math.min(Integer.MAX_VALUE, size + key.length() * 2 + ENTRY_OVERHEAD);
+        this.cache.put(key, new CachedReply(reply, TimeUnit.MILLISECONDS.toNanos(timeToLive), weight));
+    }
+
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    public Cache<String, CachedReply> getCache() {
+        return this.cache;
+    }
+
+    private long timeToLive(Message<?> reply, boolean authorized) {
+        String cacheControl = header(reply, HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return authorized ? 0 : this.defaultTimeToLive;
+        }
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "no-cache")
+                || hasDirective(cacheControl, "private")) {
+            return 0;
+        }
+        long sMaxAge = seconds(cacheControl, "s-maxage");
+        if (sMaxAge >= 0) {
+            return TimeUnit.SECONDS.toMillis(sMaxAge);
+        }
+        if (authorized && !hasDirective(cacheControl, "public")) {
+            return 0;
+        }
+        long maxAge = seconds(cacheControl, "max-age");
+        return maxAge >= 0 ? TimeUnit.SECONDS.toMillis(maxAge) : this.defaultTimeToLive;
+    }
+
+    /**
+     * @return whether every request header the reply says it varies on is one the key is made of
+     */
+    private boolean variesOnKeyOnly(Message<?> reply) {
+        String vary = header(reply, HttpHeaders.VARY);
+        if (vary == null) {
+            return true;
+        }
+        for (String header : StringUtils.tokenizeToStringArray(vary, ",")) {
+            if (!this.varyHeaders.contains(header.toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the values of the reply header, whatever the case of its name, comma separated
+     */
+    private static String header(Message<?> reply, String name) {
+        for (Map.Entry<String, Object> entry : reply.getHeaders().entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && entry.getValue() != null) {
+                Object value = entry.getValue();
+                return StringUtils.collectionToCommaDelimitedString(value instanceof Collection
+                        ? (Collection<?>) value : Collections.singletonList(value));
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasDirective(String cacheControl, String directive) {
+        for (String token : StringUtils.tokenizeToStringArray(cacheControl, ",")) {
+            int eq = token.indexOf('=');
+            String name = eq < 0 ? token : token.substring(0, eq).trim();
+            if (name.equalsIgnoreCase(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long seconds(String cacheControl, String directive) {
+        for (String token : StringUtils.tokenizeToStringArray(cacheControl, ",")) {
+            int eq = token.indexOf('=');
+            if (eq > 0 && token.substring(0, eq).trim().equalsIgnoreCase(directive)) {
+                try {
+                    return Long.parseLong(StringUtils.trimTrailingCharacter(
+                            StringUtils.trimLeadingCharacter(token.substring(eq + 1).trim(), '"'), '"'));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A {@link Resource} is cached by reference and re-read for every hit.
+     */
+    static long sizeOf(Object payload) {
+        if (payload instanceof byte[]) {
+            return ((byte[]) payload).length;
+        }
+        if (payload instanceof String) {
+            return ((String) payload).length() * 2L;
+        }
+        if (payload instanceof Resource) {
+            return 0;
+        }
+        return -1;
+    }
+
+    public static final class CachedReply {
+
+        private final Message<?> reply;
+
+        private final long timeToLive;
+
+        private final int weight;
+
+        private final long created = System.nanoTime();
+
+        private CachedReply(Message<?> reply, long timeToLive, int weight) {
+            this.reply = reply;
+            this.timeToLive = timeToLive;
+            this.weight = weight;
+        }
+
+        public Message<?> getReply() {
+            return this.reply;
+        }
+
+        /**
+         * @return seconds since the reply was cached, for the {@code Age} header
+         */
+        public long getAge() {
+            return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.created);
+        }
+    }
+
+}
@@ -0,0 +1,385 @@
+package org.springframework.integration.http.inbound;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.MediaType;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.HashedWheelExpiry;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams a reply made of several messages, its chunks, to the client as they arrive instead of waiting for one
+ * message holding all of it.
+ * <p>
+ * Chunks carry the {@code continuation_id} of their request, a {@value #CHUNK_SEQUENCE} starting at 1 and, on the last
+ * one, {@value #IS_LAST_CHUNK}. The first chunk to arrive resumes the request with itself, the request attaches a
+ * {@link ChunkWriter} and the chunks are written in sequence order from then on, whatever order they arrive in. Chunks
+ * are only queued on the thread offering them and written by a pool of writer threads, one chunk of a stream at a time,
+ * so that a slow client holds up its own stream only. A stream that has not seen its last chunk once the timeout
+ * elapses is aborted, and so is one whose chunks get further ahead of the next one to write than the reorder window,
+ * which bounds the chunks queued for a slow client as well as those held for reordering. A chunk arriving again after
+ * it has been queued is dropped.
+ *
+ * @author Haruhiko Nishi
+ */
+public class ReplyStreams {
+
+    public static final String CHUNK_SEQUENCE = "chunk_sequence";
+
+    public static final String IS_LAST_CHUNK = "is_last_chunk";
+
+    public static final int DEFAULT_MAX_PENDING_CHUNKS = 1024;
+
+    public static final int DEFAULT_WRITER_THREADS = 4;
+
+    private static final byte[] ABORTED_EVENT = "event:error\ndata:reply stream aborted\n\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final Log logger = LogFactory.getLog(ReplyStreams.class);
+
+    private final ConcurrentMap<String, ReplyStream> streams = new ConcurrentHashMap<>();
+
+    private final long timeout;
+
+    private final int maxPendingChunks;
+
+    private final HashedWheelExpiry expiry;
+
+    private final ExecutorService writers;
+
+    private final LongAdder aborted = new LongAdder();
+
+    public ReplyStreams(long timeout) {
+        this(timeout, DEFAULT_MAX_PENDING_CHUNKS);
+    }
+
+    public ReplyStreams(long timeout, int maxPendingChunks) {
+        this(timeout, maxPendingChunks, DEFAULT_WRITER_THREADS);
+    }
+
+    public ReplyStreams(long timeout, int maxPendingChunks, int writerThreads) {
+        this(timeout, maxPendingChunks, writerThreads, new HashedWheelExpiry());
+    }
+
+    /**
+     * @param maxPendingChunks the reorder window, how far past the next chunk to write a chunk may be held or queued
+     * @param writerThreads the number of threads writing chunks to clients
+     */
+    public ReplyStreams(long timeout, int maxPendingChunks, int writerThreads, HashedWheelExpiry expiry) {
+        Assert.isTrue(timeout > 0, "'timeout' must be greater than 0");
+        Assert.isTrue(maxPendingChunks > 0, "'maxPendingChunks' must be greater than 0");
+        Assert.isTrue(writerThreads > 0, "'writerThreads' must be greater than 0");
+        Assert.notNull(expiry, "'expiry' must not be null");
+        this.timeout = timeout;
+        this.maxPendingChunks = maxPendingChunks;
+        this.expiry = expiry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "http-gateway-stream-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isChunk(Message<?> message) {
+        return message.getHeaders().containsKey(CHUNK_SEQUENCE);
+    }
+
+    /**
+     * Whether the client asked for the chunks as Server-Sent Events rather than as one chunked body.
+     */
+    public static boolean isEventStream(List<MediaType> acceptTypes) {
+        return acceptTypes.stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+    }
+
+    public static long sequenceOf(Message<?> chunk) {
+        Object sequence = chunk.getHeaders().get(CHUNK_SEQUENCE);
+        return sequence instanceof Number ? ((Number) sequence).longValue() : Long.parseLong(sequence.toString());
+    }
+
+    public static byte[] bytesOf(Message<?> chunk) {
+        Object payload = chunk.getPayload();
+        if (payload instanceof byte[]) {
+            return (byte[]) payload;
+        }
+        return payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Frame a chunk as a Server-Sent Event whose id is its sequence.
+     */
+    public static byte[] eventOf(Message<?> chunk) {
+        StringBuilder event = new StringBuilder("id:").append(sequenceOf(chunk)).append('\n');
+        for (String line : new String(bytesOf(chunk), StandardCharsets.UTF_8).split("\r\n|\r|\n", -1)) {
+            event.append("data:").append(line).append('\n');
+        }
+        return event.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The Server-Sent Event telling the client its stream has been aborted, written before the connection is closed.
+     */
+    public static byte[] abortedEvent() {
+        return ABORTED_EVENT.clone();
+    }
+
+    private static boolean isLast(Message<?> chunk) {
+        Object last = chunk.getHeaders().get(IS_LAST_CHUNK);
+        return last instanceof Boolean ? (Boolean) last : last != null && Boolean.parseBoolean(last.toString());
+    }
+
+    /**
+     * Add a chunk to the stream already open for its request.
+     * @return {@code false} if there is no such stream
+     */
+    public boolean offer(String continuationId, Message<?> chunk) {
+        ReplyStream stream = continuationId != null ? this.streams.get(continuationId) : null;
+        if (stream == null) {
+            return false;
+        }
+        stream.offer(chunk);
+        return true;
+    }
+
+    /**
+     * Open the stream of a request still waiting for its reply and resume the request with the chunk, or add the
+     * chunk to the stream if another one has just opened it.
+     * @return {@code false} if the request is no longer waiting
+     */
+    public boolean open(Continuation continuation, Message<?> chunk) {
+        ReplyStream stream = new ReplyStream(continuation.getId());
+        ReplyStream existing = this.streams.putIfAbsent(continuation.getId(), stream);
+        if (existing != null) {
+            existing.offer(chunk);
+            return true;
+        }
+        stream.offer(chunk);
+        stream.expiry = this.expiry.schedule(() -> abort(stream), this.timeout);
+        if (!continuation.setReply(chunk)) {
+            remove(stream);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Start writing the chunks of the request's stream.
+     * @return {@code false} if the stream has been aborted already
+     */
+    public boolean attach(String continuationId, ChunkWriter writer) {
+        ReplyStream stream = this.streams.get(continuationId);
+        return stream != null && stream.attach(writer);
+    }
+
+    /**
+     * Give up on the request's stream, e.g. because its client has gone away.
+     */
+    public void abort(String continuationId) {
+        ReplyStream stream = this.streams.get(continuationId);
+        if (stream != null) {
+            abort(stream);
+        }
+    }
+
+    public int size() {
+        return this.streams.size();
+    }
+
+    public int getMaxPendingChunks() {
+        return this.maxPendingChunks;
+    }
+
+    public long getAbortedCount() {
+        return this.aborted.sum();
+    }
+
+    public void stop() {
+        this.expiry.stop();
+        this.writers.shutdownNow();
+    }
+
+    private void abort(ReplyStream stream) {
+        if (stream.abort()) {
+            this.aborted.increment();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Aborted reply stream " + stream.continuationId + " after chunk " + (stream.next - 1));
+            }
+        }
+        remove(stream);
+    }
+
+    private void remove(ReplyStream stream) {
+        HashedWheelExpiry.Timeout expiry = stream.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        this.streams.remove(stream.continuationId, stream);
+    }
+
+    /**
+     * Writes the chunks of one stream to its client, on a writer thread; calls never overlap.
+     */
+    public interface ChunkWriter {
+
+        void write(Message<?> chunk) throws IOException;
+
+        void complete();
+
+        void abort();
+
+    }
+
+    private final class ReplyStream {
+
+        private final String continuationId;
+
+        private final Map<Long, Message<?>> pending = new HashMap<>();
+
+        private final Deque<Message<?>> queued = new ArrayDeque<>();
+
+        private volatile HashedWheelExpiry.Timeout expiry;
+
+        private ChunkWriter writer;
+
+        private long next = 1;
+
+        private long written = 1;
+
+        private boolean writing;
+
+        private boolean done;
+
+        private ReplyStream(String continuationId) {
+            this.continuationId = continuationId;
+        }
+
+        private synchronized void offer(Message<?> chunk) {
+            if (this.done) {
+                return;
+            }
+            long sequence = sequenceOf(chunk);
+            if (sequence < this.next || this.pending.containsKey(sequence)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dropped duplicate chunk " + sequence + " of " + this.continuationId);
+                }
+                return;
+            }
+            // measured from the next chunk to write, so that the window bounds the queued chunks as well
+            if (sequence - this.written >= ReplyStreams.this.maxPendingChunks) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Chunk " + sequence + " of " + this.continuationId + " is beyond the reorder window");
+                }
+                ReplyStreams.this.abort(this);
+                return;
+            }
+            this.pending.put(sequence, chunk);
+            Message<?> inSequence;
+            while ((inSequence = this.pending.remove(this.next)) != null) {
+                this.next++;
+                this.queued.add(inSequence);
+            }
+            schedule();
+        }
+
+        private synchronized boolean attach(ChunkWriter writer) {
+            if (this.done) {
+                return false;
+            }
+            this.writer = writer;
+            schedule();
+            return true;
+        }
+
+        /**
+         * @return whether the stream was still open
+         */
+        private synchronized boolean abort() {
+            if (this.done) {
+                return false;
+            }
+            this.done = true;
+            this.pending.clear();
+            this.queued.clear();
+            // a chunk being written is left to finish, the writer thread aborts the writer after it
+            if (this.writer != null && !this.writing) {
+                this.writer.abort();
+            }
+            return true;
+        }
+
+        private void schedule() {
+            if (this.writer == null || this.writing || this.queued.isEmpty()) {
+                return;
+            }
+            this.writing = true;
+            try {
+                ReplyStreams.this.writers.execute(this::write);
+            } catch (RejectedExecutionException e) {
+                this.writing = false;
+                ReplyStreams.this.abort(this);
+            }
+        }
+
+        /**
+         * Write the next queued chunk outside the lock, then hand the thread back to the other streams.
+         */
+        private void write() {
+            Message<?> chunk;
+            synchronized (this) {
+                chunk = this.done ? null : this.queued.poll();
+                if (chunk == null) {
+                    this.writing = false;
+                    if (this.done) {
+                        this.writer.abort();
+                    }
+                    return;
+                }
+            }
+            try {
+                this.writer.write(chunk);
+            } catch (IOException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to write chunk " + this.written + " of " + this.continuationId, e);
+                }
+                synchronized (this) {
+                    this.writing = false;
+                }
+                ReplyStreams.this.abort(this);
+                return;
+            }
+            synchronized (this) {
+                this.written++;
+                this.writing = false;
+                if (this.done) {
+                    this.writer.abort();
+                } else if (isLast(chunk)) {
+                    this.done = true;
+                    this.pending.clear();
+                    this.queued.clear();
+                    remove(this);
+                    this.writer.complete();
+                } else {
+                    schedule();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical in-flight GET and HEAD requests so that only the first one, the leader, is published and its
+ * reply answers all of them.
+ * <p>
+ * Every request keeps its own {@link Continuation} and therefore its own timeout; followers are merely attached to the
+ * leader's. A flight stops accepting followers once its reply arrives or its leader is gone, and is forgotten once
+ * the last of its requests is, so a reply that never comes does not leave it behind.
+ *
+ * @author Haruhiko Nishi
+ */
+public class RequestCoalescer {
+
+    private final RequestKeyResolver keyResolver;
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Flight> flightsByLeader = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    public RequestCoalescer(RequestKeyResolver keyResolver) {
+        Assert.notNull(keyResolver, "'keyResolver' must not be null");
+        this.keyResolver = keyResolver;
+    }
+
+    /**
+     * Attach the continuation of a request that has been dispatched, but not published yet, to the flight for its
+     * key, or start a new flight led by it.
+     * @return whether the request has to be published
+     */
+    public boolean join(HttpServletRequest request, Continuation continuation) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        String key = this.keyResolver.resolve(request);
+        if (key == null) {
+            return true;
+        }
+        Flight flight = this.flights.compute(key, (k, current) -> {
+            if (current == null) {
+                return new Flight(k, continuation);
+            }
+            current.followers.add(continuation);
+            current.members.incrementAndGet();
+            return current;
+        });
+        if (flight.leader == continuation) {
+            this.flightsByLeader.put(continuation.getId(), flight);
+            continuation.addDisposeCallback(() -> {
+                this.flights.remove(key, flight);
+                left(flight);
+            });
+            return true;
+        }
+        this.coalesced.increment();
+        continuation.addDisposeCallback(() -> left(flight));
+        return false;
+    }
+
+    /**
+     * Hand the reply to the leader with the given continuation id to its followers.
+     * @return the number of followers that accepted it
+     */
+    public int replied(String continuationId, Message<?> reply) {
+        if (continuationId == null) {
+            return 0;
+        }
+        Flight flight = this.flightsByLeader.remove(continuationId);
+        if (flight == null) {
+            return 0;
+        }
+        this.flights.remove(flight.key, flight);
+        int accepted = 0;
+        for (Continuation follower : flight.followers) {
+            if (follower.setReply(reply)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Answer the followers of the leader with the given continuation id with 503, as its request could not be
+     * published, or its reply cannot be shared; they may retry rather than wait for a reply that is not coming.
+     * @return the number of followers that accepted it
+     */
+    public int failed(String continuationId) {
+        return replied(continuationId, MessageBuilder.withPayload(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase())
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                .setHeader(org.springframework.integration.http.HttpHeaders.STATUS_CODE, HttpStatus.SERVICE_UNAVAILABLE)
+                .build());
+    }
+
+    /**
+     * @return the number of requests answered with the reply of another
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.sum();
+    }
+
+    public int getFlightCount() {
+        return this.flightsByLeader.size();
+    }
+
+    private void left(Flight flight) {
+        if (flight.members.decrementAndGet() == 0) {
+            this.flightsByLeader.remove(flight.leader.getId(), flight);
+        }
+    }
+
+    /**
+     * Followers are only added while the flight is mapped to its key, under the lock of that mapping, and only read
+     * once it has been removed from it.
+     */
+    private static final class Flight {
+
+        private final String key;
+
+        private final Continuation leader;
+
+        private final List<Continuation> followers = new ArrayList<>();
+
+        private final AtomicInteger members = new AtomicInteger(1);
+
+        private Flight(String key, Continuation leader) {
+            this.key = key;
+            this.leader = leader;
+        }
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.springframework.integration.http.inbound;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.integration.http.inbound.continuation.HashedWheelExpiry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.PathMatcher;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes a request once more if its reply is slower than usual, so that one slow backend partition does not set the
+ * tail latency. Sits in front of the channel requests are published to, like {@link MessageBatcher}.
+ * <p>
+ * Only requests on hedged routes, which must be idempotent, are considered, and of those only the ones whose method is
+ * idempotent by definition: a POST is never hedged. Once the reply latencies observed on a route reach the percentile,
+ * a request still waiting that long is republished with the {@value #HEDGE} header, for the binding's partition key
+ * expression to route it elsewhere. Whichever reply comes first answers the request and the other one is dropped
+ * quietly. Hedges are sent on a thread of their own rather than the expiry's, and are denied rather than queued
+ * beyond a bound.
+ * <p>
+ * Hedges are paid for from a budget that every hedged-route request adds a fraction of a hedge to, up to a burst, so
+ * hedging can add at most that fraction to the published load even when every reply is slow.
+ *
+ * @author Haruhiko Nishi
+ */
+public class RequestHedger implements MessageChannel {
+
+    public static final String HEDGE = "hedge";
+
+    private static final String CONTINUATION_ID = "continuation_id";
+
+    private static final long CREDITS_PER_HEDGE = 1000;
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final Set<String> IDEMPOTENT_METHODS =
+            new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+
+    private static final Log logger = LogFactory.getLog(RequestHedger.class);
+
+    private final MessageChannel target;
+
+    private final ContinuationRegistry continuationRegistry;
+
+    private final HashedWheelExpiry expiry;
+
+    private final ThreadPoolExecutor executor;
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Boolean> answered = new ConcurrentHashMap<>();
+
+    private final AtomicLong credits = new AtomicLong();
+
+    private final LongAdder hedged = new LongAdder();
+
+    private final LongAdder denied = new LongAdder();
+
+    private final LongAdder ignored = new LongAdder();
+
+    private double percentile = 0.95;
+
+    private long minDelay = 10;
+
+    private long minSamples = 100;
+
+    private long window = 10000;
+
+    private long earnedCredits = 50;
+
+    private long maxCredits = 10 * CREDITS_PER_HEDGE;
+
+    private long answeredRetention = 60000;
+
+    public RequestHedger(MessageChannel target, ContinuationRegistry continuationRegistry) {
+        this(target, continuationRegistry, new HashedWheelExpiry(10, TimeUnit.MILLISECONDS, 512));
+    }
+
+    public RequestHedger(MessageChannel target, ContinuationRegistry continuationRegistry, HashedWheelExpiry expiry) {
+        Assert.notNull(target, "'target' must not be null");
+        Assert.notNull(continuationRegistry, "'continuationRegistry' must not be null");
+        Assert.notNull(expiry, "'expiry' must not be null");
+        this.target = target;
+        this.continuationRegistry = continuationRegistry;
+        this.expiry = expiry;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "http-gateway-hedges");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> this.denied.increment());
+        this.credits.set(this.maxCredits);
+    }
+
+    /**
+     * Hedge the requests whose path matches the Ant-style pattern.
+     */
+    public void addRoute(String pathPattern) {
+        Assert.hasText(pathPattern, "'pathPattern' must not be empty");
+        this.routes.add(new Route(pathPattern, new LatencyHistogram(this.window)));
+    }
+
+    /**
+     * Percentile of a route's reply latency after which its requests are hedged.
+     */
+    public void setPercentile(double percentile) {
+        Assert.isTrue(percentile > 0 && percentile < 1, "'percentile' must be in (0, 1)");
+        this.percentile = percentile;
+    }
+
+    /**
+     * Milliseconds a request waits at least before it is hedged.
+     */
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    /**
+     * Number of replies to observe on a route before its requests are hedged.
+     */
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @param ratio fraction of a hedge every hedged-route request adds to the budget
+     * @param burst maximum number of hedges the budget holds, and starts with
+     */
+    public void setBudget(double ratio, int burst) {
+        Assert.isTrue(ratio >= 0 && ratio <= 1, "'ratio' must be in [0, 1]");
+        Assert.isTrue(burst >= 0, "'burst' must not be negative");
+        this.earnedCredits = Math.round(ratio * CREDITS_PER_HEDGE);
+        this.maxCredits = burst * CREDITS_PER_HEDGE;
+        this.credits.set(this.maxCredits);
+    }
+
+    /**
+     * Milliseconds the second reply to a hedged request is expected for and dropped quietly.
+     */
+    public void setAnsweredRetention(long answeredRetention) {
+        this.answeredRetention = answeredRetention;
+    }
+
+    @Override
+    public boolean send(Message<?> message) {
+        return send(message, -1);
+    }
+
+    @Override
+    public boolean send(Message<?> message, long timeout) {
+        boolean sent = timeout < 0 ? this.target.send(message) : this.target.send(message, timeout);
+        if (sent && !this.routes.isEmpty()) {
+            track(message);
+        }
+        return sent;
+    }
+
+    /**
+     * Tell the hedger a reply has arrived, before it is handed to its continuation.
+     * @return whether it is the second reply to a hedged request and has to be dropped
+     */
+    public boolean replied(String continuationId) {
+        if (continuationId == null) {
+            return false;
+        }
+        Pending pending = this.pending.remove(continuationId);
+        if (pending == null) {
+            if (this.answered.remove(continuationId) == null) {
+                return false;
+            }
+            this.ignored.increment();
+            return true;
+        }
+        pending.cancel();
+        pending.route.latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.sent));
+        if (pending.hedged) {
+            this.answered.put(continuationId, Boolean.TRUE);
+            this.expiry.schedule(() -> this.answered.remove(continuationId), this.answeredRetention);
+        }
+        return false;
+    }
+
+    public long getHedgedCount() {
+        return this.hedged.sum();
+    }
+
+    /**
+     * @return the number of hedges not sent because the budget was spent, or too many were waiting to be sent
+     */
+    public long getDeniedCount() {
+        return this.denied.sum();
+    }
+
+    /**
+     * @return the number of second replies to hedged requests that were dropped
+     */
+    public long getIgnoredCount() {
+        return this.ignored.sum();
+    }
+
+    public void stop() {
+        this.expiry.stop();
+        this.executor.shutdown();
+    }
+
+    private void track(Message<?> message) {
+        String continuationId = message.getHeaders().get(CONTINUATION_ID, String.class);
+        Continuation continuation = this.continuationRegistry.get(continuationId);
+        if (continuation == null || message.getHeaders().containsKey(HEDGE)) {
+            return;
+        }
+        Route route = isIdempotent(message) ? routeOf(message) : null;
+        if (route == null) {
+            return;
+        }
+        earn();
+        long delay = route.delay();
+        Pending pending = new Pending(message, route);
+        this.pending.put(continuationId, pending);
+        if (delay >= 0) {
+            pending.timeout = this.expiry.schedule(
+                    () -> this.executor.execute(() -> hedge(continuationId, pending)), delay);
+        }
+        continuation.addDisposeCallback(() -> {
+            if (this.pending.remove(continuationId, pending)) {
+                pending.cancel();
+            }
+        });
+    }
+
+    private void hedge(String continuationId, Pending pending) {
+        Continuation continuation = this.continuationRegistry.get(continuationId);
+        if (continuation == null || continuation.isExpired() || this.pending.get(continuationId) != pending) {
+            return;
+        }
+        if (!spend()) {
+            this.denied.increment();
+            return;
+        }
+        pending.hedged = true;
+        try {
+            this.target.send(MessageBuilder.fromMessage(pending.message).setHeader(HEDGE, 1).build());
+            this.hedged.increment();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to hedge request " + continuationId, e);
+        }
+    }
+
+    private static boolean isIdempotent(Message<?> message) {
+        Object method = message.getHeaders().get(org.springframework.integration.http.HttpHeaders.REQUEST_METHOD);
+        return method != null && IDEMPOTENT_METHODS.contains(method.toString());
+    }
+
+    private Route routeOf(Message<?> message) {
+        Object url = message.getHeaders().get(org.springframework.integration.http.HttpHeaders.REQUEST_URL);
+        if (url == null) {
+            return null;
+        }
+        String path;
+        try {
+            path = URI.create(url.toString()).getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        for (Route route : this.routes) {
+            if (this.pathMatcher.match(route.pathPattern, path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void earn() {
+        long current;
+        do {
+            current = this.credits.get();
+            if (current >= this.maxCredits) {
+                return;
+            }
+        } while (!this.credits.compareAndSet(current, Math.min(this.maxCredits, current + this.earnedCredits)));
+    }
+
+    private boolean spend() {
+        long current;
+        do {
+            current = this.credits.get();
+            if (current < CREDITS_PER_HEDGE) {
+                return false;
+            }
+        } while (!this.credits.compareAndSet(current, current - CREDITS_PER_HEDGE));
+        return true;
+    }
+
+    private final class Route {
+
+        private final String pathPattern;
+
+        private final LatencyHistogram latencies;
+
+        private Route(String pathPattern, LatencyHistogram latencies) {
+            this.pathPattern = pathPattern;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return milliseconds after which a request is hedged, or -1 until enough replies have been observed
+         */
+        private long delay() {
+            if (this.latencies.getSampleCount() < minSamples) {
+                return -1;
+            }
+            return Math.max(minDelay, this.latencies.percentile(percentile));
+        }
+
+    }
+
+    private static final class Pending {
+
+        private final Message<?> message;
+
+        private final Route route;
+
+        private final long sent = System.nanoTime();
+
+        private volatile HashedWheelExpiry.Timeout timeout;
+
+        private volatile boolean hedged;
+
+        private Pending(Message<?> message, Route route) {
+            this.message = message;
+            this.route = route;
+        }
+
+        private void cancel() {
+            HashedWheelExpiry.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.springframework.integration.http.inbound;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Strategy to tell which requests ask for the same thing, e.g. to share one reply between them.
+ */
+@FunctionalInterface
+public interface RequestKeyResolver {
+
+    /**
+     * @return the key, or {@code null} if the request must not share a reply with any other
+     */
+    String resolve(HttpServletRequest request);
+
+    /**
+     * Key on method, request URI, query string and the values of the given headers.
+     */
+    static RequestKeyResolver varying(Collection<String> headerNames) {
+        List<String> varyHeaders = headerNames != null ? new ArrayList<>(headerNames) : Collections.emptyList();
+        return request -> {
+            StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+            if (request.getQueryString() != null) {
+                key.append('?').append(request.getQueryString());
+            }
+            for (String varyHeader : varyHeaders) {
+                key.append('\n').append(varyHeader).append(':');
+                Enumeration<String> values = request.getHeaders(varyHeader);
+                boolean first = true;
+                while (values != null && values.hasMoreElements()) {
+                    if (!first) {
+                        key.append(',');
+                    }
+                    key.append(values.nextElement());
+                    first = false;
+                }
+            }
+            return key.toString();
+        };
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Writes a {@link Resource} reply, such as a resolved {@code is_reference} reply, straight to the response.
+ * <p>
+ * {@code Content-Length}, {@code ETag} and {@code Last-Modified} are derived from the resource metadata so that
+ * {@code If-None-Match} and {@code If-Modified-Since} can be answered with 304, and a {@code Range} request with 206.
+ *
+ * @author Haruhiko Nishi
+ */
+public class ResourceResponseWriter {
+
+    private final ResourceRegionHttpMessageConverter regionConverter = new ResourceRegionHttpMessageConverter();
+
+    public void write(Resource resource, HttpServletRequest servletRequest, ServletServerHttpResponse response)
+            throws IOException {
+        HttpServletResponse servletResponse = response.getServletResponse();
+        HttpHeaders headers = response.getHeaders();
+        MediaType mediaType = headers.getContentType();
+        if (mediaType == null) {
+            mediaType = MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentType(mediaType);
+        }
+        long length = contentLength(resource);
+        long lastModified = lastModified(resource);
+        String etag = length >= 0 && lastModified > 0 ? etag(length, lastModified) : null;
+        if (etag != null) {
+            servletResponse.setHeader(HttpHeaders.ETAG, etag);
+        }
+        if (lastModified > 0) {
+            servletResponse.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+        if (new ServletWebRequest(servletRequest, servletResponse).checkNotModified(etag, lastModified)) {
+            response.flush();
+            return;
+        }
+        if (length < 0) {
+            try (InputStream inputStream = resource.getInputStream()) {
+                StreamUtils.copy(inputStream, response.getBody());
+            }
+            response.flush();
+            return;
+        }
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String range = servletRequest.getHeader(HttpHeaders.RANGE);
+        if (range == null || servletResponse.getStatus() != HttpStatus.OK.value()
+                || !HttpMethod.GET.matches(servletRequest.getMethod())
+                || !ifRangeMatches(servletRequest, etag, lastModified)) {
+            headers.setContentLength(length);
+            transfer(resource, 0, length, servletRequest, response);
+            return;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+            for (HttpRange httpRange : ranges) {
+                // HttpRange clamps the end to the length but leaves a start beyond it, making a negative length
+                if (httpRange.getRangeStart(length) >= length) {
+                    throw new IllegalArgumentException("Range " + httpRange + " starts beyond length " + length);
+                }
+            }
+            if (ranges.isEmpty()) {
+                headers.setContentLength(length);
+                transfer(resource, 0, length, servletRequest, response);
+            } else if (ranges.size() == 1) {
+                long start = ranges.get(0).getRangeStart(length);
+                long end = ranges.get(0).getRangeEnd(length);
+                response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                headers.setContentLength(end - start + 1);
+                transfer(resource, start, end - start + 1, servletRequest, response);
+            } else {
+                List<ResourceRegion> regions = HttpRange.toResourceRegions(ranges, resource);
+                response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+                regionConverter.write(regions, mediaType, response);
+            }
+        } catch (IllegalArgumentException e) {
+            response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            headers.setContentType(null);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.flush();
+        }
+    }
+
+    private void transfer(Resource resource, long position, long count, HttpServletRequest servletRequest,
+            ServletServerHttpResponse response) throws IOException {
+        if (count == 0 || HttpMethod.HEAD.matches(servletRequest.getMethod())) {
+            response.flush();
+            return;
+        }
+        try (InputStream inputStream = resource.getInputStream()) {
+            StreamUtils.copyRange(inputStream, response.getBody(), position, position + count - 1);
+        }
+        response.flush();
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest servletRequest, String etag, long lastModified) {
+        String ifRange = servletRequest.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return lastModified > 0
+                    && servletRequest.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String etag(long length, long lastModified) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    private static long contentLength(Resource resource) {
+        // reading the length of an InputStreamResource would consume it
+        if (InputStreamResource.class == resource.getClass()) {
+            return -1;
+        }
+        try {
+            return resource.contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long lastModified(Resource resource) {
+        if (InputStreamResource.class == resource.getClass()) {
+            return -1;
+        }
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+}
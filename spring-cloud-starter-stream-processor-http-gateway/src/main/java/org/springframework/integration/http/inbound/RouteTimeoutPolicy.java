@@ -0,0 +1,165 @@
+package org.springframework.integration.http.inbound;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TimeoutPolicy} applying the timeout of the first route whose Ant-style path pattern matches
+ * the request, or a default timeout when none does.
+ * <p>
+ * An adaptive route derives its timeout from a percentile of the reply latencies observed on it plus a
+ * margin, bounded by a minimum and by the route's configured timeout, which also applies until enough
+ * samples have been collected. A request that times out counts as a sample of its timeout, so a route whose
+ * replies stop arriving does not keep the timeout derived from its earlier, faster replies.
+ */
+public class RouteTimeoutPolicy implements TimeoutPolicy {
+
+    private static final String ROUTE_ATTRIBUTE = RouteTimeoutPolicy.class.getName() + ".ROUTE";
+
+    private static final int RECALCULATE_EVERY = 64;
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private final Route defaultRoute;
+
+    private double percentile = 0.99;
+
+    private long margin = 1000;
+
+    private long minTimeout = 1000;
+
+    private long minSamples = 100;
+
+    private final long window;
+
+    public RouteTimeoutPolicy(long defaultTimeout) {
+        this(defaultTimeout, 10000);
+    }
+
+    /**
+     * @param window number of samples after which older latencies start to weigh less
+     */
+    public RouteTimeoutPolicy(long defaultTimeout, long window) {
+        Assert.isTrue(window > 0, "'window' must be greater than 0");
+        this.window = window;
+        this.defaultRoute = new Route(null, defaultTimeout, false);
+    }
+
+    public RouteTimeoutPolicy addRoute(String pathPattern, long timeout, boolean adaptive) {
+        Assert.hasText(pathPattern, "'pathPattern' must not be empty");
+        this.routes.add(new Route(pathPattern, timeout, adaptive));
+        return this;
+    }
+
+    public void setPercentile(double percentile) {
+        Assert.isTrue(percentile > 0 && percentile <= 1, "'percentile' must be in (0, 1]");
+        this.percentile = percentile;
+    }
+
+    public void setMargin(long margin) {
+        this.margin = margin;
+    }
+
+    public void setMinTimeout(long minTimeout) {
+        this.minTimeout = minTimeout;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    @Override
+    public long getTimeout(HttpServletRequest request) {
+        return resolveRoute(request).getTimeout();
+    }
+
+    @Override
+    public void recordLatency(HttpServletRequest request, long latencyMillis) {
+        resolveRoute(request).record(latencyMillis);
+    }
+
+    /**
+     * @return the path pattern of the route matching the request, or {@code null} for the default route
+     */
+    public String getPathPattern(HttpServletRequest request) {
+        return resolveRoute(request).pathPattern;
+    }
+
+    /**
+     * The timeout for a request path within the application, for requests served outside the Servlet API.
+     */
+    public long getTimeout(String path) {
+        return resolveRoute(path).getTimeout();
+    }
+
+    public void recordLatency(String path, long latencyMillis) {
+        resolveRoute(path).record(latencyMillis);
+    }
+
+    public String getPathPattern(String path) {
+        return resolveRoute(path).pathPattern;
+    }
+
+    private Route resolveRoute(HttpServletRequest request) {
+        Route route = (Route) request.getAttribute(ROUTE_ATTRIBUTE);
+        if (route == null) {
+            route = resolveRoute(this.urlPathHelper.getLookupPathForRequest(request));
+            request.setAttribute(ROUTE_ATTRIBUTE, route);
+        }
+        return route;
+    }
+
+    private Route resolveRoute(String path) {
+        for (Route candidate : this.routes) {
+            if (this.pathMatcher.match(candidate.pathPattern, path)) {
+                return candidate;
+            }
+        }
+        return this.defaultRoute;
+    }
+
+    private final class Route {
+
+        private final String pathPattern;
+
+        private final long timeout;
+
+        private final LatencyHistogram latencies;
+
+        private volatile long adaptiveTimeout;
+
+        Route(String pathPattern, long timeout, boolean adaptive) {
+            this.pathPattern = pathPattern;
+            this.timeout = timeout;
+            this.latencies = adaptive ? new LatencyHistogram(window) : null;
+            this.adaptiveTimeout = timeout;
+        }
+
+        long getTimeout() {
+            return this.adaptiveTimeout;
+        }
+
+        void record(long latencyMillis) {
+            if (this.latencies == null) {
+                return;
+            }
+            this.latencies.record(latencyMillis);
+            long samples = this.latencies.getSampleCount();
+            if (samples >= minSamples && samples % RECALCULATE_EVERY == 0) {
+                long observed = this.latencies.percentile(percentile);
+                this.adaptiveTimeout = Math.min(this.timeout, Math.max(minTimeout, observed + margin));
+            }
+        }
+    }
+
+}
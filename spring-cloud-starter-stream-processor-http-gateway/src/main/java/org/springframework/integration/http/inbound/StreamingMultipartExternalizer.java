@@ -0,0 +1,398 @@
+package org.springframework.integration.http.inbound;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.IOUtils;
+import org.springframework.cloud.stream.app.http.gateway.processor.ResourceLoaderSupport;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizedContent;
+import org.springframework.cloud.stream.app.http.gateway.processor.ExternalizingOutputStream;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a multipart request as it is read and writes each file part straight to its externalized location,
+ * instead of spooling it to a temporary file first.
+ * <p>
+ * The request thread reads a part into a small bounded queue of chunks which a pooled writer drains into the target
+ * location, so the write of a part overlaps with reading the rest of the request and the writes of
+ * independent parts run in parallel. When all writers are busy with other requests the request thread writes the part
+ * itself rather than waiting for one, and it waits at most the write timeout for a writer that falls behind. Chunk
+ * buffers are pooled across requests. Exceeding the per-part or per-request size limit fails with a
+ * {@link MaxUploadSizeExceededException} and discards the local files, or aborts the S3 uploads, of the parts written
+ * so far.
+ *
+ * @author Haruhiko Nishi
+ */
+public class StreamingMultipartExternalizer {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int CHUNKS_PER_PART = 16;
+
+    private static final Chunk END = new Chunk(null, 0);
+
+    private final ResourceLoaderSupport resourceLoaderSupport;
+
+    private final ExecutorService executor;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    private long maxPartSize = -1;
+
+    private long maxRequestSize = -1;
+
+    private long writeTimeout = 30000;
+
+    public StreamingMultipartExternalizer(ResourceLoaderSupport resourceLoaderSupport, int concurrency) {
+        this.resourceLoaderSupport = resourceLoaderSupport;
+        this.buffers = new ArrayBlockingQueue<>(concurrency * CHUNKS_PER_PART);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "multipart-upload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Maximum size of a single part in bytes, -1 for no limit.
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    /**
+     * Maximum size of the whole request in bytes, -1 for no limit.
+     */
+    public void setMaxRequestSize(long maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    /**
+     * Milliseconds a request waits for the writer of one of its parts to make progress before failing.
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Externalize the file parts of the request under the given prefix and describe every part the way the
+     * non-streaming path does: file parts by their form parameter name, original file name, content type, uri, size
+     * and digest, other parts as a single {@code name: value} pair.
+     */
+    public ArrayNode externalize(HttpServletRequest request, String prefix, GatewayMetrics metrics) throws IOException {
+        ServletFileUpload fileUpload = new ServletFileUpload();
+        fileUpload.setFileSizeMax(this.maxPartSize);
+        fileUpload.setSizeMax(this.maxRequestSize);
+        String encoding = request.getCharacterEncoding() != null
+                ? request.getCharacterEncoding() : StandardCharsets.UTF_8.name();
+        ArrayNode parts = JsonNodeFactory.instance.arrayNode();
+        List<PartUpload> uploads = new ArrayList<>();
+        try {
+            FileItemIterator iterator = fileUpload.getItemIterator(request);
+            while (iterator.hasNext()) {
+                FileItemStream item = iterator.next();
+                try (InputStream inputStream = item.openStream()) {
+                    if (item.isFormField()) {
+                        parts.addObject().put(item.getFieldName(), Streams.asString(inputStream, encoding));
+                    } else if (StringUtils.hasText(item.getName())) {
+                        ObjectNode objectNode = parts.addObject();
+                        objectNode.put("formParameterName", item.getFieldName());
+                        objectNode.put("originalFileName", item.getName());
+                        objectNode.put("contentType", item.getContentType());
+                        PartUpload upload = new PartUpload(prefix, item.getName(), objectNode);
+                        upload.future = this.executor.submit(upload);
+                        uploads.add(upload);
+                        upload.read(inputStream);
+                    }
+                }
+            }
+            for (PartUpload upload : uploads) {
+                upload.await();
+                ExternalizedContent content = upload.outputStream.getContent();
+                upload.objectNode.put("uri", content.getUri());
+                upload.objectNode.put("size", content.getSize());
+                if (content.getDigest() != null) {
+                    upload.objectNode.put("digest", content.getDigest());
+                }
+                metrics.externalized(content.getSize(), System.nanoTime() - upload.start);
+            }
+            return parts;
+        } catch (FileUploadBase.FileUploadIOException e) {
+            abort(uploads);
+            throw translate((FileUploadException) e.getCause());
+        } catch (FileUploadException e) {
+            abort(uploads);
+            throw translate(e);
+        } catch (IOException | RuntimeException e) {
+            abort(uploads);
+            throw e;
+        }
+    }
+
+    private static MultipartException translate(FileUploadException e) {
+        if (e instanceof FileUploadBase.SizeException) {
+            return new MaxUploadSizeExceededException(((FileUploadBase.SizeException) e).getPermittedSize(), e);
+        }
+        return new MultipartException("Failed to parse multipart servlet request", e);
+    }
+
+    private static void abort(List<PartUpload> uploads) {
+        for (PartUpload upload : uploads) {
+            upload.aborted = true;
+        }
+        for (PartUpload upload : uploads) {
+            try {
+                upload.await();
+            } catch (IOException e) {
+                // already failing
+            }
+            // a writer that timed out discards its part itself once done
+            if (upload.isDone() && upload.outputStream != null) {
+                upload.outputStream.abort();
+            }
+        }
+    }
+
+    private byte[] acquireBuffer() {
+        byte[] buffer = this.buffers.poll();
+        return buffer != null ? buffer : new byte[CHUNK_SIZE];
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        if (buffer != null) {
+            this.buffers.offer(buffer);
+        }
+    }
+
+    private static final class Chunk {
+
+        private final byte[] buffer;
+
+        private final int length;
+
+        private Chunk(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A part is written by whichever thread claims it first: a pooled writer draining the queue of chunks, or the
+     * request thread itself once the queue is full, or the request has been read, before any writer got to it.
+     */
+    private final class PartUpload implements Callable<Void> {
+
+        private final String prefix;
+
+        private final String filename;
+
+        private final ObjectNode objectNode;
+
+        private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(CHUNKS_PER_PART);
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final long start = System.nanoTime();
+
+        private volatile boolean inline;
+
+        private volatile boolean aborted;
+
+        private volatile ExternalizingOutputStream outputStream;
+
+        private IOException failure;
+
+        private Future<?> future;
+
+        private PartUpload(String prefix, String filename, ObjectNode objectNode) {
+            this.prefix = prefix;
+            this.filename = filename;
+            this.objectNode = objectNode;
+        }
+
+        private void read(InputStream inputStream) throws IOException {
+            try {
+                while (true) {
+                    byte[] buffer = acquireBuffer();
+                    int n = IOUtils.read(inputStream, buffer);
+                    if (n == 0) {
+                        releaseBuffer(buffer);
+                        break;
+                    }
+                    put(new Chunk(buffer, n));
+                    if (n < CHUNK_SIZE) {
+                        break;
+                    }
+                }
+                put(END);
+            } catch (IOException | RuntimeException e) {
+                this.aborted = true;
+                if (!this.inline) {
+                    // only this thread adds chunks, so once cleared there is room for the end of the part
+                    for (Chunk chunk = this.chunks.poll(); chunk != null; chunk = this.chunks.poll()) {
+                        releaseBuffer(chunk.buffer);
+                    }
+                    this.chunks.offer(END);
+                }
+                throw e;
+            }
+        }
+
+        private void put(Chunk chunk) throws IOException {
+            if (this.inline) {
+                write(chunk);
+                return;
+            }
+            if (this.chunks.offer(chunk)) {
+                return;
+            }
+            if (this.claimed.compareAndSet(false, true)) {
+                this.inline = true;
+                drain();
+                write(chunk);
+                return;
+            }
+            try {
+                if (!this.chunks.offer(chunk, writeTimeout, TimeUnit.MILLISECONDS)) {
+                    releaseBuffer(chunk.buffer);
+                    throw new IOException("Timed out after " + writeTimeout + "ms writing " + this.filename);
+                }
+            } catch (InterruptedException e) {
+                releaseBuffer(chunk.buffer);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                for (Chunk chunk = this.chunks.take(); chunk != END; chunk = this.chunks.take()) {
+                    write(chunk);
+                }
+            } catch (InterruptedException e) {
+                this.aborted = true;
+                finish();
+                throw e;
+            }
+            finish();
+            return null;
+        }
+
+        private void drain() {
+            for (Chunk chunk = this.chunks.poll(); chunk != null; chunk = this.chunks.poll()) {
+                write(chunk);
+            }
+        }
+
+        /**
+         * Keeps consuming chunks after a failure so that the reading thread never blocks on a full queue.
+         */
+        private void write(Chunk chunk) {
+            if (chunk == END) {
+                return;
+            }
+            try {
+                if (this.failure == null && !this.aborted) {
+                    if (this.outputStream == null) {
+                        openOutputStream();
+                    }
+                    this.outputStream.write(chunk.buffer, 0, chunk.length);
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            } finally {
+                releaseBuffer(chunk.buffer);
+            }
+        }
+
+        private void finish() throws IOException {
+            if (this.failure != null || this.aborted) {
+                if (this.outputStream != null) {
+                    this.outputStream.abort();
+                }
+                if (this.failure != null) {
+                    throw this.failure;
+                }
+                return;
+            }
+            if (this.outputStream == null) {
+                openOutputStream();
+            }
+            this.outputStream.close();
+        }
+
+        private void openOutputStream() throws IOException {
+            this.outputStream = resourceLoaderSupport.openOutputStream(this.prefix, this.filename);
+        }
+
+        /**
+         * Wait for the part to be written, writing it on the calling thread if no pooled writer has got to it yet.
+         */
+        private void await() throws IOException {
+            if (this.claimed.compareAndSet(false, true)) {
+                this.inline = true;
+                drain();
+            }
+            if (this.inline) {
+                finish();
+                return;
+            }
+            try {
+                this.future.get(writeTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (TimeoutException e) {
+                throw new IOException("Timed out after " + writeTimeout + "ms writing " + this.filename);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to externalize " + this.filename, cause);
+            }
+        }
+
+        private boolean isDone() {
+            return this.inline || this.future.isDone();
+        }
+    }
+
+}
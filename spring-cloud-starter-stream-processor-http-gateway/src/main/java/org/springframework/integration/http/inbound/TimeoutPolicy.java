@@ -0,0 +1,18 @@
+package org.springframework.integration.http.inbound;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Strategy deciding how long a request may wait for its reply.
+ */
+public interface TimeoutPolicy {
+
+    long getTimeout(HttpServletRequest request);
+
+    /**
+     * Called with the time it took for a reply to arrive for the given request.
+     */
+    default void recordLatency(HttpServletRequest request, long latencyMillis) {
+    }
+
+}
@@ -10,36 +10,77 @@ import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 
-class AsyncContextContinuation implements Continuation, AsyncListener {
+class AsyncContextContinuation implements ServletContinuation, AsyncListener {
+    /**
+     * The container timeout is only a backstop, the expiry wheel owns the deadline.
+     */
+    private static final long CONTAINER_TIMEOUT_GRACE = 1000;
     private Log logger = LogFactory.getLog(getClass());
     private final Object lock = new Object();
     private final long timeout;
     private AsyncContext context;
     private volatile boolean expired = false;
-    private Integer id;
+    private final ContinuationRegistry registry;
+    private final String id;
     private Message<?> reply;
+    private volatile HashedWheelExpiry.Timeout expiry;
+    private Runnable disposeCallback;
+    private ReplyHandler replyHandler;
+    private boolean disposed;
 
-    AsyncContextContinuation(Integer id, long timeout) {
+    AsyncContextContinuation(ContinuationRegistry registry, String id, long timeout) {
+        this.registry = registry;
         this.id = id;
         this.timeout = timeout;
     }
 
     @Override
-    public Integer getId() {
+    public String getId() {
         return this.id;
     }
 
+    void setExpiry(HashedWheelExpiry.Timeout expiry) {
+        this.expiry = expiry;
+    }
+
     public boolean setReply(Message<?> message) {
         if (isExpired()) {
             return false;
         }
+        ReplyHandler replyHandler;
+        AsyncContext context;
         synchronized (lock) {
+            if (isExpired()) {
+                return false;
+            }
+            replyHandler = this.replyHandler;
+            if (replyHandler == null) {
+                this.reply = message;
+                resume();
+                return true;
+            }
+            if (this.reply != null) {
+                return false;
+            }
             this.reply = message;
-            resume();
+            context = this.context;
+            if (context == null) {
+                throw new IllegalStateException();
+            }
         }
+        // the request is never dispatched again, so it is done with the registry now
+        dispose();
+        replyHandler.handle(context, message);
         return true;
     }
 
+    @Override
+    public void setReplyHandler(ReplyHandler replyHandler) {
+        synchronized (lock) {
+            this.replyHandler = replyHandler;
+        }
+    }
+
     @Override
     public Message<?> dispatch(HttpServletRequest request) {
         synchronized (this.lock) {
@@ -54,20 +95,92 @@ class AsyncContextContinuation implements Continuation, AsyncListener {
             }
             // initial request
             context = request.startAsync();
-            context.setTimeout(timeout);
+            context.setTimeout(timeout + CONTAINER_TIMEOUT_GRACE);
             context.addListener(this);
             return null;
         }
     }
 
+    @Override
+    public void addDisposeCallback(Runnable callback) {
+        synchronized (lock) {
+            if (!disposed) {
+                Runnable previous = this.disposeCallback;
+                this.disposeCallback = previous == null ? callback : () -> {
+                    previous.run();
+                    callback.run();
+                };
+                return;
+            }
+        }
+        callback.run();
+    }
+
     private void dispose() {
-        Continuations.dispose(this);
+        cancelExpiry();
+        if (registry.remove(this)) {
+            disposed();
+        }
+    }
+
+    private void reclaim(ContinuationRegistry.CancelReason reason) {
+        cancelExpiry();
+        if (registry.reclaim(this, reason)) {
+            disposed();
+        }
+    }
+
+    private void disposed() {
+        Runnable callback;
+        synchronized (lock) {
+            disposed = true;
+            callback = this.disposeCallback;
+            this.disposeCallback = null;
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private void cancelExpiry() {
+        HashedWheelExpiry.Timeout expiry = this.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
     }
 
     public boolean isExpired() {
         return expired;
     }
 
+    @Override
+    public void expire() {
+        AsyncContext context;
+        synchronized (lock) {
+            if (this.reply != null || isExpired()) {
+                return;
+            }
+            expired = true;
+            context = this.context;
+        }
+        reclaim(ContinuationRegistry.CancelReason.TIMEOUT);
+        if (context != null) {
+            try {
+                if (context.getRequest().isAsyncStarted()) {
+                    context.dispatch();
+                }
+            } catch (IllegalStateException e) {
+                // the container has already completed or errored the request
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Could not resume expired continuation " + this.id, e);
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Expired continuation " + this.id + " after " + timeout + " ms");
+        }
+    }
+
     private void resume() {
         synchronized (lock) {
             if (logger.isDebugEnabled()) {
@@ -83,12 +196,20 @@ class AsyncContextContinuation implements Continuation, AsyncListener {
 
     @Override
     public void onComplete(AsyncEvent asyncEvent) throws IOException {
-
+        // no-op when the reply has already been dispatched
+        reclaim(ContinuationRegistry.CancelReason.CLIENT_GONE);
     }
 
     @Override
     public void onTimeout(AsyncEvent asyncEvent) throws IOException {
-        expired = true;
+        synchronized (lock) {
+            if (this.replyHandler != null && this.reply != null) {
+                // the reply handler is still writing and completes the context itself
+                return;
+            }
+            expired = true;
+        }
+        reclaim(ContinuationRegistry.CancelReason.TIMEOUT);
         if (asyncEvent.getSuppliedRequest().isAsyncStarted()) asyncEvent.getAsyncContext().dispatch();
         if (logger.isDebugEnabled()) {
             logger.debug("Timed out for " + asyncEvent.getSuppliedRequest().getRemoteAddr() + " after " + timeout + " ms");
@@ -97,7 +218,13 @@ class AsyncContextContinuation implements Continuation, AsyncListener {
 
     @Override
     public void onError(AsyncEvent asyncEvent) throws IOException {
-
+        synchronized (lock) {
+            expired = true;
+        }
+        reclaim(ContinuationRegistry.CancelReason.CLIENT_GONE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Async error for " + asyncEvent.getSuppliedRequest().getRemoteAddr(), asyncEvent.getThrowable());
+        }
     }
 
     @Override
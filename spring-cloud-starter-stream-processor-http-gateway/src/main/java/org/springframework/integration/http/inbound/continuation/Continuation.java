@@ -2,17 +2,29 @@ package org.springframework.integration.http.inbound.continuation;
 
 import org.springframework.messaging.Message;
 
-import javax.servlet.http.HttpServletRequest;
-
+/**
+ * A request parked until its reply arrives or it expires, whatever web stack it is served on.
+ *
+ * @see ServletContinuation
+ * @see MonoContinuation
+ */
 public interface Continuation {
-    String ID_ATTRIBUTE = Continuations.class.getName() + ".ID";
 
     boolean setReply(Message<?> message);
 
-    Message<?> dispatch(HttpServletRequest request);
-
-    Integer getId();
+    String getId();
 
     boolean isExpired();
 
+    /**
+     * Give up waiting for a reply, e.g. because the deadline has passed.
+     */
+    void expire();
+
+    /**
+     * Register a callback to run once the continuation is removed from its registry, whether it was
+     * completed with a reply or reclaimed. Runs immediately if that has already happened.
+     */
+    void addDisposeCallback(Runnable callback);
+
 }
@@ -0,0 +1,233 @@
+package org.springframework.integration.http.inbound.continuation;
+
+import org.springframework.util.Assert;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Registry of in-flight {@link Continuation}s keyed by their id.
+ * <p>
+ * Ids are taken from a monotonic sequence so two in-flight requests can never share one, and the
+ * entries are spread over a fixed number of independent stripes so that registering and removing
+ * continuations never goes through a single lock.
+ * <p>
+ * Each continuation's deadline is owned by a {@link HashedWheelExpiry}, so entries whose request timed
+ * out, errored or was abandoned by the client are reclaimed rather than kept for the life of the process.
+ * <p>
+ * Ids are prefixed with the identity of the gateway instance that owns the registry and a random incarnation
+ * drawn when the registry is created, so a reply can be attributed to the node holding the suspended request
+ * without consulting any registry. Replicas sharing an instance id, and a restarted instance whose sequence
+ * starts over, never issue the same id.
+ */
+public class ContinuationRegistry {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+
+    private static final String DEFAULT_INSTANCE_ID = "0";
+
+    private static final char SEPARATOR = '-';
+
+    private static final char INCARNATION_SEPARATOR = '.';
+
+    private final String instanceId;
+
+    private final String idPrefix;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ConcurrentMap<String, Continuation>[] stripes;
+
+    private final int mask;
+
+    private final HashedWheelExpiry expiry;
+
+    private final LongAdder reclaimed = new LongAdder();
+
+    private volatile CancellationListener cancellationListener;
+
+    public ContinuationRegistry() {
+        this(DEFAULT_INSTANCE_ID);
+    }
+
+    public ContinuationRegistry(String instanceId) {
+        this(instanceId, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ContinuationRegistry(int concurrencyLevel) {
+        this(DEFAULT_INSTANCE_ID, concurrencyLevel);
+    }
+
+    public ContinuationRegistry(String instanceId, int concurrencyLevel) {
+        this(instanceId, concurrencyLevel, new HashedWheelExpiry());
+    }
+
+    public ContinuationRegistry(int concurrencyLevel, HashedWheelExpiry expiry) {
+        this(DEFAULT_INSTANCE_ID, concurrencyLevel, expiry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ContinuationRegistry(String instanceId, int concurrencyLevel, HashedWheelExpiry expiry) {
+        Assert.hasText(instanceId, "'instanceId' must not be empty");
+        Assert.isTrue(instanceId.indexOf(SEPARATOR) < 0, () -> "'instanceId' must not contain '" + SEPARATOR + "'");
+        Assert.isTrue(concurrencyLevel > 0, "'concurrencyLevel' must be greater than 0");
+        Assert.notNull(expiry, "'expiry' must not be null");
+        this.instanceId = instanceId;
+        this.idPrefix = instanceId + INCARNATION_SEPARATOR
+                + Long.toUnsignedString(UUID.randomUUID().getMostSignificantBits(), 36) + SEPARATOR;
+        this.expiry = expiry;
+        int size = Integer.highestOneBit(concurrencyLevel - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.stripes = new ConcurrentMap[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * The continuation is kept as a request attribute so that resumed dispatches of the same request
+     * never go back to the registry.
+     */
+    public ServletContinuation getContinuation(HttpServletRequest request, long timeout) {
+        ServletContinuation continuation = (ServletContinuation) request.getAttribute(ServletContinuation.ATTRIBUTE);
+        if (continuation == null) {
+            continuation = register(timeout);
+            request.setAttribute(ServletContinuation.ATTRIBUTE, continuation);
+            request.setAttribute(ServletContinuation.ID_ATTRIBUTE, continuation.getId());
+        }
+        return continuation;
+    }
+
+    public ServletContinuation register(long timeout) {
+        AsyncContextContinuation continuation = register(id -> new AsyncContextContinuation(this, id, timeout));
+        continuation.setExpiry(this.expiry.schedule(continuation::expire, timeout));
+        return continuation;
+    }
+
+    /**
+     * Register a continuation for a request served on the reactive stack.
+     */
+    public MonoContinuation registerMono(long timeout) {
+        MonoContinuation continuation = register(id -> new MonoContinuation(this, id, timeout));
+        continuation.setExpiry(this.expiry.schedule(continuation::expire, timeout));
+        return continuation;
+    }
+
+    <T extends Continuation> T register(Function<String, T> factory) {
+        String id = nextId();
+        T continuation = factory.apply(id);
+        Continuation previous = stripeFor(id).putIfAbsent(id, continuation);
+        Assert.state(previous == null, () -> "Duplicate continuation id " + id);
+        return continuation;
+    }
+
+    /**
+     * Issue an id for a request that is correlated with its reply without being parked as a continuation.
+     */
+    public String issueId() {
+        return nextId();
+    }
+
+    public Continuation get(String id) {
+        if (id == null) {
+            return null;
+        }
+        return stripeFor(id).get(id);
+    }
+
+    /**
+     * Whether the given id was issued by this registry, rather than by another instance or an earlier incarnation of
+     * this one.
+     */
+    public boolean isLocal(String id) {
+        return id != null && id.startsWith(this.idPrefix);
+    }
+
+    public String getInstanceId() {
+        return this.instanceId;
+    }
+
+    public boolean remove(Continuation continuation) {
+        return stripeFor(continuation.getId()).remove(continuation.getId(), continuation);
+    }
+
+    /**
+     * Be told about every continuation given up on before its reply arrived, e.g. to cancel the work done for it.
+     */
+    public void setCancellationListener(CancellationListener cancellationListener) {
+        this.cancellationListener = cancellationListener;
+    }
+
+    /**
+     * Remove a continuation that will never be completed with a reply.
+     */
+    boolean reclaim(Continuation continuation, CancelReason reason) {
+        if (remove(continuation)) {
+            this.reclaimed.increment();
+            CancellationListener listener = this.cancellationListener;
+            if (listener != null) {
+                listener.cancelled(continuation.getId(), reason);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<String, Continuation> stripe : this.stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public void stop() {
+        this.expiry.stop();
+    }
+
+    public long getReclaimedCount() {
+        return this.reclaimed.sum();
+    }
+
+    public enum CancelReason {
+
+        /**
+         * The request timed out.
+         */
+        TIMEOUT,
+
+        /**
+         * The client went away, or the request ended otherwise.
+         */
+        CLIENT_GONE
+
+    }
+
+    @FunctionalInterface
+    public interface CancellationListener {
+
+        /**
+         * Called on the thread giving up on the continuation, which may be the expiry's; must not block.
+         */
+        void cancelled(String continuationId, CancelReason reason);
+
+    }
+
+    private String nextId() {
+        return this.idPrefix + this.sequence.incrementAndGet();
+    }
+
+    private ConcurrentMap<String, Continuation> stripeFor(String id) {
+        int h = id.hashCode();
+        return this.stripes[(h ^ (h >>> 16)) & this.mask];
+    }
+
+}
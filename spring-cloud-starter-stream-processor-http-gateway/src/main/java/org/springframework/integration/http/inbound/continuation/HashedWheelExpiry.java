@@ -0,0 +1,214 @@
+package org.springframework.integration.http.inbound.continuation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel that owns the deadlines of in-flight continuations.
+ * <p>
+ * Scheduling and cancelling are O(1) and lock-free for the caller: new deadlines are handed to a
+ * single worker thread through a queue, and cancelled deadlines are only unlinked when the worker
+ * visits their bucket. Deadlines fire at most one tick late.
+ */
+public class HashedWheelExpiry {
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final Log logger = LogFactory.getLog(getClass());
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean running;
+
+    private volatile long startTime;
+
+    private Thread worker;
+
+    public HashedWheelExpiry() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    public HashedWheelExpiry(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        Assert.isTrue(tickDuration > 0, "'tickDuration' must be greater than 0");
+        Assert.isTrue(ticksPerWheel > 0 && (ticksPerWheel & (ticksPerWheel - 1)) == 0,
+                "'ticksPerWheel' must be a power of two");
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = ticksPerWheel - 1;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.tickNanos);
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        this.pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        this.running = false;
+        Thread worker = this.worker;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void start() {
+        if (this.started.compareAndSet(false, true)) {
+            this.startTime = System.nanoTime();
+            this.running = true;
+            Thread worker = new Thread(this::run, "continuation-expiry");
+            worker.setDaemon(true);
+            this.worker = worker;
+            worker.start();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (this.running) {
+            long deadline = this.startTime + this.tickNanos * (tick + 1);
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (!this.running) {
+                    return;
+                }
+            }
+            transferPending(tick);
+            this.wheel[(int) (tick & this.mask)].expire(System.nanoTime());
+            tick++;
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = this.pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long ticks = Math.max((timeout.deadline - this.startTime) / this.tickNanos, tick);
+            timeout.rounds = (ticks - tick) / this.wheel.length;
+            this.wheel[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    public final class Timeout {
+
+        private volatile Runnable task;
+
+        private final long deadline;
+
+        private long rounds;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel this deadline. The task reference is dropped right away so that a cancelled entry
+         * holds on to nothing until the worker unlinks it.
+         */
+        public void cancel() {
+            this.task = null;
+        }
+
+        public boolean isCancelled() {
+            return this.task == null;
+        }
+
+        private void expire() {
+            Runnable task = this.task;
+            if (task != null) {
+                this.task = null;
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.warn("Failed to expire continuation", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Only ever touched by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.next = null;
+            if (this.head == null) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                this.tail = timeout;
+            }
+        }
+
+        void expire(long now) {
+            Timeout previous = null;
+            Timeout timeout = this.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                boolean remove;
+                if (timeout.isCancelled()) {
+                    remove = true;
+                } else if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                    timeout.expire();
+                    remove = true;
+                } else {
+                    if (timeout.rounds > 0) {
+                        timeout.rounds--;
+                    }
+                    remove = false;
+                }
+                if (remove) {
+                    if (previous == null) {
+                        this.head = next;
+                    } else {
+                        previous.next = next;
+                    }
+                    if (timeout == this.tail) {
+                        this.tail = previous;
+                    }
+                    timeout.next = null;
+                } else {
+                    previous = timeout;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.springframework.integration.http.inbound.continuation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * A {@link Continuation} for requests served on the reactive stack, where nothing has to be suspended: the request is
+ * parked as a {@link Mono} that emits the reply, or completes empty once the continuation expires or is cancelled.
+ * <p>
+ * The deadline is owned by the registry's {@link HashedWheelExpiry}, just as for {@link AsyncContextContinuation}.
+ */
+public final class MonoContinuation implements Continuation {
+
+    private static final Log logger = LogFactory.getLog(MonoContinuation.class);
+
+    private final Object lock = new Object();
+
+    private final ContinuationRegistry registry;
+
+    private final String id;
+
+    private final long timeout;
+
+    private final MonoProcessor<Message<?>> reply = MonoProcessor.create();
+
+    private volatile boolean expired;
+
+    private volatile HashedWheelExpiry.Timeout expiry;
+
+    private boolean replied;
+
+    private Runnable disposeCallback;
+
+    private boolean disposed;
+
+    MonoContinuation(ContinuationRegistry registry, String id, long timeout) {
+        this.registry = registry;
+        this.id = id;
+        this.timeout = timeout;
+    }
+
+    void setExpiry(HashedWheelExpiry.Timeout expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * @return emits the reply on the thread that sets it, or completes empty if none arrives in time
+     */
+    public Mono<Message<?>> getReply() {
+        return this.reply;
+    }
+
+    @Override
+    public boolean setReply(Message<?> message) {
+        if (isExpired()) {
+            return false;
+        }
+        synchronized (this.lock) {
+            if (isExpired() || this.replied) {
+                return false;
+            }
+            this.replied = true;
+        }
+        dispose();
+        this.reply.onNext(message);
+        return true;
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public boolean isExpired() {
+        return this.expired;
+    }
+
+    @Override
+    public void expire() {
+        if (giveUp(ContinuationRegistry.CancelReason.TIMEOUT)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Expired continuation " + this.id + " after " + this.timeout + " ms");
+            }
+        }
+    }
+
+    /**
+     * Stop waiting for a reply because the client has gone away.
+     */
+    public void cancel() {
+        if (giveUp(ContinuationRegistry.CancelReason.CLIENT_GONE)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Cancelled continuation " + this.id);
+            }
+        }
+    }
+
+    @Override
+    public void addDisposeCallback(Runnable callback) {
+        synchronized (this.lock) {
+            if (!this.disposed) {
+                Runnable previous = this.disposeCallback;
+                this.disposeCallback = previous == null ? callback : () -> {
+                    previous.run();
+                    callback.run();
+                };
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private boolean giveUp(ContinuationRegistry.CancelReason reason) {
+        synchronized (this.lock) {
+            if (this.replied || this.expired) {
+                return false;
+            }
+            this.expired = true;
+        }
+        cancelExpiry();
+        if (this.registry.reclaim(this, reason)) {
+            disposed();
+        }
+        this.reply.onComplete();
+        return true;
+    }
+
+    private void dispose() {
+        cancelExpiry();
+        if (this.registry.remove(this)) {
+            disposed();
+        }
+    }
+
+    private void disposed() {
+        Runnable callback;
+        synchronized (this.lock) {
+            this.disposed = true;
+            callback = this.disposeCallback;
+            this.disposeCallback = null;
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private void cancelExpiry() {
+        HashedWheelExpiry.Timeout expiry = this.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.springframework.integration.http.inbound.continuation;
+
+import org.springframework.messaging.Message;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * A {@link Continuation} for a request served on the servlet stack, suspended in its {@link AsyncContext} and
+ * resumed by dispatching it through the container again.
+ */
+public interface ServletContinuation extends Continuation {
+
+    String ATTRIBUTE = ServletContinuation.class.getName();
+
+    String ID_ATTRIBUTE = Continuations.class.getName() + ".ID";
+
+    /**
+     * @return the reply once the request is resumed with one, otherwise {@code null} after suspending the request, or
+     * on the dispatch that resumes it once it has expired
+     */
+    Message<?> dispatch(HttpServletRequest request);
+
+    /**
+     * Have the reply written by the given handler on the thread that sets it, instead of re-dispatching the request
+     * through the container. The handler is responsible for completing the {@link AsyncContext}.
+     */
+    void setReplyHandler(ReplyHandler replyHandler);
+
+    @FunctionalInterface
+    interface ReplyHandler {
+
+        void handle(AsyncContext context, Message<?> reply);
+
+    }
+
+}
@@ -5,18 +5,28 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicNameValuePair;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
 import org.springframework.http.HttpHeaders;
+import org.apache.http.util.EntityUtils;
 import org.springframework.http.MediaType;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.annotation.DirtiesContext;
@@ -25,9 +35,21 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 
@@ -45,6 +67,25 @@ public abstract class HttpGatewayProcessorTests {
     @Autowired
     protected ObjectMapper objectMapper;
 
+    /**
+     * Reply to the next request published with the request itself.
+     * @return the request, once it has been published
+     */
+    protected AtomicReference<Message<?>> echoNextRequest() {
+        AtomicReference<Message<?>> request = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                Message<?> message = messageCollector.forChannel(channels.output()).take();
+                request.set(message);
+                channels.input().send(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return request;
+    }
+
     @TestPropertySource(properties = {"server.port=1234", "http-gateway.timeout=10000",
             "logging.level.org.springframework.integration.http.inbound.continuation.AsyncContextContinuation=DEBUG",
             "http-gateway.resourceLocationUri=file://tmp/files/{yyyy}/{MM}/{dd}/{HH}-{mm}-{ss}/{key}{extension}"})
@@ -55,16 +96,7 @@ public abstract class HttpGatewayProcessorTests {
 
         @Test
         public void testHttpGatewayProcessor() throws Exception {
-            Thread thread = new Thread(() -> {
-                Message<?> message = null;
-                try {
-                    message = messageCollector.forChannel(channels.output()).take();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-                channels.input().send(message);
-            });
-            thread.start();
+            echoNextRequest();
 
             HttpUriRequest request = new HttpGet("http://localhost:1234/test");
             request.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
@@ -142,6 +174,581 @@ public abstract class HttpGatewayProcessorTests {
 
     }
 
+    @TestPropertySource(properties = {"server.port=1235", "http-gateway.timeout=5000",
+            "spring.cloud.stream.instanceIndex=1", "spring.cloud.stream.instanceCount=2"})
+    public static class MultiInstanceHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testRepliesForOtherInstancesAreIgnored() throws Exception {
+            AtomicReference<Message<?>> request = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                Message<?> message = null;
+                try {
+                    message = messageCollector.forChannel(channels.output()).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                request.set(message);
+                String continuationId = message.getHeaders().get("continuation_id", String.class);
+                String foreignId = "0" + continuationId.substring(continuationId.indexOf('-'));
+                channels.input().send(MessageBuilder.withPayload("foreign")
+                        .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                        .setHeader("continuation_id", foreignId)
+                        .build());
+                channels.input().send(MessageBuilder.withPayload("owner")
+                        .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                        .setHeader("continuation_id", continuationId)
+                        .build());
+            });
+            thread.start();
+
+            HttpUriRequest httpRequest = new HttpGet("http://localhost:1235/test");
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpRequest);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("owner"));
+            assertThat(request.get().getHeaders().get("continuation_id", String.class).startsWith("1-"), is(true));
+            assertThat(request.get().getHeaders().get("reply_partition"), equalTo("1"));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1236", "http-gateway.timeout=5000",
+            "http-gateway.claim-check-threshold=1KB",
+            "http-gateway.resourceLocationUri=file:///tmp/http-gateway-tests/claim-check/"})
+    public static class ClaimCheckHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Autowired
+        private ResourceLoaderSupport resourceLoaderSupport;
+
+        @Test
+        public void testLargeBodyIsPublishedAsReference() throws Exception {
+            byte[] body = new byte[4096];
+            Arrays.fill(body, (byte) 'x');
+            AtomicReference<Message<?>> request = echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1236/upload");
+            httpPost.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_OCTET_STREAM));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toByteArray(response.getEntity()), equalTo(body));
+
+            Message<?> published = request.get();
+            assertThat(published.getHeaders().get("is_reference"), equalTo(Boolean.TRUE));
+            JsonNode reference = objectMapper.readTree((String) published.getPayload());
+            assertThat(reference.path("original_content_type").asText(), equalTo("application/octet-stream"));
+            assertThat(reference.path("size").asLong(), equalTo(4096L));
+            assertThat(resourceLoaderSupport.getResource(reference.path("uri").asText()).contentLength(), equalTo(4096L));
+        }
+
+        @Test
+        public void testForgedReferenceIsNotResolved() throws Exception {
+            String body = "{\"uri\":\"file:///etc/hosts\",\"original_content_type\":\"text/plain\"}";
+            AtomicReference<Message<?>> request = echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1236/upload");
+            httpPost.setHeader("is_reference", "true");
+            httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo(body));
+            assertThat(request.get().getHeaders().containsKey("is_reference"), is(false));
+        }
+
+        @Test
+        public void testSmallBodyIsPublishedAsIs() throws Exception {
+            echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1236/upload");
+            httpPost.setEntity(new StringEntity("{\"small\": true}", ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("{\"small\": true}"));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1237", "http-gateway.timeout=5000",
+            "http-gateway.non-blocking-io=true", "http-gateway.max-body-size=128KB"})
+    public static class NonBlockingIoHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testBodyOverMaximumRejected() throws Exception {
+            HttpPost httpPost = new HttpPost("http://localhost:1237/echo");
+            httpPost.setEntity(new ByteArrayEntity(new byte[256 * 1024], ContentType.APPLICATION_OCTET_STREAM));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(413));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+        }
+
+        @Test
+        public void testBodyReadAndReplyWrittenNonBlocking() throws Exception {
+            char[] chars = new char[100000];
+            Arrays.fill(chars, 'x');
+            String body = "{\"value\": \"" + new String(chars) + "\"}";
+            echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1237/echo");
+            httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(response.getEntity().getContentLength(), equalTo((long) body.length()));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo(body));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1238", "http-gateway.timeout=5000",
+            "http-gateway.direct-reply.enabled=true", "http-gateway.direct-reply.writer-threads=2"})
+    public static class DirectReplyHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testReplyWrittenWithoutDispatch() throws Exception {
+            echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1238/echo");
+            httpPost.setEntity(new StringEntity("{\"direct\": true}", ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("{\"direct\": true}"));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1239", "http-gateway.timeout=2000",
+            "http-gateway.engine=reactive", "http-gateway.claim-check-threshold=1KB", "http-gateway.max-body-size=64KB",
+            "http-gateway.resourceLocationUri=file:///tmp/http-gateway-tests/reactive/"})
+    public static class ReactiveHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Autowired
+        private ResourceLoaderSupport resourceLoaderSupport;
+
+        @Test
+        public void testMultipartExternalizedOnReactiveEngine() throws Exception {
+            AtomicReference<Message<?>> request = echoNextRequest();
+            String body = "--boundary\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"data.txt\"\r\n"
+                    + "Content-Type: text/plain\r\n\r\n"
+                    + "some text\r\n"
+                    + "--boundary\r\n"
+                    + "Content-Disposition: form-data; name=\"field\"\r\n\r\n"
+                    + "value\r\n"
+                    + "--boundary--\r\n";
+            HttpPost httpPost = new HttpPost("http://localhost:1239/upload");
+            httpPost.setEntity(new StringEntity(body, ContentType.create("multipart/form-data")
+                    .withParameters(new BasicNameValuePair("boundary", "boundary"))));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+
+            JsonNode parts = objectMapper.readTree((String) request.get().getPayload());
+            assertThat(parts.size(), is(2));
+            assertThat(parts.get(0).path("originalFileName").asText(), equalTo("data.txt"));
+            assertThat(StreamUtils.copyToString(resourceLoaderSupport.getResource(parts.get(0).path("uri").asText())
+                    .getInputStream(), StandardCharsets.UTF_8), equalTo("some text"));
+            assertThat(parts.get(1).path("field").asText(), equalTo("value"));
+        }
+
+        @Test
+        public void testLargeBodyIsPublishedAsReferenceOnReactiveEngine() throws Exception {
+            byte[] body = new byte[4096];
+            Arrays.fill(body, (byte) 'x');
+            AtomicReference<Message<?>> request = echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1239/upload");
+            httpPost.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_OCTET_STREAM));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toByteArray(response.getEntity()), equalTo(body));
+            assertThat(request.get().getHeaders().get("is_reference"), equalTo(Boolean.TRUE));
+        }
+
+        @Test
+        public void testForgedReferenceIsNotResolvedOnReactiveEngine() throws Exception {
+            String body = "{\"uri\":\"file:///etc/hosts\",\"original_content_type\":\"text/plain\"}";
+            AtomicReference<Message<?>> request = echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1239/upload");
+            httpPost.setHeader("is_reference", "true");
+            httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo(body));
+            assertThat(request.get().getHeaders().containsKey("is_reference"), is(false));
+        }
+
+        @Test
+        public void testBodyOfUnknownLengthOverMaximumRejected() throws Exception {
+            HttpPost httpPost = new HttpPost("http://localhost:1239/upload");
+            httpPost.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[128 * 1024]), -1,
+                    ContentType.APPLICATION_OCTET_STREAM));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(413));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+        }
+
+        @Test
+        public void testRequestCorrelatedOnReactiveEngine() throws Exception {
+            echoNextRequest();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1239/echo");
+            httpPost.setEntity(new StringEntity("{\"reactive\": true}", ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("{\"reactive\": true}"));
+        }
+
+        @Test
+        public void testTimeoutOnReactiveEngine() throws Exception {
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1239/unanswered"));
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(504));
+            messageCollector.forChannel(channels.output()).clear();
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1240", "http-gateway.timeout=10000"})
+    public static class StreamedReplyHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testChunksStreamedInSequence() throws Exception {
+            replyInChunks();
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1240/stream"));
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(response.getFirstHeader(HttpHeaders.TRANSFER_ENCODING).getValue(), equalTo("chunked"));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("abc"));
+        }
+
+        @Test
+        public void testChunksStreamedAsServerSentEvents() throws Exception {
+            replyInChunks();
+            HttpGet httpGet = new HttpGet("http://localhost:1240/events");
+            httpGet.setHeader(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpGet);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(response.getFirstHeader(HttpHeaders.CONTENT_TYPE).getValue(),
+                    startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+            assertThat(EntityUtils.toString(response.getEntity()),
+                    equalTo("id:1\ndata:a\n\nid:2\ndata:b\n\nid:3\ndata:c\n\n"));
+        }
+
+        private void replyInChunks() {
+            Thread thread = new Thread(() -> {
+                Message<?> message = null;
+                try {
+                    message = messageCollector.forChannel(channels.output()).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Object continuationId = message.getHeaders().get("continuation_id");
+                channels.input().send(chunk(continuationId, 2, "b"));
+                channels.input().send(chunk(continuationId, 1, "a"));
+                channels.input().send(MessageBuilder.fromMessage(chunk(continuationId, 3, "c"))
+                        .setHeader("is_last_chunk", true)
+                        .build());
+            });
+            thread.start();
+        }
+
+        private static Message<String> chunk(Object continuationId, int sequence, String payload) {
+            return MessageBuilder.withPayload(payload)
+                    .setHeader("continuation_id", continuationId)
+                    .setHeader("chunk_sequence", sequence)
+                    .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                    .build();
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1241", "http-gateway.timeout=10000",
+            "http-gateway.async-reply.enabled=true", "http-gateway.admission.max-in-flight=1"})
+    public static class AsyncReplyHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testAcceptedAndReplyPolled() throws Exception {
+            HttpPost httpPost = new HttpPost("http://localhost:1241/reports");
+            httpPost.setHeader("Prefer", "respond-async");
+            httpPost.setEntity(new StringEntity("{\"report\": 1}", ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(202));
+            String location = response.getFirstHeader(HttpHeaders.LOCATION).getValue();
+            assertThat(location, startsWith("/replies/"));
+
+            HttpResponse pending = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1241" + location));
+            assertThat(pending.getStatusLine().getStatusCode(), equalTo(202));
+
+            Message<?> message = messageCollector.forChannel(channels.output()).take();
+            long deadline = Long.parseLong(message.getHeaders().get("deadline", String.class));
+            assertThat(deadline > System.currentTimeMillis(), is(true));
+            channels.input().send(message);
+            HttpResponse done = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1241" + location));
+            assertThat(done.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(done.getEntity()), equalTo("{\"report\": 1}"));
+
+            HttpResponse unknown = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1241/replies/0-0.unknown"));
+            assertThat(unknown.getStatusLine().getStatusCode(), equalTo(404));
+        }
+
+        @Test
+        public void testAcceptedRequestHoldsAdmissionUntilReplied() throws Exception {
+            HttpPost httpPost = new HttpPost("http://localhost:1241/reports");
+            httpPost.setHeader("Prefer", "respond-async");
+            httpPost.setEntity(new StringEntity("{\"report\": 2}", ContentType.APPLICATION_JSON));
+            HttpResponse accepted = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(accepted.getStatusLine().getStatusCode(), equalTo(202));
+            Message<?> message = messageCollector.forChannel(channels.output()).take();
+
+            HttpResponse rejected = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(rejected.getStatusLine().getStatusCode(), equalTo(503));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+
+            channels.input().send(message);
+            HttpResponse admitted = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(admitted.getStatusLine().getStatusCode(), equalTo(202));
+            channels.input().send(messageCollector.forChannel(channels.output()).take());
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1242", "http-gateway.timeout=10000",
+            "http-gateway.admission.max-in-flight=1", "http-gateway.admission.retry-after=7"})
+    public static class AdmissionHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testRejectedWhileInFlightLimitReached() throws Exception {
+            AtomicReference<HttpResponse> first = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    first.set(HttpClientBuilder.create().build().execute(new HttpGet("http://localhost:1242/test")));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            Message<?> message = messageCollector.forChannel(channels.output()).take();
+
+            HttpResponse rejected = HttpClientBuilder.create().build().execute(new HttpGet("http://localhost:1242/test"));
+            assertThat(rejected.getStatusLine().getStatusCode(), equalTo(503));
+            assertThat(rejected.getFirstHeader(HttpHeaders.RETRY_AFTER).getValue(), equalTo("7"));
+
+            channels.input().send(message);
+            thread.join(10000);
+            assertThat(first.get().getStatusLine().getStatusCode(), equalTo(200));
+            echoNextRequest();
+            HttpResponse admitted = HttpClientBuilder.create().build().execute(new HttpGet("http://localhost:1242/test"));
+            assertThat(admitted.getStatusLine().getStatusCode(), equalTo(200));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1243", "http-gateway.timeout=10000",
+            "http-gateway.reply-cache.enabled=true"})
+    public static class ReplyCacheHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testRepeatedRequestAnsweredFromCache() throws Exception {
+            replyOnce("max-age=30", null);
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1243/items/1"));
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(response.getEntity()), equalTo("item"));
+
+            HttpResponse cached = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1243/items/1"));
+            assertThat(cached.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(EntityUtils.toString(cached.getEntity()), equalTo("item"));
+            assertThat(cached.getFirstHeader(HttpHeaders.AGE).getValue(), equalTo("0"));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+        }
+
+        @Test
+        public void testReplySettingCookieNotCached() throws Exception {
+            replyOnce("max-age=30", "session=a");
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1243/items/2"));
+            assertThat(response.getFirstHeader(HttpHeaders.SET_COOKIE).getValue(), equalTo("session=a"));
+
+            replyOnce("max-age=30", null);
+            HttpResponse again = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1243/items/2"));
+            assertThat(again.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(again.getFirstHeader(HttpHeaders.SET_COOKIE), nullValue());
+            assertThat(again.getFirstHeader(HttpHeaders.AGE), nullValue());
+        }
+
+        private void replyOnce(String cacheControl, String cookie) {
+            Thread thread = new Thread(() -> {
+                Message<?> message = null;
+                try {
+                    message = messageCollector.forChannel(channels.output()).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                MessageBuilder<String> reply = MessageBuilder.withPayload("item")
+                        .setHeader("continuation_id", message.getHeaders().get("continuation_id"))
+                        .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN)
+                        .setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+                if (cookie != null) {
+                    reply.setHeader(HttpHeaders.SET_COOKIE, cookie);
+                }
+                channels.input().send(reply.build());
+            });
+            thread.start();
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1244", "http-gateway.timeout=10000",
+            "http-gateway.hedging.enabled=true", "http-gateway.hedging.min-samples=1",
+            "http-gateway.routes[0].path-pattern=/quotes/**", "http-gateway.routes[0].hedge=true"})
+    public static class HedgingHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testSlowRequestHedged() throws Exception {
+            prime();
+            AtomicReference<Message<?>> hedge = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    Message<?> message = messageCollector.forChannel(channels.output()).take();
+                    hedge.set(messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS));
+                    channels.input().send(hedge.get() != null ? hedge.get() : message);
+                    // the second reply is dropped quietly
+                    channels.input().send(message);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1244/quotes/2"));
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            thread.join(10000);
+            assertThat(hedge.get(), notNullValue());
+            assertThat(String.valueOf(hedge.get().getHeaders().get("hedge")), equalTo("1"));
+        }
+
+        @Test
+        public void testPostNotHedged() throws Exception {
+            prime();
+            AtomicReference<Message<?>> hedge = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    Message<?> message = messageCollector.forChannel(channels.output()).take();
+                    hedge.set(messageCollector.forChannel(channels.output()).poll(500, TimeUnit.MILLISECONDS));
+                    channels.input().send(message);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+
+            HttpPost httpPost = new HttpPost("http://localhost:1244/quotes/3");
+            httpPost.setEntity(new StringEntity("{\"quote\": 3}", ContentType.APPLICATION_JSON));
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpPost);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            thread.join(10000);
+            assertThat(hedge.get(), nullValue());
+        }
+
+        /**
+         * Have a reply latency observed on the route, after which its requests are hedged.
+         */
+        private void prime() throws Exception {
+            echoNextRequest();
+            HttpResponse response = HttpClientBuilder.create().build()
+                    .execute(new HttpGet("http://localhost:1244/quotes/1"));
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1245", "http-gateway.timeout=10000",
+            "http-gateway.admission.retry-after=7", "http-gateway.lanes[0].name=bulk",
+            "http-gateway.lanes[0].path-pattern=/bulk/**", "http-gateway.lanes[0].destination=bulk-requests",
+            "http-gateway.lanes[0].max-in-flight=1"})
+    public static class LanesHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Autowired
+        private BinderAwareChannelResolver channelResolver;
+
+        @Value("${server.port}")
+        private int port;
+
+        @Test
+        public void testPublishedToLaneDestination() throws Exception {
+            BlockingQueue<Message<?>> bulk = messageCollector.forChannel(channelResolver.resolveDestination("bulk-requests"));
+            AtomicReference<HttpResponse> first = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    first.set(HttpClientBuilder.create().build().execute(new HttpGet(url("/bulk/1"))));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            Message<?> message = bulk.take();
+            assertThat(message.getHeaders().get("lane"), equalTo("bulk"));
+
+            HttpResponse rejected = HttpClientBuilder.create().build().execute(new HttpGet(url("/bulk/2")));
+            assertThat(rejected.getStatusLine().getStatusCode(), equalTo(503));
+            assertThat(rejected.getFirstHeader(HttpHeaders.RETRY_AFTER).getValue(), equalTo("7"));
+
+            channels.input().send(message);
+            thread.join(10000);
+            assertThat(first.get().getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+        }
+
+        @Test
+        public void testForgedLaneHeaderRemoved() throws Exception {
+            AtomicReference<Message<?>> request = echoNextRequest();
+            HttpGet httpGet = new HttpGet(url("/other"));
+            httpGet.setHeader("lane", "bulk");
+            HttpResponse response = HttpClientBuilder.create().build().execute(httpGet);
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+            assertThat(request.get().getHeaders().containsKey("lane"), is(false));
+        }
+
+        private String url(String path) {
+            return "http://localhost:" + port + path;
+        }
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1246", "http-gateway.engine=reactive"})
+    public static class ReactiveLanesHttpGatewayProcessorTests extends LanesHttpGatewayProcessorTests {
+
+    }
+
+    @TestPropertySource(properties = {"server.port=1247", "http-gateway.timeout=10000",
+            "http-gateway.rate-limit.enabled=true", "http-gateway.rate-limit.permits-per-second=0.01",
+            "http-gateway.rate-limit.burst=1"})
+    public static class RateLimitHttpGatewayProcessorTests extends HttpGatewayProcessorTests {
+
+        @Test
+        public void testRequestOverRateAnsweredWith429() throws Exception {
+            long start = System.nanoTime();
+            echoNextRequest();
+            HttpResponse admitted = HttpClientBuilder.create().build().execute(new HttpGet("http://localhost:1247/test"));
+            assertThat(admitted.getStatusLine().getStatusCode(), equalTo(200));
+
+            HttpPost httpPost = new HttpPost("http://localhost:1247/test");
+            httpPost.setEntity(new StringEntity("{\"over\": true}", ContentType.APPLICATION_JSON));
+            HttpResponse limited = HttpClientBuilder.create().build().execute(httpPost);
+            long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+            assertThat(limited.getStatusLine().getStatusCode(), equalTo(429));
+            // 100 seconds between two permits, less the time since the first one, rounded up
+            long retryAfter = Long.parseLong(limited.getFirstHeader(HttpHeaders.RETRY_AFTER).getValue());
+            assertThat(retryAfter <= 100 && retryAfter >= 100 - elapsed, is(true));
+            assertThat(messageCollector.forChannel(channels.output()).poll(), nullValue());
+        }
+
+    }
+
     @SpringBootApplication
     public static class DefaultHttpGatewayProcessorApplication {
 
@@ -0,0 +1,209 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceLoaderSupportTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ResourceLoaderSupport resourceLoaderSupport;
+
+    @Before
+    public void setUp() {
+        resourceLoaderSupport = new ResourceLoaderSupport(new DefaultResourceLoader(),
+                temporaryFolder.getRoot().toURI().toString());
+    }
+
+    @Test
+    public void testKeyedByName() throws IOException {
+        ExternalizedContent first = resourceLoaderSupport.externalize("localhost/upload", resource("report.pdf", "first"));
+        ExternalizedContent second = resourceLoaderSupport.externalize("localhost/upload", resource("report.pdf", "second"));
+        assertThat(first.getUri(), is(second.getUri()));
+        assertThat(first.getDigest(), nullValue());
+        assertThat(second.getSize(), is(6L));
+    }
+
+    @Test
+    public void testContentAddressed() throws IOException {
+        resourceLoaderSupport.setContentAddressed(true);
+        ExternalizedContent first = resourceLoaderSupport.externalize("localhost/upload", resource("report.pdf", "first"));
+        ExternalizedContent second = resourceLoaderSupport.externalize("localhost/upload", resource("report.pdf", "second"));
+        ExternalizedContent copy = resourceLoaderSupport.externalize("localhost/other", resource("copy.pdf", "first"));
+        assertThat(first.getUri(), not(second.getUri()));
+        assertThat(copy.getUri(), is(first.getUri()));
+        assertThat(first.getDigest(), is("a7937b64b8caa58f03721bb6bacf5c78cb235febe0e70b1b84cd99541461a08e"));
+        assertThat(first.getUri().endsWith(first.getDigest() + ".pdf"), is(true));
+
+        Path stored = resourceLoaderSupport.getResource(first.getUri()).getFile().toPath();
+        Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        FileTime modified = Files.getLastModifiedTime(stored);
+        resourceLoaderSupport.externalize("localhost/upload", resource("again.pdf", "first"));
+        assertThat("existing content is not written again", Files.getLastModifiedTime(stored), is(modified));
+    }
+
+    @Test
+    public void testContentAddressedLocationIgnoresDateVariables() throws IOException {
+        ResourceLoaderSupport dated = new ResourceLoaderSupport(new DefaultResourceLoader(),
+                temporaryFolder.getRoot().toURI() + "{yyyy}/{MM}/{dd}/{HH}-{mm}-{ss}/{key}{extension}");
+        dated.setClock(Clock.fixed(Instant.parse("2019-03-01T10:15:30Z"), ZoneOffset.UTC));
+        String named = dated.createLocation("localhost/upload", "report.pdf");
+        dated.setContentAddressed(true);
+        ExternalizedContent first = dated.externalize("localhost/upload", resource("report.pdf", "first"));
+
+        dated.setClock(Clock.fixed(Instant.parse("2019-03-02T11:16:31Z"), ZoneOffset.UTC));
+        assertThat(dated.createLocation("localhost/upload", "report.pdf"), not(named));
+        ExternalizedContent second = dated.externalize("localhost/upload", resource("copy.pdf", "first"));
+        assertThat(second.getUri(), is(first.getUri()));
+        assertThat(first.getUri(), is(temporaryFolder.getRoot().toURI() + first.getDigest() + ".pdf"));
+        assertThat(dated.getResource(first.getUri()).exists(), is(true));
+    }
+
+    @Test
+    public void testContentAddressedWriteIsStagedAndPromoted() throws IOException {
+        resourceLoaderSupport.setContentAddressed(true);
+        ExternalizedContent content = resourceLoaderSupport.externalize("localhost/upload", resource("report.pdf", "first"));
+        assertThat(resourceLoaderSupport.getResource(content.getUri()).exists(), is(true));
+        try (Stream<Path> staged = Files.list(temporaryFolder.getRoot().toPath().resolve("staging"))) {
+            assertThat(staged.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void testStagedContentLeftBehindIsPurged() throws IOException {
+        Path staging = temporaryFolder.newFolder("staging").toPath();
+        Path orphan = Files.write(staging.resolve("orphan.bin"), new byte[16]);
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 120000));
+        Path inProgress = Files.write(staging.resolve("in-progress.bin"), new byte[16]);
+        assertThat(resourceLoaderSupport.purgeStaging(60000), is(1));
+        assertThat(Files.exists(orphan), is(false));
+        assertThat(Files.exists(inProgress), is(true));
+    }
+
+    @Test
+    public void testFailedReadLeavesNothingBehind() throws IOException {
+        try {
+            resourceLoaderSupport.externalize("localhost/upload", failingResource(1024));
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        try (Stream<Path> files = Files.walk(temporaryFolder.getRoot().toPath())) {
+            assertThat(files.anyMatch(Files::isRegularFile), is(false));
+        }
+    }
+
+    @Test
+    public void testFailedReadAbortsS3Upload() throws IOException {
+        AmazonS3 amazonS3 = mock(AmazonS3.class);
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload");
+        when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenReturn(new UploadPartResult());
+        S3MultipartUploader uploader = new S3MultipartUploader(amazonS3, S3MultipartUploader.MIN_PART_SIZE, 1, 2);
+        ResourceLoaderSupport s3 = new ResourceLoaderSupport(new DefaultResourceLoader(), "s3://bucket/");
+        s3.setS3MultipartUploader(uploader);
+        try {
+            s3.externalize("localhost/upload", failingResource(S3MultipartUploader.MIN_PART_SIZE + 1));
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            uploader.shutdown();
+        }
+        verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(amazonS3, never()).putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
+    /**
+     * A file upload whose connection is lost after {@code length} bytes.
+     */
+    private static Resource failingResource(int length) {
+        return new AbstractResource() {
+
+            @Override
+            public String getFilename() {
+                return "upload.bin";
+            }
+
+            @Override
+            public String getDescription() {
+                return "failing upload";
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new InputStream() {
+
+                    private int remaining = length;
+
+                    @Override
+                    public int read() throws IOException {
+                        byte[] b = new byte[1];
+                        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        if (this.remaining == 0) {
+                            throw new IOException("connection reset");
+                        }
+                        int n = Math.min(len, this.remaining);
+                        this.remaining -= n;
+                        return n;
+                    }
+                };
+            }
+        };
+    }
+
+    private static Resource resource(String filename, String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)) {
+
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class S3MultipartUploaderTests {
+
+    private static final int PART_SIZE = S3MultipartUploader.MIN_PART_SIZE;
+
+    private AmazonS3 amazonS3;
+
+    private S3MultipartUploader uploader;
+
+    @Before
+    public void setUp() {
+        amazonS3 = mock(AmazonS3.class);
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload");
+        when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+        uploader = new S3MultipartUploader(amazonS3, PART_SIZE, 2, 2);
+    }
+
+    @After
+    public void tearDown() {
+        uploader.shutdown();
+    }
+
+    @Test
+    public void testSmallContentIsPutAtOnce() throws IOException {
+        try (OutputStream outputStream = uploader.openStream("s3://bucket/some/key.txt")) {
+            outputStream.write("small".getBytes());
+        }
+        ArgumentCaptor<ObjectMetadata> metadata = ArgumentCaptor.forClass(ObjectMetadata.class);
+        verify(amazonS3).putObject(eq("bucket"), eq("some/key.txt"), any(InputStream.class), metadata.capture());
+        assertThat(metadata.getValue().getContentLength(), is(5L));
+        verify(amazonS3, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testLargeContentIsUploadedInParts() throws IOException {
+        try (OutputStream outputStream = uploader.openStream("s3://bucket/key.bin")) {
+            write(outputStream, 2 * PART_SIZE + 1);
+        }
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(amazonS3, times(3)).uploadPart(parts.capture());
+        long size = parts.getAllValues().stream().mapToLong(UploadPartRequest::getPartSize).sum();
+        assertThat(size, is(2L * PART_SIZE + 1));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(
+                CompleteMultipartUploadRequest.class);
+        verify(amazonS3).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getPartETags().size(), is(3));
+        assertThat(complete.getValue().getPartETags().get(2).getETag(), is("etag-3"));
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() {
+        when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenThrow(new AmazonServiceException("failed"));
+        S3MultipartOutputStream outputStream = uploader.openStream("s3://bucket/key.bin");
+        try {
+            write(outputStream, 3 * PART_SIZE);
+            outputStream.close();
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testFailedPartFailsNextWrite() throws IOException {
+        when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenThrow(new AmazonServiceException("failed"));
+        S3MultipartOutputStream outputStream = uploader.openStream("s3://bucket/key.bin");
+        try {
+            write(outputStream, 3 * PART_SIZE);
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        outputStream.close();
+        verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testObjectTooLargeForSingleCopyMovedInParts() {
+        long size = S3MultipartUploader.MAX_COPY_SIZE + 1;
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        when(amazonS3.getObjectMetadata("bucket", "staging/key.bin")).thenReturn(metadata);
+        when(amazonS3.copyPart(any(CopyPartRequest.class))).thenAnswer(invocation -> {
+            CopyPartRequest request = invocation.getArgument(0);
+            CopyPartResult result = new CopyPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+        uploader.move("s3://bucket/staging/key.bin", "s3://bucket/digest.bin");
+        ArgumentCaptor<CopyPartRequest> parts = ArgumentCaptor.forClass(CopyPartRequest.class);
+        long partCount = (size + PART_SIZE - 1) / PART_SIZE;
+        verify(amazonS3, times((int) partCount)).copyPart(parts.capture());
+        CopyPartRequest last = parts.getAllValues().get((int) partCount - 1);
+        assertThat(last.getLastByte(), is(size - 1));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(
+                CompleteMultipartUploadRequest.class);
+        verify(amazonS3).completeMultipartUpload(complete.capture());
+        assertThat((long) complete.getValue().getPartETags().size(), is(partCount));
+        verify(amazonS3, never()).copyObject(any(String.class), any(String.class), any(String.class), any(String.class));
+        verify(amazonS3).deleteObject("bucket", "staging/key.bin");
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        S3MultipartOutputStream outputStream = uploader.openStream("s3://bucket/key.bin");
+        write(outputStream, PART_SIZE + 1);
+        outputStream.abort();
+        outputStream.close();
+        verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private static void write(OutputStream outputStream, int length) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        for (int written = 0; written < length; written += chunk.length) {
+            outputStream.write(chunk, 0, Math.min(chunk.length, length - written));
+        }
+    }
+
+}
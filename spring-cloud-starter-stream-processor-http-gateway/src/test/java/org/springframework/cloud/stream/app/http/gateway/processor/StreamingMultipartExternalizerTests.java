@@ -0,0 +1,143 @@
+package org.springframework.cloud.stream.app.http.gateway.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.integration.http.inbound.GatewayMetrics;
+import org.springframework.integration.http.inbound.StreamingMultipartExternalizer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StreamingMultipartExternalizerTests {
+
+    private static final String BOUNDARY = "gc0p4Jq0M2Yt08jU534c0p";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ResourceLoaderSupport resourceLoaderSupport;
+
+    private StreamingMultipartExternalizer externalizer;
+
+    @Before
+    public void setUp() {
+        resourceLoaderSupport = new ResourceLoaderSupport(new DefaultResourceLoader(),
+                temporaryFolder.getRoot().toURI().toString());
+        externalizer = new StreamingMultipartExternalizer(resourceLoaderSupport, 2);
+    }
+
+    @After
+    public void tearDown() {
+        externalizer.shutdown();
+    }
+
+    @Test
+    public void testPartsAreExternalizedInOnePass() throws IOException {
+        char[] large = new char[1024 * 1024];
+        Arrays.fill(large, 'x');
+        MockHttpServletRequest request = multipartRequest(
+                filePart("data1", "first.txt", "some text"),
+                filePart("data2", "second.bin", new String(large)),
+                fieldPart("some-random", "4"));
+
+        ArrayNode parts = externalizer.externalize(request, "localhost/upload", GatewayMetrics.NOOP);
+
+        assertThat(parts.size(), is(3));
+        assertThat(parts.get(0).path("formParameterName").asText(), is("data1"));
+        assertThat(parts.get(0).path("originalFileName").asText(), is("first.txt"));
+        assertThat(parts.get(0).path("contentType").asText(), is("text/plain"));
+        assertThat(read(parts.get(0)), is("some text"));
+        assertThat(read(parts.get(1)).length(), is(large.length));
+        assertThat(parts.get(2).path("some-random").asText(), is("4"));
+    }
+
+    @Test
+    public void testContentAddressedPartsAreStoredOnce() throws IOException {
+        resourceLoaderSupport.setContentAddressed(true);
+        MockHttpServletRequest request = multipartRequest(
+                filePart("data1", "first.txt", "same content"),
+                filePart("data2", "second.txt", "same content"),
+                filePart("data3", "first.txt", "other content"));
+
+        ArrayNode parts = externalizer.externalize(request, "localhost/upload", GatewayMetrics.NOOP);
+
+        assertThat(parts.get(0).path("uri").asText(), is(parts.get(1).path("uri").asText()));
+        assertThat(parts.get(0).path("digest").asText(), is(parts.get(1).path("digest").asText()));
+        assertThat(parts.get(0).path("size").asLong(), is(12L));
+        assertThat(parts.get(0).path("uri").asText().equals(parts.get(2).path("uri").asText()), is(false));
+        assertThat(read(parts.get(0)), is("same content"));
+        assertThat(read(parts.get(2)), is("other content"));
+        assertThat(Files.walk(temporaryFolder.getRoot().toPath()).filter(Files::isRegularFile).count(), is(2L));
+    }
+
+    @Test
+    public void testPartSizeLimit() throws IOException {
+        externalizer.setMaxPartSize(16);
+        MockHttpServletRequest request = multipartRequest(
+                filePart("data1", "small.txt", "fits"),
+                filePart("data2", "large.txt", "does not fit into sixteen bytes"));
+        try {
+            externalizer.externalize(request, "localhost/upload", GatewayMetrics.NOOP);
+            fail("expected MaxUploadSizeExceededException");
+        } catch (MaxUploadSizeExceededException e) {
+            assertThat(e.getMaxUploadSize(), is(16L));
+        }
+        assertThat(Files.walk(temporaryFolder.getRoot().toPath()).anyMatch(Files::isRegularFile), is(false));
+    }
+
+    @Test
+    public void testRequestSizeLimit() throws IOException {
+        externalizer.setMaxRequestSize(64);
+        MockHttpServletRequest request = multipartRequest(filePart("data1", "first.txt", "some text"));
+        try {
+            externalizer.externalize(request, "localhost/upload", GatewayMetrics.NOOP);
+            fail("expected MaxUploadSizeExceededException");
+        } catch (MaxUploadSizeExceededException e) {
+            assertThat(e.getMaxUploadSize(), is(64L));
+        }
+    }
+
+    private String read(JsonNode part) throws IOException {
+        try (InputStream inputStream = resourceLoaderSupport.getResource(part.path("uri").asText()).getInputStream()) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String filePart(String name, String filename, String content) {
+        return "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n" + content;
+    }
+
+    private static String fieldPart(String name, String value) {
+        return "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value;
+    }
+
+    private static MockHttpServletRequest multipartRequest(String... parts) {
+        StringBuilder body = new StringBuilder();
+        for (String part : parts) {
+            body.append("--").append(BOUNDARY).append("\r\n").append(part).append("\r\n");
+        }
+        body.append("--").append(BOUNDARY).append("--\r\n");
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body.toString().getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControllerTests {
+
+    @Test
+    public void testGlobalLimit() {
+        AdmissionController controller = new AdmissionController(2, 0, ClientKeyResolver.remoteAddress());
+        AdmissionController.Permit first = controller.tryAcquire(request("10.0.0.1"));
+        AdmissionController.Permit second = controller.tryAcquire(request("10.0.0.2"));
+        assertThat(first, notNullValue());
+        assertThat(second, notNullValue());
+        assertThat(controller.tryAcquire(request("10.0.0.3")), nullValue());
+        assertThat(controller.getRejectedCount(), is(1L));
+        first.release();
+        first.release();
+        assertThat(controller.getInFlightCount(), is(1));
+        assertThat(controller.tryAcquire(request("10.0.0.3")), notNullValue());
+    }
+
+    @Test
+    public void testRequestWithBudgetOfItsOwnNotCountedGlobally() {
+        AdmissionController controller = new AdmissionController(1, 2, ClientKeyResolver.remoteAddress());
+        AdmissionController.Permit laned = controller.tryAcquire(request("10.0.0.1"), false);
+        assertThat(laned, notNullValue());
+        assertThat(controller.getInFlightCount(), is(0));
+        assertThat(controller.tryAcquire(request("10.0.0.1")), notNullValue());
+        assertThat(controller.tryAcquire(request("10.0.0.1"), false), nullValue());
+        laned.release();
+        assertThat(controller.getInFlightCount(), is(1));
+        assertThat(controller.tryAcquire(request("10.0.0.1"), false), notNullValue());
+    }
+
+    @Test
+    public void testPerClientLimit() {
+        AdmissionController controller = new AdmissionController(0, 1, ClientKeyResolver.header("X-Api-Key"));
+        MockHttpServletRequest request = request("10.0.0.1");
+        request.addHeader("X-Api-Key", "tenant-a");
+        AdmissionController.Permit permit = controller.tryAcquire(request);
+        assertThat(permit, notNullValue());
+        assertThat(controller.tryAcquire(request), nullValue());
+        assertThat(controller.tryAcquire(request("10.0.0.1")), notNullValue());
+        permit.release();
+        assertThat(controller.tryAcquire(request), notNullValue());
+    }
+
+    @Test
+    public void testLimitHoldsUnderContention() throws Exception {
+        int threads = 16;
+        AdmissionController controller = new AdmissionController(8, 2, ClientKeyResolver.remoteAddress());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                MockHttpServletRequest request = request("10.0.0." + (t % 4));
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 10000; i++) {
+                        AdmissionController.Permit permit = controller.tryAcquire(request);
+                        if (permit != null) {
+                            maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                            inFlight.decrementAndGet();
+                            permit.release();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(maxObserved.get() <= 8);
+        assertThat(controller.getInFlightCount(), is(0));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class AsyncReplyStoreTests {
+
+    private final AsyncReplyStore store = new AsyncReplyStore("/replies/", 1024 * 1024, 60000);
+
+    @After
+    public void tearDown() {
+        store.stop();
+    }
+
+    @Test
+    public void testReplyStoredForAcceptedRequest() {
+        String location = store.accept("0-1");
+        assertThat(location.startsWith("/replies/0-1."), is(true));
+        AsyncReplyStore.Result pending = store.get(location);
+        assertThat(pending, notNullValue());
+        assertThat(pending.isDone(), is(false));
+
+        Message<String> reply = MessageBuilder.withPayload("done").build();
+        assertThat(store.complete("0-1", reply), is(true));
+        assertThat(store.get(location).getReply(), sameInstance(reply));
+        assertThat(store.complete("0-1", MessageBuilder.withPayload("again").build()), is(true));
+        assertThat(store.get(location).getReply(), sameInstance(reply));
+        assertThat(store.complete("0-2", reply), is(false));
+    }
+
+    @Test
+    public void testStreamedReplyStoredAsBadGateway() {
+        String location = store.accept("0-1");
+        Message<String> firstChunk = MessageBuilder.withPayload("a")
+                .setHeader(ReplyStreams.CHUNK_SEQUENCE, 1)
+                .build();
+        assertThat(store.complete("0-1", firstChunk), is(true));
+        Message<String> lastChunk = MessageBuilder.withPayload("b")
+                .setHeader(ReplyStreams.CHUNK_SEQUENCE, 2)
+                .setHeader(ReplyStreams.IS_LAST_CHUNK, true)
+                .build();
+        assertThat(store.complete("0-1", lastChunk), is(true));
+        Message<?> reply = store.get(location).getReply();
+        assertThat(reply.getHeaders().get(org.springframework.integration.http.HttpHeaders.STATUS_CODE),
+                is(HttpStatus.BAD_GATEWAY));
+        assertThat(reply.getPayload(), is("streamed replies cannot be answered asynchronously"));
+        assertThat(ReplyStreams.isChunk(reply), is(false));
+    }
+
+    @Test
+    public void testReleasedOnceReplyArrives() {
+        AtomicInteger released = new AtomicInteger();
+        store.accept("0-1", released::incrementAndGet);
+        assertThat(released.get(), is(0));
+        store.complete("0-1", MessageBuilder.withPayload("done").build());
+        store.complete("0-1", MessageBuilder.withPayload("again").build());
+        assertThat(released.get(), is(1));
+
+        store.accept("0-2", released::incrementAndGet);
+        store.discard("0-2");
+        assertThat(released.get(), is(2));
+        assertThat(store.complete("0-2", MessageBuilder.withPayload("late").build()), is(false));
+    }
+
+    @Test
+    public void testReleasedOnceExpired() throws Exception {
+        AsyncReplyStore store = new AsyncReplyStore("/replies/", 1024 * 1024, 100);
+        try {
+            CountDownLatch released = new CountDownLatch(1);
+            store.accept("0-1", released::countDown);
+            assertThat(released.await(5, TimeUnit.SECONDS), is(true));
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testUnknownLocations() {
+        String location = store.accept("0-1");
+        assertThat(store.get(location.substring(0, location.lastIndexOf('.') + 1) + "guessed"), nullValue());
+        assertThat(store.get("/replies/0-1"), nullValue());
+        assertThat(store.get("/replies/0-2.token"), nullValue());
+        assertThat(store.get("/other/0-1"), nullValue());
+    }
+
+    @Test
+    public void testRespondsAsync() {
+        store.addRoute("/reports/**");
+        assertThat(store.respondsAsync("/reports/monthly", Collections.emptyList()), is(true));
+        assertThat(store.respondsAsync("/items", Collections.emptyList()), is(false));
+        assertThat(store.respondsAsync("/items", Collections.singletonList("wait=10, respond-async")), is(true));
+        assertThat(store.respondsAsync("/items", Collections.singletonList("return=minimal")), is(false));
+        assertThat(store.isStatusRequest("GET", "/replies/0-1.token"), is(true));
+        assertThat(store.isStatusRequest("POST", "/replies/0-1.token"), is(false));
+        assertThat(store.getStatusPathPattern(), is("/replies/**"));
+    }
+
+}
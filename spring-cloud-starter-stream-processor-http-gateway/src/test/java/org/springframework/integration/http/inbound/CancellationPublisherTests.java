@@ -0,0 +1,42 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.messaging.Message;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class CancellationPublisherTests {
+
+    @Test
+    public void testCancellationSentToResolvedChannel() {
+        QueueChannel channel = new QueueChannel();
+        CancellationPublisher publisher = new CancellationPublisher(() -> channel);
+        publisher.cancelled("0-1", ContinuationRegistry.CancelReason.CLIENT_GONE);
+        Message<?> cancellation = channel.receive(5000);
+        assertThat(cancellation, notNullValue());
+        assertThat(cancellation.getPayload(), is("0-1"));
+        assertThat(cancellation.getHeaders().get(CancellationPublisher.CONTINUATION_ID), is("0-1"));
+        assertThat(cancellation.getHeaders().get(CancellationPublisher.CANCEL_REASON), is("client_gone"));
+        publisher.stop();
+    }
+
+    @Test
+    public void testFailedSendCountedAsDropped() throws Exception {
+        CancellationPublisher publisher = new CancellationPublisher(() -> {
+            throw new IllegalStateException("no such destination");
+        });
+        publisher.cancelled("0-1", ContinuationRegistry.CancelReason.TIMEOUT);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publisher.getDroppedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(publisher.getDroppedCount(), is(1L));
+        assertThat(publisher.getSentCount(), is(0L));
+        publisher.stop();
+    }
+
+}
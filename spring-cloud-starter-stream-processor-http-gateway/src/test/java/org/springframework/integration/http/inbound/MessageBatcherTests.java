@@ -0,0 +1,138 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class MessageBatcherTests {
+
+    private final QueueChannel target = new QueueChannel();
+
+    private MessageBatcher batcher;
+
+    @After
+    public void stop() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    public void testBatchSentWhenFull() throws Exception {
+        batcher = new MessageBatcher(target, 3, 1024, 60000);
+        batcher.send(request("0-1", "a"));
+        batcher.send(request("0-2", "b"));
+        assertThat(target.receive(0), nullValue());
+        batcher.send(request("0-3", "c"));
+
+        Message<?> batch = target.receive(0);
+        assertThat(batch, notNullValue());
+        assertTrue(MessageBatcher.isBatch(batch));
+        assertThat(batch.getHeaders().get(MessageBatcher.BATCH_SIZE), equalTo(3));
+        assertThat(batch.getHeaders().get("reply_partition"), equalTo("1"));
+        List<Message<?>> items = MessageBatcher.split(batch);
+        assertThat(items.size(), is(3));
+        assertThat(items.get(1).getPayload(), equalTo("b"));
+        assertThat(items.get(1).getHeaders().get("continuation_id"), equalTo("0-2"));
+    }
+
+    @Test
+    public void testBatchSentWhenBytesExceeded() {
+        // an item is {"headers":{"continuation_id":"0-1","reply_partition":"1"},"payload":"12345678"}, 80 bytes
+        batcher = new MessageBatcher(target, 100, 120, 60000);
+        batcher.send(request("0-1", "12345678"));
+        batcher.send(request("0-2", "12345678"));
+        Message<?> batch = target.receive(0);
+        assertThat(batch, notNullValue());
+        assertThat(batch.getHeaders().get(MessageBatcher.BATCH_SIZE), equalTo(1));
+        assertThat(target.receive(0), nullValue());
+    }
+
+    @Test
+    public void testBatchSizedByEncodedBytes() throws Exception {
+        char[] chars = new char[40];
+        Arrays.fill(chars, '\u00e9');
+        batcher = new MessageBatcher(target, 100, 120, 60000);
+        batcher.send(request("0-1", new String(chars)));
+        Message<?> batch = target.receive(0);
+        assertThat(batch, notNullValue());
+        assertTrue(((byte[]) batch.getPayload()).length > 120);
+        assertThat(MessageBatcher.split(batch).get(0).getPayload(), equalTo(new String(chars)));
+
+        batcher.send(MessageBuilder.withPayload(new byte[60]).setHeader("continuation_id", "0-2").build());
+        batch = target.receive(0);
+        assertThat(batch, notNullValue());
+        assertThat(MessageBatcher.split(batch).get(0).getPayload(), equalTo(new byte[60]));
+    }
+
+    @Test
+    public void testBatchSentAfterLinger() {
+        batcher = new MessageBatcher(target, 100, 1024, 20);
+        batcher.send(request("0-1", "a"));
+        Message<?> batch = target.receive(5000);
+        assertThat(batch, notNullValue());
+        assertThat(batch.getHeaders().get(MessageBatcher.BATCH_SIZE), equalTo(1));
+    }
+
+    @Test
+    public void testSplitRestoresPayloadsAndHeaders() throws Exception {
+        batcher = new MessageBatcher(target, 3, 1024, 60000);
+        batcher.send(MessageBuilder.withPayload(new byte[] {0, 1, 2})
+                .setHeader("continuation_id", "0-1")
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                .build());
+        batcher.send(MessageBuilder.withPayload(Collections.singletonMap("id", 1))
+                .setHeader("continuation_id", "0-2")
+                .setHeader("is_reference", true)
+                .setHeader("Accept", Collections.singletonList("application/json"))
+                .build());
+        batcher.flush();
+
+        List<Message<?>> items = MessageBatcher.split(target.receive(0));
+        assertThat(items.get(0).getPayload(), equalTo(new byte[] {0, 1, 2}));
+        assertThat(items.get(0).getHeaders().get(MessageHeaders.CONTENT_TYPE),
+                equalTo(MimeType.valueOf("application/octet-stream")));
+        assertThat(new String((byte[]) items.get(1).getPayload()), equalTo("{\"id\":1}"));
+        assertThat(items.get(1).getHeaders().get("is_reference", Boolean.class), is(true));
+        assertThat(items.get(1).getHeaders().get("Accept"), instanceOf(List.class));
+    }
+
+    @Test
+    public void testFailedBatchIsHandedToFailureHandler() {
+        batcher = new MessageBatcher((message, timeout) -> {
+            throw new MessageDeliveryException(message, "broker down");
+        }, 2, 1024, 60000);
+        List<Message<?>> failed = new ArrayList<>();
+        batcher.setFailureHandler((message, e) -> failed.add(message));
+        batcher.send(request("0-1", "a"));
+        batcher.send(request("0-2", "b"));
+        assertThat(failed.size(), is(2));
+    }
+
+    private static Message<String> request(String continuationId, String payload) {
+        return MessageBuilder.withPayload(payload)
+                .setHeader("continuation_id", continuationId)
+                .setHeader("reply_partition", "1")
+                .build();
+    }
+
+}
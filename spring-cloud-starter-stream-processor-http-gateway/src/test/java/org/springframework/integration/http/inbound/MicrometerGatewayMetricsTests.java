@@ -0,0 +1,40 @@
+package org.springframework.integration.http.inbound;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MicrometerGatewayMetricsTests {
+
+    @Test
+    public void testMetersAreTaggedByPathPatternAndStatus() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RouteTimeoutPolicy timeoutPolicy = new RouteTimeoutPolicy(1000).addRoute("/api/**", 1000, false);
+        ContinuationRegistry continuationRegistry = new ContinuationRegistry();
+        MicrometerGatewayMetrics metrics = new MicrometerGatewayMetrics(meterRegistry, timeoutPolicy::getPathPattern, "**")
+                .bindContinuationRegistry(continuationRegistry);
+        try {
+            metrics.replied(new MockHttpServletRequest("GET", "/api/users"), 200, TimeUnit.MILLISECONDS.toNanos(5));
+            metrics.replied(new MockHttpServletRequest("GET", "/api/users"), 200, TimeUnit.MILLISECONDS.toNanos(7));
+            metrics.replied(new MockHttpServletRequest("GET", "/other"), 404, TimeUnit.MILLISECONDS.toNanos(1));
+            metrics.timedOut(new MockHttpServletRequest("GET", "/api/users"));
+            metrics.lateReply();
+            continuationRegistry.register(60000);
+
+            assertThat(meterRegistry.get("http.gateway.reply").tags("pathPattern", "/api/**", "status", "200").timer().count(), is(2L));
+            assertThat(meterRegistry.get("http.gateway.reply").tags("pathPattern", "**", "status", "404").timer().count(), is(1L));
+            assertThat(meterRegistry.get("http.gateway.timeouts").tags("pathPattern", "/api/**").counter().count(), is(1.0));
+            assertThat(meterRegistry.get("http.gateway.replies.late").counter().count(), is(1.0));
+            assertThat(meterRegistry.get("http.gateway.continuations.in.flight").gauge().value(), is(1.0));
+        } finally {
+            continuationRegistry.stop();
+        }
+    }
+
+}
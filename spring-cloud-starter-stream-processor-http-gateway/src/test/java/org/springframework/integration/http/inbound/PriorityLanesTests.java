@@ -0,0 +1,67 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PriorityLanesTests {
+
+    private final QueueChannel output = new QueueChannel();
+
+    private final QueueChannel bulk = new QueueChannel();
+
+    private final PriorityLanes lanes = new PriorityLanes(output);
+
+    @Test
+    public void testFirstMatchingLaneTakesRequest() {
+        PriorityLanes.Lane uploads = new PriorityLanes.Lane("bulk", () -> bulk);
+        uploads.setContentType(MediaType.parseMediaType("multipart/*"));
+        PriorityLanes.Lane interactive = new PriorityLanes.Lane("interactive", null);
+        interactive.setPathPattern("/api/**");
+        interactive.setHeader("X-Priority", "high");
+        lanes.addLane(uploads);
+        lanes.addLane(interactive);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        assertThat(lanes.select("/api/files", headers), sameInstance(uploads));
+        headers = new HttpHeaders();
+        headers.set("X-Priority", "high");
+        assertThat(lanes.select("/api/quotes", headers), sameInstance(interactive));
+        assertThat(lanes.select("/other", headers), nullValue());
+        headers.set("X-Priority", "low");
+        assertThat(lanes.select("/api/quotes", headers), nullValue());
+    }
+
+    @Test
+    public void testRequestsPublishedToTheirLane() {
+        lanes.addLane(new PriorityLanes.Lane("bulk", () -> bulk));
+        lanes.addLane(new PriorityLanes.Lane("interactive", null));
+        lanes.send(MessageBuilder.withPayload("a").setHeader(PriorityLanes.LANE, "bulk").build());
+        lanes.send(MessageBuilder.withPayload("b").setHeader(PriorityLanes.LANE, "interactive").build());
+        lanes.send(MessageBuilder.withPayload("c").build());
+        assertThat(bulk.receive(0).getPayload(), is("a"));
+        assertThat(output.receive(0).getPayload(), is("b"));
+        assertThat(output.receive(0).getPayload(), is("c"));
+        assertThat(bulk.receive(0), nullValue());
+    }
+
+    @Test
+    public void testInFlightBudget() {
+        PriorityLanes.Lane lane = new PriorityLanes.Lane("bulk", () -> bulk);
+        lane.setMaxInFlight(1);
+        assertThat(lane.tryAcquire(), is(true));
+        assertThat(lane.tryAcquire(), is(false));
+        assertThat(lane.getRejectedCount(), is(1L));
+        lane.release();
+        assertThat(lane.getInFlightCount(), is(0));
+        assertThat(lane.tryAcquire(), is(true));
+    }
+
+}
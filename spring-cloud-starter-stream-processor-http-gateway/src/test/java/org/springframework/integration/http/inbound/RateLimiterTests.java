@@ -0,0 +1,65 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTests {
+
+    @Test
+    public void testBurstThenRejectedUntilRefilled() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(20, 2, ClientKeyResolver.remoteAddress());
+        assertThat(rateLimiter.tryAcquire(request("10.0.0.1")), is(0L));
+        assertThat(rateLimiter.tryAcquire(request("10.0.0.1")), is(0L));
+        long wait = rateLimiter.tryAcquire(request("10.0.0.1"));
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(rateLimiter.getRejectedCount(), is(1L));
+        assertThat(rateLimiter.tryAcquire(request("10.0.0.2")), is(0L));
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 10);
+        assertThat(rateLimiter.tryAcquire(request("10.0.0.1")), is(0L));
+    }
+
+    @Test
+    public void testIdleClientsForgotten() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(1000, 1, ClientKeyResolver.remoteAddress(), 10);
+        try {
+            for (int i = 0; i < 1024; i++) {
+                rateLimiter.tryAcquire(request("10.0." + (i / 256) + "." + (i % 256)));
+            }
+            assertTrue(rateLimiter.size() > 0);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (rateLimiter.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(rateLimiter.size(), is(0));
+        } finally {
+            rateLimiter.stop();
+        }
+    }
+
+    @Test
+    public void testClientKeyFromExpression() {
+        RateLimiter rateLimiter = new RateLimiter(1, 1, ClientKeyResolver.expression(
+                new SpelExpressionParser().parseExpression("getHeader('X-Tenant')")));
+        MockHttpServletRequest tenant = request("10.0.0.1");
+        tenant.addHeader("X-Tenant", "a");
+        MockHttpServletRequest sameTenant = request("10.0.0.2");
+        sameTenant.addHeader("X-Tenant", "a");
+        assertThat(rateLimiter.tryAcquire(tenant), is(0L));
+        assertTrue(rateLimiter.tryAcquire(sameTenant) > 0);
+        assertThat(rateLimiter.tryAcquire(request("10.0.0.2")), is(0L));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+
+}
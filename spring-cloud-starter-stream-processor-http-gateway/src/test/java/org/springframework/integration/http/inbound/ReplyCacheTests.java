@@ -0,0 +1,160 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ReplyCacheTests {
+
+    private final ReplyCache replyCache = new ReplyCache(1024 * 1024, 60000, Collections.singletonList("Accept"));
+
+    @Test
+    public void testCachedAfterMiss() {
+        MockHttpServletRequest request = request("GET", "/items/1");
+        assertThat(replyCache.get(request), nullValue());
+        Message<byte[]> reply = reply("max-age=30");
+        replyCache.put(request, reply);
+
+        ReplyCache.CachedReply cached = replyCache.get(request("GET", "/items/1"));
+        assertThat(cached, notNullValue());
+        assertThat(cached.getReply(), sameInstance(reply));
+        assertThat(cached.getAge(), is(0L));
+        assertThat(replyCache.get(request("GET", "/items/2")), nullValue());
+        assertThat(replyCache.get(request("GET", "/items/1?page=2")), nullValue());
+    }
+
+    @Test
+    public void testVaryHeaders() {
+        MockHttpServletRequest json = request("GET", "/items/1");
+        json.addHeader(HttpHeaders.ACCEPT, "application/json");
+        replyCache.get(json);
+        replyCache.put(json, reply(null));
+
+        MockHttpServletRequest xml = request("GET", "/items/1");
+        xml.addHeader(HttpHeaders.ACCEPT, "application/xml");
+        assertThat(replyCache.get(xml), nullValue());
+        MockHttpServletRequest again = request("GET", "/items/1");
+        again.addHeader(HttpHeaders.ACCEPT, "application/json");
+        assertThat(replyCache.get(again), notNullValue());
+    }
+
+    @Test
+    public void testNotCachedWhenReplyForbidsIt() {
+        for (String cacheControl : new String[] {"no-store", "no-cache", "private, max-age=30", "max-age=0"}) {
+            MockHttpServletRequest request = request("GET", "/items/1");
+            replyCache.get(request);
+            replyCache.put(request, reply(cacheControl));
+            assertThat(cacheControl, replyCache.get(request("GET", "/items/1")), nullValue());
+        }
+    }
+
+    @Test
+    public void testOnlyGetIsCached() {
+        MockHttpServletRequest request = request("POST", "/items/1");
+        assertThat(replyCache.get(request), nullValue());
+        replyCache.put(request, reply("max-age=30"));
+        assertThat(replyCache.getCache().estimatedSize(), is(0L));
+    }
+
+    @Test
+    public void testDefaultTimeToLive() {
+        ReplyCache explicitOnly = new ReplyCache(1024 * 1024, 0, Collections.emptyList());
+        MockHttpServletRequest request = request("GET", "/items/1");
+        explicitOnly.get(request);
+        explicitOnly.put(request, reply(null));
+        assertThat(explicitOnly.get(request), nullValue());
+        explicitOnly.put(request, reply("s-maxage=30, max-age=0"));
+        assertThat(explicitOnly.get(request("GET", "/items/1")), notNullValue());
+    }
+
+    @Test
+    public void testAuthorizedRequests() {
+        MockHttpServletRequest request = request("GET", "/items/1");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer token");
+        replyCache.get(request);
+        replyCache.put(request, reply("max-age=30"));
+        assertThat(replyCache.get(request), nullValue());
+        replyCache.put(request, reply("public, max-age=30"));
+        assertThat(replyCache.get(request("GET", "/items/1")), notNullValue());
+    }
+
+    @Test
+    public void testRepliesThatMayDifferBetweenUsersNotCached() {
+        MockHttpServletRequest withCookie = request("GET", "/items/1");
+        withCookie.addHeader(HttpHeaders.COOKIE, "session=a");
+        replyCache.get(withCookie);
+        replyCache.put(withCookie, reply("max-age=30"));
+        assertThat(replyCache.get(request("GET", "/items/1")), nullValue());
+
+        Message<byte[]> settingCookie = MessageBuilder.fromMessage(reply("max-age=30"))
+                .setHeader(HttpHeaders.SET_COOKIE, "session=b")
+                .build();
+        MockHttpServletRequest request = request("GET", "/items/1");
+        replyCache.get(request);
+        replyCache.put(request, settingCookie);
+        assertThat(replyCache.get(request("GET", "/items/1")), nullValue());
+
+        for (String vary : new String[] {"*", "Accept, Cookie"}) {
+            request = request("GET", "/items/1");
+            replyCache.get(request);
+            replyCache.put(request, MessageBuilder.fromMessage(reply("max-age=30"))
+                    .setHeader(HttpHeaders.VARY, vary)
+                    .build());
+            assertThat(vary, replyCache.get(request("GET", "/items/1")), nullValue());
+        }
+
+        request = request("GET", "/items/1");
+        replyCache.get(request);
+        replyCache.put(request, MessageBuilder.fromMessage(reply("max-age=30"))
+                .setHeader("vary", "accept")
+                .build());
+        assertThat(replyCache.get(request("GET", "/items/1")), notNullValue());
+    }
+
+    @Test
+    public void testRequestNoCacheBypassesLookup() {
+        MockHttpServletRequest request = request("GET", "/items/1");
+        replyCache.get(request);
+        replyCache.put(request, reply("max-age=30"));
+        MockHttpServletRequest noCache = request("GET", "/items/1");
+        noCache.addHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        assertThat(replyCache.get(noCache), nullValue());
+    }
+
+    @Test
+    public void testMaxEntrySize() {
+        replyCache.setMaxEntrySize(4);
+        MockHttpServletRequest request = request("GET", "/items/1");
+        replyCache.get(request);
+        replyCache.put(request, reply("max-age=30"));
+        assertThat(replyCache.get(request("GET", "/items/1")), nullValue());
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        int query = uri.indexOf('?');
+        MockHttpServletRequest request = new MockHttpServletRequest(method, query < 0 ? uri : uri.substring(0, query));
+        if (query >= 0) {
+            request.setQueryString(uri.substring(query + 1));
+        }
+        return request;
+    }
+
+    private static Message<byte[]> reply(String cacheControl) {
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload("{\"id\":1}".getBytes());
+        if (cacheControl != null) {
+            builder.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,225 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReplyStreamsTests {
+
+    private final ContinuationRegistry registry = new ContinuationRegistry();
+
+    private final ReplyStreams replyStreams = new ReplyStreams(200);
+
+    @After
+    public void tearDown() {
+        replyStreams.stop();
+        registry.stop();
+    }
+
+    @Test
+    public void testChunksWrittenInSequenceOnceAttached() throws Exception {
+        Continuation continuation = registry.registerMono(10000);
+        String id = continuation.getId();
+        assertThat(replyStreams.offer(id, chunk(2, "b", false)), is(false));
+        assertThat(replyStreams.open(continuation, chunk(2, "b", false)), is(true));
+        assertThat(replyStreams.offer(id, chunk(4, "d", true)), is(true));
+
+        RecordingWriter writer = new RecordingWriter();
+        assertThat(replyStreams.attach(id, writer), is(true));
+        assertThat(writer.written, equalTo(""));
+        replyStreams.offer(id, chunk(1, "a", false));
+        awaitWritten(writer, "ab");
+        replyStreams.offer(id, chunk(3, "c", false));
+        assertThat(writer.completed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(writer.written, equalTo("abcd"));
+        assertThat(replyStreams.size(), is(0));
+        assertThat(replyStreams.offer(id, chunk(5, "e", false)), is(false));
+    }
+
+    @Test
+    public void testNotOpenedForExpiredContinuation() {
+        Continuation continuation = registry.registerMono(10000);
+        continuation.expire();
+        assertThat(replyStreams.open(continuation, chunk(1, "a", false)), is(false));
+        assertThat(replyStreams.size(), is(0));
+    }
+
+    @Test
+    public void testAbortedAfterTimeout() throws Exception {
+        Continuation continuation = registry.registerMono(10000);
+        replyStreams.open(continuation, chunk(1, "a", false));
+        RecordingWriter writer = new RecordingWriter();
+        replyStreams.attach(continuation.getId(), writer);
+        assertThat(writer.aborted.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(writer.written, equalTo("a"));
+        assertThat(replyStreams.size(), is(0));
+        assertThat(replyStreams.getAbortedCount(), is(1L));
+    }
+
+    @Test
+    public void testDuplicateChunksDropped() throws Exception {
+        Continuation continuation = registry.registerMono(10000);
+        String id = continuation.getId();
+        replyStreams.open(continuation, chunk(1, "a", false));
+        RecordingWriter writer = new RecordingWriter();
+        replyStreams.attach(id, writer);
+        replyStreams.offer(id, chunk(3, "c", true));
+        replyStreams.offer(id, chunk(1, "a", false));
+        replyStreams.offer(id, chunk(3, "c", true));
+        replyStreams.offer(id, chunk(2, "b", false));
+        assertThat(writer.completed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(writer.written, equalTo("abc"));
+    }
+
+    @Test
+    public void testAbortedBeyondReorderWindow() throws Exception {
+        ReplyStreams replyStreams = new ReplyStreams(10000, 4);
+        try {
+            Continuation continuation = registry.registerMono(10000);
+            String id = continuation.getId();
+            replyStreams.open(continuation, chunk(1, "a", false));
+            RecordingWriter writer = new RecordingWriter();
+            replyStreams.attach(id, writer);
+            awaitWritten(writer, "a");
+            replyStreams.offer(id, chunk(5, "e", false));
+            assertThat(writer.aborted.getCount(), is(1L));
+            replyStreams.offer(id, chunk(6, "f", false));
+            assertThat(writer.aborted.getCount(), is(0L));
+            assertThat(writer.written, equalTo("a"));
+            assertThat(replyStreams.size(), is(0));
+            assertThat(replyStreams.getAbortedCount(), is(1L));
+        } finally {
+            replyStreams.stop();
+        }
+    }
+
+    @Test
+    public void testSlowClientAbortedOnceItsQueueIsFull() throws Exception {
+        ReplyStreams replyStreams = new ReplyStreams(10000, 4);
+        try {
+            Continuation continuation = registry.registerMono(10000);
+            String id = continuation.getId();
+            replyStreams.open(continuation, chunk(1, "a", false));
+            CountDownLatch writable = new CountDownLatch(1);
+            RecordingWriter writer = new RecordingWriter(writable);
+            replyStreams.attach(id, writer);
+            // the chunks are queued without waiting for the blocked write
+            replyStreams.offer(id, chunk(2, "b", false));
+            replyStreams.offer(id, chunk(3, "c", false));
+            replyStreams.offer(id, chunk(4, "d", false));
+            assertThat(replyStreams.getAbortedCount(), is(0L));
+            replyStreams.offer(id, chunk(5, "e", false));
+            assertThat(replyStreams.getAbortedCount(), is(1L));
+            assertThat(replyStreams.size(), is(0));
+            assertThat(writer.aborted.getCount(), is(1L));
+            writable.countDown();
+            assertThat(writer.aborted.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(writer.written, equalTo("a"));
+        } finally {
+            replyStreams.stop();
+        }
+    }
+
+    @Test
+    public void testSlowClientDoesNotHoldUpOtherStreams() throws Exception {
+        Continuation slow = registry.registerMono(10000);
+        replyStreams.open(slow, chunk(1, "a", false));
+        CountDownLatch writable = new CountDownLatch(1);
+        RecordingWriter slowWriter = new RecordingWriter(writable);
+        replyStreams.attach(slow.getId(), slowWriter);
+        try {
+            Continuation fast = registry.registerMono(10000);
+            replyStreams.open(fast, chunk(1, "a", false));
+            RecordingWriter fastWriter = new RecordingWriter();
+            replyStreams.attach(fast.getId(), fastWriter);
+            replyStreams.offer(fast.getId(), chunk(2, "b", true));
+            assertThat(fastWriter.completed.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(fastWriter.written, equalTo("ab"));
+            assertThat(slowWriter.written, equalTo(""));
+        } finally {
+            writable.countDown();
+        }
+    }
+
+    @Test
+    public void testEventFraming() {
+        assertThat(new String(ReplyStreams.eventOf(chunk(7, "a\nb", false)), StandardCharsets.UTF_8),
+                equalTo("id:7\ndata:a\ndata:b\n\n"));
+    }
+
+    private static void awaitWritten(RecordingWriter writer, String written) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!writer.written.equals(written) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(writer.written, equalTo(written));
+    }
+
+    private static Message<String> chunk(long sequence, String payload, boolean last) {
+        MessageBuilder<String> builder = MessageBuilder.withPayload(payload)
+                .setHeader(ReplyStreams.CHUNK_SEQUENCE, sequence);
+        if (last) {
+            builder.setHeader(ReplyStreams.IS_LAST_CHUNK, true);
+        }
+        return builder.build();
+    }
+
+    private static final class RecordingWriter implements ReplyStreams.ChunkWriter {
+
+        private final List<String> chunks = new ArrayList<>();
+
+        private final CountDownLatch aborted = new CountDownLatch(1);
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private final CountDownLatch writable;
+
+        private volatile String written = "";
+
+        private RecordingWriter() {
+            this(new CountDownLatch(0));
+        }
+
+        private RecordingWriter(CountDownLatch writable) {
+            this.writable = writable;
+        }
+
+        @Override
+        public void write(Message<?> chunk) throws IOException {
+            try {
+                writable.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            chunks.add((String) chunk.getPayload());
+            written = String.join("", chunks);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void abort() {
+            aborted.countDown();
+        }
+
+    }
+
+}
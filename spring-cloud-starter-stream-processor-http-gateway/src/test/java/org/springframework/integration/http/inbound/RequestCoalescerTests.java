@@ -0,0 +1,161 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RequestCoalescerTests {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer(
+            RequestKeyResolver.varying(Collections.singletonList("Authorization")));
+
+    @Test
+    public void testFollowersShareTheLeadersReply() {
+        StubContinuation leader = new StubContinuation("0-1");
+        StubContinuation first = new StubContinuation("0-2");
+        StubContinuation second = new StubContinuation("0-3");
+        assertThat(coalescer.join(request("GET", "/items/1"), leader), is(true));
+        assertThat(coalescer.join(request("GET", "/items/1"), first), is(false));
+        assertThat(coalescer.join(request("GET", "/items/1"), second), is(false));
+        assertThat(coalescer.getCoalescedCount(), is(2L));
+
+        Message<String> reply = MessageBuilder.withPayload("item").build();
+        assertThat(coalescer.replied("0-1", reply), is(2));
+        assertThat(first.reply, sameInstance(reply));
+        assertThat(second.reply, sameInstance(reply));
+        assertThat(coalescer.replied("0-1", reply), is(0));
+
+        leader.dispose();
+        first.dispose();
+        second.dispose();
+        assertThat(coalescer.getFlightCount(), is(0));
+        assertThat(coalescer.join(request("GET", "/items/1"), new StubContinuation("0-4")), is(true));
+    }
+
+    @Test
+    public void testFollowersAnsweredWith503WhenLeaderFails() {
+        StubContinuation leader = new StubContinuation("0-1");
+        StubContinuation follower = new StubContinuation("0-2");
+        coalescer.join(request("GET", "/items/1"), leader);
+        coalescer.join(request("GET", "/items/1"), follower);
+        assertThat(coalescer.failed("0-1"), is(1));
+        assertThat(follower.reply.getHeaders().get(org.springframework.integration.http.HttpHeaders.STATUS_CODE),
+                is(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(coalescer.join(request("GET", "/items/1"), new StubContinuation("0-3")), is(true));
+    }
+
+    @Test
+    public void testDifferentRequestsAreNotCoalesced() {
+        assertThat(coalescer.join(request("GET", "/items/1"), new StubContinuation("0-1")), is(true));
+        assertThat(coalescer.join(request("GET", "/items/2"), new StubContinuation("0-2")), is(true));
+        MockHttpServletRequest authorized = request("GET", "/items/1");
+        authorized.addHeader("Authorization", "Bearer token");
+        assertThat(coalescer.join(authorized, new StubContinuation("0-3")), is(true));
+        assertThat(coalescer.join(request("POST", "/items/1"), new StubContinuation("0-4")), is(true));
+        assertThat(coalescer.join(request("POST", "/items/1"), new StubContinuation("0-5")), is(true));
+        assertThat(coalescer.getCoalescedCount(), is(0L));
+    }
+
+    @Test
+    public void testExpiredFollowerIsSkipped() {
+        StubContinuation leader = new StubContinuation("0-1");
+        StubContinuation follower = new StubContinuation("0-2");
+        coalescer.join(request("GET", "/items/1"), leader);
+        coalescer.join(request("GET", "/items/1"), follower);
+        follower.expire();
+        assertThat(coalescer.replied("0-1", MessageBuilder.withPayload("item").build()), is(0));
+        assertThat(follower.reply, nullValue());
+    }
+
+    @Test
+    public void testLeaderGoneStartsNewFlight() {
+        StubContinuation leader = new StubContinuation("0-1");
+        StubContinuation follower = new StubContinuation("0-2");
+        coalescer.join(request("GET", "/items/1"), leader);
+        coalescer.join(request("GET", "/items/1"), follower);
+        leader.expire();
+        leader.dispose();
+        assertThat(coalescer.join(request("GET", "/items/1"), new StubContinuation("0-3")), is(true));
+
+        // a late reply to the expired leader still answers its follower
+        assertThat(coalescer.replied("0-1", MessageBuilder.withPayload("item").build()), is(1));
+    }
+
+    @Test
+    public void testFlightForgottenWhenNoReplyArrives() {
+        StubContinuation leader = new StubContinuation("0-1");
+        StubContinuation follower = new StubContinuation("0-2");
+        coalescer.join(request("GET", "/items/1"), leader);
+        coalescer.join(request("GET", "/items/1"), follower);
+        leader.dispose();
+        assertThat(coalescer.getFlightCount(), is(1));
+        follower.dispose();
+        assertThat(coalescer.getFlightCount(), is(0));
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+    private static final class StubContinuation implements Continuation {
+
+        private final String id;
+
+        private final List<Runnable> disposeCallbacks = new ArrayList<>();
+
+        private boolean expired;
+
+        private Message<?> reply;
+
+        private StubContinuation(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean setReply(Message<?> message) {
+            if (this.expired) {
+                return false;
+            }
+            this.reply = message;
+            return true;
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return this.expired;
+        }
+
+        @Override
+        public void expire() {
+            this.expired = true;
+        }
+
+        @Override
+        public void addDisposeCallback(Runnable callback) {
+            this.disposeCallbacks.add(callback);
+        }
+
+        private void dispose() {
+            this.disposeCallbacks.forEach(Runnable::run);
+            this.disposeCallbacks.clear();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.http.HttpHeaders;
+import org.springframework.integration.http.inbound.continuation.Continuation;
+import org.springframework.integration.http.inbound.continuation.ContinuationRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RequestHedgerTests {
+
+    private final ContinuationRegistry registry = new ContinuationRegistry();
+
+    private final QueueChannel channel = new QueueChannel();
+
+    private final RequestHedger hedger = new RequestHedger(channel, registry);
+
+    @After
+    public void stop() {
+        hedger.stop();
+    }
+
+    @Test
+    public void testSlowRequestHedgedAndSecondReplyIgnored() {
+        hedger.addRoute("/quotes/**");
+        hedger.setMinSamples(1);
+        prime("/quotes/1");
+        Continuation continuation = registry.registerMono(10000);
+        hedger.send(request(continuation, "/quotes/2"));
+        assertThat(channel.receive(0).getHeaders().containsKey(RequestHedger.HEDGE), is(false));
+        Message<?> hedge = channel.receive(5000);
+        assertThat(hedge, notNullValue());
+        assertThat(hedge.getHeaders().get(RequestHedger.HEDGE), is(1));
+        assertThat(hedge.getHeaders().get("continuation_id"), is(continuation.getId()));
+        assertThat(hedger.getHedgedCount(), is(1L));
+        assertThat(hedger.replied(continuation.getId()), is(false));
+        assertThat(hedger.replied(continuation.getId()), is(true));
+        assertThat(hedger.getIgnoredCount(), is(1L));
+    }
+
+    @Test
+    public void testRequestOnOtherRouteNotHedged() {
+        hedger.addRoute("/quotes/**");
+        hedger.setMinSamples(1);
+        prime("/quotes/1");
+        Continuation continuation = registry.registerMono(10000);
+        hedger.send(request(continuation, "/orders/1"));
+        assertThat(channel.receive(0), notNullValue());
+        assertThat(channel.receive(300), nullValue());
+        assertThat(hedger.replied(continuation.getId()), is(false));
+    }
+
+    @Test
+    public void testNonIdempotentRequestNotHedged() {
+        hedger.addRoute("/quotes/**");
+        hedger.setMinSamples(1);
+        prime("/quotes/1");
+        Continuation continuation = registry.registerMono(10000);
+        hedger.send(MessageBuilder.fromMessage(request(continuation, "/quotes/2"))
+                .setHeader(HttpHeaders.REQUEST_METHOD, "POST")
+                .build());
+        assertThat(channel.receive(0), notNullValue());
+        assertThat(channel.receive(300), nullValue());
+        assertThat(hedger.getHedgedCount(), is(0L));
+    }
+
+    @Test
+    public void testNoHedgeWithoutBudget() throws Exception {
+        hedger.addRoute("/quotes/**");
+        hedger.setMinSamples(1);
+        hedger.setBudget(0, 1);
+        prime("/quotes/1");
+        hedger.send(request(registry.registerMono(10000), "/quotes/2"));
+        channel.receive(0);
+        assertThat(channel.receive(5000), notNullValue());
+        hedger.send(request(registry.registerMono(10000), "/quotes/3"));
+        channel.receive(0);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hedger.getDeniedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(hedger.getDeniedCount(), is(1L));
+        assertThat(channel.receive(0), nullValue());
+    }
+
+    private void prime(String path) {
+        Continuation continuation = registry.registerMono(10000);
+        hedger.send(request(continuation, path));
+        channel.receive(0);
+        hedger.replied(continuation.getId());
+    }
+
+    private static Message<String> request(Continuation continuation, String path) {
+        return MessageBuilder.withPayload("quote")
+                .setHeader("continuation_id", continuation.getId())
+                .setHeader(HttpHeaders.REQUEST_URL, "http://localhost:8080" + path)
+                .setHeader(HttpHeaders.REQUEST_METHOD, "GET")
+                .build();
+    }
+
+}
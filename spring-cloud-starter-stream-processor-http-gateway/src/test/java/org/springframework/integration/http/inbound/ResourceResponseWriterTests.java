@@ -0,0 +1,132 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class ResourceResponseWriterTests {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ResourceResponseWriter writer = new ResourceResponseWriter();
+
+    private Resource resource;
+
+    @Before
+    public void setUp() throws IOException {
+        File file = temporaryFolder.newFile("content.txt");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+        resource = new FileSystemResource(file);
+    }
+
+    @Test
+    public void testFullContent() throws IOException {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/content"));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getContentAsString(), is(CONTENT));
+        assertThat(response.getContentLength(), is(CONTENT.length()));
+        assertThat(response.getContentType(), startsWith("text/plain"));
+        assertThat(response.getHeader("ETag"), notNullValue());
+        assertThat(response.getHeader("Accept-Ranges"), is("bytes"));
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=10-14");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(206));
+        assertThat(response.getContentAsString(), is("abcde"));
+        assertThat(response.getContentLength(), is(5));
+        assertThat(response.getHeader("Content-Range"), is("bytes 10-14/20"));
+    }
+
+    @Test
+    public void testSuffixRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=-3");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(206));
+        assertThat(response.getContentAsString(), is("hij"));
+    }
+
+    @Test
+    public void testUnsatisfiableRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=100-200");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(416));
+        assertThat(response.getHeader("Content-Range"), is("bytes */20"));
+    }
+
+    @Test
+    public void testRangeStartingAtLengthUnsatisfiable() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=20-");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(416));
+        assertThat(response.getHeader("Content-Range"), is("bytes */20"));
+    }
+
+    @Test
+    public void testMultipleRangesOneUnsatisfiable() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=0-4,100-200");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(416));
+    }
+
+    @Test
+    public void testIfRangeMismatchServesFullContent() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("Range", "bytes=10-14");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getContentAsString(), is(CONTENT));
+    }
+
+    @Test
+    public void testIfNoneMatch() throws IOException {
+        String etag = write(new MockHttpServletRequest("GET", "/content")).getHeader("ETag");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("If-None-Match", etag);
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.getContentAsByteArray().length, is(0));
+    }
+
+    @Test
+    public void testIfModifiedSince() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        request.addHeader("If-Modified-Since", resource.lastModified() + 1000);
+        MockHttpServletResponse response = write(request);
+        assertThat(response.getStatus(), is(304));
+    }
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(resource, request, new ServletServerHttpResponse(response));
+        return response;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.springframework.integration.http.inbound;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RouteTimeoutPolicyTests {
+
+    @Test
+    public void testFirstMatchingRouteApplies() {
+        RouteTimeoutPolicy policy = new RouteTimeoutPolicy(300000)
+                .addRoute("/api/**", 5000, false)
+                .addRoute("/**/*.json", 1000, false);
+        assertThat(policy.getTimeout(request("/api/users.json")), is(5000L));
+        assertThat(policy.getTimeout(request("/other/users.json")), is(1000L));
+        assertThat(policy.getTimeout(request("/reports/monthly")), is(300000L));
+        assertThat(policy.getPathPattern(request("/api/users")), is("/api/**"));
+        assertThat(policy.getPathPattern(request("/reports/monthly")), nullValue());
+    }
+
+    @Test
+    public void testAdaptiveTimeoutFollowsObservedLatency() {
+        RouteTimeoutPolicy policy = new RouteTimeoutPolicy(300000);
+        policy.setMargin(100);
+        policy.setMinTimeout(10);
+        policy.setMinSamples(100);
+        policy.addRoute("/api/**", 30000, true);
+        assertThat(policy.getTimeout(request("/api/users")), is(30000L));
+        for (int i = 0; i < 1000; i++) {
+            policy.recordLatency(request("/api/users"), 50);
+        }
+        long timeout = policy.getTimeout(request("/api/users"));
+        assertTrue("timeout was " + timeout, timeout >= 150 && timeout <= 160);
+        assertThat(policy.getTimeout(request("/reports/monthly")), is(300000L));
+    }
+
+    @Test
+    public void testAdaptiveTimeoutIsBoundedByRouteTimeout() {
+        RouteTimeoutPolicy policy = new RouteTimeoutPolicy(300000);
+        policy.setMinSamples(1);
+        policy.addRoute("/api/**", 2000, true);
+        for (int i = 0; i < 128; i++) {
+            policy.recordLatency(request("/api/users"), 60000);
+        }
+        assertThat(policy.getTimeout(request("/api/users")), is(2000L));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        return new MockHttpServletRequest("GET", path);
+    }
+
+}
@@ -0,0 +1,269 @@
+package org.springframework.integration.http.inbound.continuation;
+
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ContinuationRegistryTests {
+
+    private static final int THREADS = 32;
+
+    private static final int CONTINUATIONS_PER_THREAD = 4096;
+
+    private static final int TOTAL = THREADS * CONTINUATIONS_PER_THREAD;
+
+    @Test
+    public void testNoMisroutedRepliesUnderContention() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<RecordingContinuation> continuations = Collections.synchronizedList(new ArrayList<>(TOTAL));
+            runConcurrently(executor, () -> {
+                for (int i = 0; i < CONTINUATIONS_PER_THREAD; i++) {
+                    continuations.add(registry.register(RecordingContinuation::new));
+                }
+            });
+            assertThat(registry.size(), is(TOTAL));
+
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            for (RecordingContinuation continuation : continuations) {
+                ids.add(continuation.getId());
+            }
+            assertThat(ids.size(), is(TOTAL));
+
+            List<String> replyOrder = new ArrayList<>(ids);
+            Collections.shuffle(replyOrder);
+            AtomicInteger cursor = new AtomicInteger();
+            runConcurrently(executor, () -> {
+                int index;
+                while ((index = cursor.getAndIncrement()) < TOTAL) {
+                    String id = replyOrder.get(index);
+                    Continuation continuation = registry.get(id);
+                    continuation.setReply(MessageBuilder.withPayload(id).setHeader("continuation_id", id).build());
+                    registry.remove(continuation);
+                }
+            });
+
+            for (RecordingContinuation continuation : continuations) {
+                assertThat(continuation.replies.get(), is(1));
+                assertThat(continuation.reply.getPayload(), is(continuation.getId()));
+                assertThat(registry.get(continuation.getId()), nullValue());
+            }
+            assertThat(registry.size(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentRegisterAndRemove() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry(4);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            runConcurrently(executor, () -> {
+                for (int i = 0; i < CONTINUATIONS_PER_THREAD; i++) {
+                    RecordingContinuation continuation = registry.register(RecordingContinuation::new);
+                    assertThat(registry.get(continuation.getId()), is(continuation));
+                    assertThat(registry.remove(continuation), is(true));
+                    assertThat(registry.remove(continuation), is(false));
+                }
+            });
+            assertThat(registry.size(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdsCarryInstanceIdentity() {
+        ContinuationRegistry first = new ContinuationRegistry("0");
+        ContinuationRegistry second = new ContinuationRegistry("1");
+        try {
+            RecordingContinuation continuation = first.register(RecordingContinuation::new);
+            RecordingContinuation other = second.register(RecordingContinuation::new);
+            assertThat(continuation.getId().equals(other.getId()), is(false));
+            assertThat(first.isLocal(continuation.getId()), is(true));
+            assertThat(first.isLocal(other.getId()), is(false));
+            assertThat(second.isLocal(other.getId()), is(true));
+            assertThat(first.get(other.getId()), nullValue());
+            assertThat(first.isLocal(null), is(false));
+        } finally {
+            first.stop();
+            second.stop();
+        }
+    }
+
+    @Test
+    public void testIdsDistinctAcrossRegistriesSharingInstanceId() {
+        ContinuationRegistry first = new ContinuationRegistry("0");
+        ContinuationRegistry restarted = new ContinuationRegistry("0");
+        try {
+            RecordingContinuation continuation = first.register(RecordingContinuation::new);
+            RecordingContinuation other = restarted.register(RecordingContinuation::new);
+            assertThat(continuation.getId().equals(other.getId()), is(false));
+            assertThat(first.isLocal(other.getId()), is(false));
+            assertThat(restarted.isLocal(continuation.getId()), is(false));
+            assertThat(restarted.isLocal(other.getId()), is(true));
+            assertThat(first.getInstanceId(), is("0"));
+            assertThat(restarted.getInstanceId(), is("0"));
+        } finally {
+            first.stop();
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void testExpiredContinuationsAreReclaimed() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry(4, new HashedWheelExpiry(10, TimeUnit.MILLISECONDS, 64));
+        List<Continuation> continuations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            continuations.add(registry.register(50));
+        }
+        AtomicInteger disposed = new AtomicInteger();
+        continuations.forEach(continuation -> continuation.addDisposeCallback(disposed::incrementAndGet));
+        awaitEmpty(registry);
+        assertThat(registry.getReclaimedCount(), is(1000L));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (disposed.get() < 1000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(disposed.get(), is(1000));
+        for (Continuation continuation : continuations) {
+            assertThat(continuation.isExpired(), is(true));
+            assertThat(continuation.setReply(MessageBuilder.withPayload("late").build()), is(false));
+        }
+    }
+
+    @Test
+    public void testRepliedContinuationIsNotReclaimed() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry(4, new HashedWheelExpiry(10, TimeUnit.MILLISECONDS, 64));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        ServletContinuation continuation = registry.register(100);
+        assertThat(continuation.dispatch(request), nullValue());
+        Message<?> reply = MessageBuilder.withPayload("reply").build();
+        assertThat(continuation.setReply(reply), is(true));
+        assertThat(continuation.dispatch(request), is(reply));
+        assertThat(registry.size(), is(0));
+        Thread.sleep(300);
+        assertThat(continuation.isExpired(), is(false));
+        assertThat(registry.getReclaimedCount(), is(0L));
+    }
+
+    @Test
+    public void testMonoContinuationEmitsReplyOrCompletesEmpty() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry(4, new HashedWheelExpiry(10, TimeUnit.MILLISECONDS, 64));
+        MonoContinuation replied = registry.registerMono(100);
+        MonoContinuation expired = registry.registerMono(50);
+        MonoContinuation cancelled = registry.registerMono(10000);
+        Message<?> reply = MessageBuilder.withPayload("reply").build();
+        assertThat(replied.setReply(reply), is(true));
+        assertThat(replied.getReply().block(Duration.ofSeconds(1)), is(reply));
+        assertThat(expired.getReply().block(Duration.ofSeconds(5)), nullValue());
+        assertThat(expired.isExpired(), is(true));
+        cancelled.cancel();
+        assertThat(cancelled.getReply().block(Duration.ofSeconds(1)), nullValue());
+        assertThat(cancelled.setReply(reply), is(false));
+        assertThat(registry.size(), is(0));
+        assertThat(registry.getReclaimedCount(), is(2L));
+    }
+
+    @Test
+    public void testCancellationListenerToldAboutUnansweredContinuations() throws Exception {
+        ContinuationRegistry registry = new ContinuationRegistry(4, new HashedWheelExpiry(10, TimeUnit.MILLISECONDS, 64));
+        Map<String, ContinuationRegistry.CancelReason> cancelled = new ConcurrentHashMap<>();
+        registry.setCancellationListener(cancelled::put);
+        MonoContinuation replied = registry.registerMono(10000);
+        MonoContinuation expired = registry.registerMono(50);
+        MonoContinuation abandoned = registry.registerMono(10000);
+        replied.setReply(MessageBuilder.withPayload("reply").build());
+        abandoned.cancel();
+        expired.getReply().block(Duration.ofSeconds(5));
+        assertThat(cancelled.size(), is(2));
+        assertThat(cancelled.get(expired.getId()), is(ContinuationRegistry.CancelReason.TIMEOUT));
+        assertThat(cancelled.get(abandoned.getId()), is(ContinuationRegistry.CancelReason.CLIENT_GONE));
+        registry.stop();
+    }
+
+    private static void awaitEmpty(ContinuationRegistry registry) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.size(), is(0));
+    }
+
+    private static void runConcurrently(ExecutorService executor, Runnable task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static class RecordingContinuation implements Continuation {
+
+        private final String id;
+
+        private final AtomicInteger replies = new AtomicInteger();
+
+        private volatile Message<?> reply;
+
+        RecordingContinuation(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean setReply(Message<?> message) {
+            this.reply = message;
+            this.replies.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        public void expire() {
+        }
+
+        @Override
+        public void addDisposeCallback(Runnable callback) {
+        }
+    }
+
+}